@@ -0,0 +1,26 @@
+package com.vip.properties.benchmark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import com.vip.properties.internal.ReadablePropertySourcesPlaceholderConfigurer;
+
+/**
+ * A configurer holding only local properties, loaded without a Spring
+ * context, any watcher or an MBean, so trials do not leak registrations.
+ */
+public class BenchmarkConfigurer extends
+		ReadablePropertySourcesPlaceholderConfigurer {
+
+	public BenchmarkConfigurer(final Map<String, String> properties)
+			throws IOException {
+		final Properties local = new Properties();
+		local.putAll(properties);
+		setProperties(local);
+		setLocations(new String[0]);
+		setRegisterMBean(false);
+		loadProperties(new Properties());
+	}
+
+}
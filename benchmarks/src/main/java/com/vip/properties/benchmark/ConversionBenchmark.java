@@ -0,0 +1,73 @@
+package com.vip.properties.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.LocalDate;
+import org.joda.time.Period;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.conversion.DefaultPropertyConversionService;
+
+/**
+ * Converts a raw property to the type of the field named by the parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ConversionBenchmark {
+
+	private static final Map<String, String> RAW_VALUES = ImmutableMap
+			.<String, String> builder().put("stringValue", "Hello, World!")
+			.put("intValue", "12345").put("longValue", "1234567890123")
+			.put("booleanValue", "true").put("doubleValue", "3.14159")
+			.put("localDateValue", "2013-05-06").put("periodValue", "00:05:00")
+			.build();
+
+	@Param({ "stringValue", "intValue", "longValue", "booleanValue",
+			"doubleValue", "localDateValue", "periodValue" })
+	private String fieldName;
+
+	private DefaultPropertyConversionService conversionService;
+	private Field field;
+	private String property;
+
+	@Setup
+	public void setUp() throws NoSuchFieldException {
+		this.conversionService = new DefaultPropertyConversionService();
+		this.field = Fields.class.getDeclaredField(this.fieldName);
+		this.property = RAW_VALUES.get(this.fieldName);
+	}
+
+	@Benchmark
+	public Object convertPropertyForField() {
+		return this.conversionService.convertPropertyForField(this.field,
+				this.property);
+	}
+
+	static class Fields {
+		String stringValue;
+		int intValue;
+		long longValue;
+		boolean booleanValue;
+		double doubleValue;
+		LocalDate localDateValue;
+		Period periodValue;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.vip.properties.benchmark;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+import com.vip.properties.snapshot.HashedProperties;
+import com.vip.properties.snapshot.PropertiesDiff;
+
+/**
+ * Diffs a reloaded source against its previous properties, with a handful
+ * of keys added, modified and removed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DiffBenchmark {
+
+	private static final int CHANGED_KEYS = 10;
+
+	@Param({ "1000", "10000", "100000" })
+	private int keys;
+
+	private HashedProperties previous;
+	private HashedProperties current;
+	private HashedProperties unchanged;
+	private Properties reloaded;
+
+	@Setup
+	public void setUp() {
+		final Map<String, String> properties = Maps.newHashMap();
+		for (int i = 0; i < this.keys; i++) {
+			properties.put("application.property." + i, "value-" + i);
+		}
+		this.previous = HashedProperties.of(properties);
+		this.unchanged = HashedProperties.of(properties);
+		for (int i = 0; i < CHANGED_KEYS; i++) {
+			properties.put("application.property." + i * 7, "changed-" + i);
+		}
+		properties.remove("application.property.1");
+		properties.put("application.added", "added");
+		this.current = HashedProperties.of(properties);
+		this.reloaded = new Properties();
+		this.reloaded.putAll(properties);
+	}
+
+	@Benchmark
+	public PropertiesDiff diff() {
+		return PropertiesDiff.between(this.previous, this.current);
+	}
+
+	@Benchmark
+	public PropertiesDiff diffUnchanged() {
+		return PropertiesDiff.between(this.previous, this.unchanged);
+	}
+
+	/**
+	 * The reload of a parsed properties file, hashing it before the diff
+	 */
+	@Benchmark
+	public PropertiesDiff hashAndDiff() {
+		return PropertiesDiff.between(this.previous,
+				HashedProperties.of(this.reloaded));
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.vip.properties.benchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.bean.PropertiesChangedEvent;
+import com.vip.properties.bean.PropertyModifiedEvent;
+import com.vip.properties.internal.ReloadablePropertyPostProcessor;
+
+/**
+ * Fans a change out to the given number of subscribed beans, and measures
+ * the binding of a single bean.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DispatchBenchmark {
+
+	static final Map<String, String> PROPERTIES = ImmutableMap.of(
+			"bench.value", "42", "bench.name", "benchmark", "bench.timeout",
+			"30");
+
+	@Param({ "1000", "10000" })
+	private int beans;
+
+	private ReloadablePropertyPostProcessor postProcessor;
+	private SubscribedBean[] subscribed;
+	private PropertyModifiedEvent valueChanged;
+	private PropertiesChangedEvent allChanged;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.postProcessor = new ReloadablePropertyPostProcessor(
+				new BenchmarkConfigurer(PROPERTIES));
+		// Subscriptions are weak, the beans are held for the whole run
+		this.subscribed = new SubscribedBean[this.beans];
+		for (int i = 0; i < this.beans; i++) {
+			this.subscribed[i] = new SubscribedBean();
+			this.postProcessor.postProcessAfterInstantiation(
+					this.subscribed[i], "bean" + i);
+		}
+		this.valueChanged = new PropertyModifiedEvent("bench.value", "41",
+				"42");
+		this.allChanged = new PropertiesChangedEvent(1, Arrays.asList(
+				this.valueChanged, new PropertyModifiedEvent("bench.name",
+						"before", "benchmark"), new PropertyModifiedEvent(
+						"bench.timeout", "29", "30")));
+	}
+
+	@Benchmark
+	public void handlePropertyChange() {
+		this.postProcessor.handlePropertyChange(this.valueChanged);
+	}
+
+	/**
+	 * A change set updating every field of every bean
+	 */
+	@Benchmark
+	public void handlePropertiesChange() {
+		this.postProcessor.handlePropertiesChange(this.allChanged);
+	}
+
+	/**
+	 * Binds and subscribes one new bean. The bean is only weakly subscribed
+	 * so collected beans are expunged as the benchmark runs.
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public Object setPropertiesOnBean() {
+		final SubscribedBean bean = new SubscribedBean();
+		this.postProcessor.postProcessAfterInstantiation(bean, "bean");
+		return bean;
+	}
+
+}
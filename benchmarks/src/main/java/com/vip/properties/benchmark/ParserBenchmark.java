@@ -0,0 +1,72 @@
+package com.vip.properties.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+import com.vip.properties.snapshot.HashedProperties;
+import com.vip.properties.snapshot.PropertiesDiff;
+import com.vip.properties.snapshot.PropertiesParser;
+
+/**
+ * Parses and diffs a znode payload with one changed key, through
+ * {@link Properties} and straight from its bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ParserBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	private int keys;
+
+	private HashedProperties previous;
+	private byte[] payload;
+
+	@Setup
+	public void setUp() {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < this.keys; i++) {
+			text.append("application.property.").append(i).append('=')
+					.append("value-").append(i).append('\n');
+		}
+		this.previous = PropertiesParser.parse(
+				text.toString().getBytes(Charsets.UTF_8), Charsets.UTF_8,
+				HashedProperties.EMPTY);
+		text.append("application.property.0=changed\n");
+		this.payload = text.toString().getBytes(Charsets.UTF_8);
+	}
+
+	@Benchmark
+	public PropertiesDiff propertiesLoad() throws IOException {
+		final Properties properties = new Properties();
+		properties.load(new StringReader(new String(this.payload,
+				Charsets.UTF_8)));
+		return PropertiesDiff.between(this.previous,
+				HashedProperties.of(properties));
+	}
+
+	@Benchmark
+	public PropertiesDiff parse() {
+		return PropertiesDiff.between(this.previous, PropertiesParser.parse(
+				this.payload, Charsets.UTF_8, this.previous));
+	}
+
+}
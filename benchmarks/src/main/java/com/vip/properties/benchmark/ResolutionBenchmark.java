@@ -0,0 +1,70 @@
+package com.vip.properties.benchmark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.vip.properties.resolver.CompiledPropertyTemplates;
+
+/**
+ * Resolves a property whose value nests placeholders the given number of
+ * levels deep, e.g. level.2=b-${level.1} and level.1=a-${level.0}. A
+ * snapshot memoizes resolved values, so resolveProperty only measures a
+ * memoized lookup; resolveCompiled compiles the templates again in every
+ * operation and measures an actual resolution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ResolutionBenchmark {
+
+	@Param({ "0", "1", "4", "16" })
+	private int depth;
+
+	private BenchmarkConfigurer configurer;
+	private String placeholder;
+	private Map<String, String> properties;
+	private String key;
+
+	@Setup
+	public void setUp() throws IOException {
+		final Map<String, String> properties = Maps.newHashMap();
+		properties.put("level.0", "value");
+		for (int i = 1; i <= this.depth; i++) {
+			properties.put("level." + i, i + "-${level." + (i - 1) + "}");
+		}
+		this.configurer = new BenchmarkConfigurer(properties);
+		this.placeholder = "${level." + this.depth + "}";
+		this.properties = ImmutableMap.copyOf(properties);
+		this.key = "level." + this.depth;
+	}
+
+	@Benchmark
+	public Object resolveProperty() {
+		return this.configurer.resolveProperty(this.placeholder);
+	}
+
+	@Benchmark
+	public String resolveCompiled() {
+		return CompiledPropertyTemplates.compile(this.properties).resolve(
+				this.key);
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.vip.properties.benchmark;
+
+import com.vip.properties.ReloadableLong;
+import com.vip.properties.ReloadableProperty;
+
+public class SubscribedBean {
+
+	@ReloadableProperty("bench.value")
+	private long value;
+
+	@ReloadableProperty("bench.name")
+	private String name;
+
+	@ReloadableProperty("bench.timeout")
+	private final ReloadableLong timeout = new ReloadableLong(5);
+
+	public long getValue() {
+		return this.value;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public long getTimeout() {
+		return this.timeout.get();
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.vip.properties;
+
+import com.vip.properties.snapshot.PropertiesSnapshot;
+import com.vip.properties.snapshot.SnapshotBinding;
+import com.vip.properties.snapshot.SnapshotScope;
+
+/**
+ * A value published into a reloadable handle, stamped with the generation
+ * of the snapshot it was resolved from and linked to the versions it
+ * replaced while a {@link SnapshotScope} may still read them. Each handle
+ * extends it with a field of its value type.
+ */
+abstract class HandleVersion<V extends HandleVersion<V>> {
+
+	final long generation;
+	private volatile V previous;
+	// The value last resolved from a pinned snapshot, see pinned(..)
+	private volatile V resolved;
+
+	HandleVersion(final long generation, final V previous) {
+		this.generation = generation;
+		this.previous = previous;
+	}
+
+	/**
+	 * @return the value of the property in the snapshot of the owner of the
+	 *         binding pinned to this thread, this latest version if none is
+	 *         pinned or the handle is not bound
+	 */
+	@SuppressWarnings("unchecked")
+	final V pinned(final SnapshotBinding binding) {
+		final PropertiesSnapshot snapshot = null == binding ? null
+				: SnapshotScope.pinned(binding.getOwner());
+		if (null == snapshot) {
+			return (V) this;
+		}
+		final long generation = snapshot.getGeneration();
+		final V version = at(generation);
+		if (version.generation == generation) {
+			return version;
+		}
+		// A version stamped with an older generation may have been
+		// superseded by a change not dispatched yet, and none is kept for a
+		// generation pinned before the handle was bound, so resolve the
+		// value from the pinned snapshot once per generation
+		V resolved = this.resolved;
+		if (null == resolved || resolved.generation != generation) {
+			final Object value = binding.resolve(snapshot);
+			if (null == value) {
+				return version;
+			}
+			resolved = resolved(value, generation);
+			this.resolved = resolved;
+		}
+		return resolved;
+	}
+
+	/**
+	 * @return the oldest generation pinned by a scope of the owner of the
+	 *         binding, {@link Long#MAX_VALUE} if there is none or the handle
+	 *         is not bound
+	 */
+	static long oldestPinnedGeneration(final SnapshotBinding binding) {
+		return null == binding ? Long.MAX_VALUE : SnapshotScope
+				.oldestPinnedGeneration(binding.getOwner());
+	}
+
+	/**
+	 * @return a version of the value, converted by the binding, resolved
+	 *         from the snapshot of the generation
+	 */
+	abstract V resolved(Object value, long generation);
+
+	/**
+	 * @return the latest version visible at the generation, or the oldest
+	 *         version kept if none is
+	 */
+	@SuppressWarnings("unchecked")
+	final V at(final long pinnedGeneration) {
+		HandleVersion<V> version = this;
+		while (version.generation > pinnedGeneration
+				&& null != version.previous) {
+			version = version.previous;
+		}
+		return (V) version;
+	}
+
+	/**
+	 * @return this version with the versions no longer visible at the oldest
+	 *         pinned generation dropped, or null if no generation is pinned
+	 */
+	@SuppressWarnings("unchecked")
+	final V retained(final long oldestPinnedGeneration) {
+		if (Long.MAX_VALUE == oldestPinnedGeneration) {
+			return null;
+		}
+		final HandleVersion<V> oldest = at(oldestPinnedGeneration);
+		oldest.previous = null;
+		return (V) this;
+	}
+
+}
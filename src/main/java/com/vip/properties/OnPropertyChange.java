@@ -0,0 +1,29 @@
+package com.vip.properties;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a bean method to be called once the given properties have changed,
+ * after the {@link ReloadableProperty} fields of the bean are updated. A
+ * change set touching several of the properties results in a single call.
+ * The method either takes no parameters, the
+ * {@link com.vip.properties.bean.PropertiesChangedEvent}, or an old and a
+ * new value parameter per property in the order given, the values being
+ * converted to the parameter types:
+ * 
+ * <pre>
+ * &#064;OnPropertyChange({ &quot;pool.minSize&quot;, &quot;pool.maxSize&quot; })
+ * void resize(int oldMin, int newMin, int oldMax, int newMax)
+ * </pre>
+ * 
+ * A property not part of the change set is passed its current value as
+ * both old and new value.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnPropertyChange {
+	String[] value();
+}
@@ -0,0 +1,86 @@
+package com.vip.properties;
+
+import com.google.common.base.Objects;
+import com.vip.properties.snapshot.SnapshotBinding;
+import com.vip.properties.snapshot.SnapshotScope;
+
+/**
+ * A {@link ReloadableValue} of a double, read and written without boxing.
+ * Reads within a {@link SnapshotScope} return the value of the pinned
+ * generation.
+ */
+public final class ReloadableDouble {
+
+	private volatile Version version;
+	private volatile SnapshotBinding binding;
+
+	public ReloadableDouble() {
+		this.version = new Version(0, Long.MIN_VALUE, null);
+	}
+
+	/**
+	 * @param defaultValue
+	 *            the value used while the property is not defined
+	 */
+	public ReloadableDouble(final double defaultValue) {
+		this.version = new Version(defaultValue, Long.MIN_VALUE, null);
+	}
+
+	public double get() {
+		final Version latest = this.version;
+		return SnapshotScope.isActive() ? latest.pinned(this.binding).value
+				: latest.value;
+	}
+
+	/**
+	 * Publishes a new value, visible within every {@link SnapshotScope} unless
+	 * the handle is bound
+	 */
+	public void set(final double value) {
+		set(value, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Publishes a new value, called when the property is bound or changed
+	 * 
+	 * @param generation
+	 *            the generation of the snapshot the value was resolved from
+	 */
+	public void set(final double value, final long generation) {
+		this.version = new Version(value, generation, this.version
+				.retained(HandleVersion.oldestPinnedGeneration(this.binding)));
+	}
+
+	/**
+	 * Binds the handle to its property, called when it is bound, so reads
+	 * within a {@link SnapshotScope} of the owner of the binding read the
+	 * pinned generation
+	 */
+	public void bind(final SnapshotBinding binding) {
+		this.binding = binding;
+	}
+
+	@Override
+	public String toString() {
+		final Version latest = this.version;
+		return Objects.toStringHelper(this).add("value", latest.value)
+				.add("generation", latest.generation).toString();
+	}
+
+	private static final class Version extends HandleVersion<Version> {
+
+		private final double value;
+
+		private Version(final double value, final long generation,
+				final Version previous) {
+			super(generation, previous);
+			this.value = value;
+		}
+
+		@Override
+		Version resolved(final Object value, final long generation) {
+			return new Version((Double) value, generation, null);
+		}
+	}
+
+}
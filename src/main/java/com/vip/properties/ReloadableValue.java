@@ -0,0 +1,100 @@
+package com.vip.properties;
+
+import com.google.common.base.Objects;
+import com.vip.properties.snapshot.SnapshotBinding;
+import com.vip.properties.snapshot.SnapshotScope;
+
+/**
+ * Holder of a converted property value, declared on a bean in place of a
+ * plain field and bound through {@link ReloadableProperty}:
+ * 
+ * <pre>
+ * &#064;ReloadableProperty(&quot;dynamicProperty.periodValue&quot;)
+ * private final ReloadableValue&lt;Period&gt; period = new ReloadableValue&lt;Period&gt;();
+ * </pre>
+ * 
+ * The value is converted once per change and published with a single
+ * volatile write, so a read is a single volatile load and always sees the
+ * latest value. See {@link ReloadableLong}, {@link ReloadableInt},
+ * {@link ReloadableBoolean} and {@link ReloadableDouble} for primitives.
+ * <p>
+ * Within a {@link SnapshotScope} a read returns the value of the pinned
+ * generation instead. Values of older generations are only kept while a
+ * scope pins them.
+ */
+public final class ReloadableValue<T> {
+
+	private volatile Version<T> version;
+	private volatile SnapshotBinding binding;
+
+	public ReloadableValue() {
+		this.version = new Version<T>(null, Long.MIN_VALUE, null);
+	}
+
+	/**
+	 * @param defaultValue
+	 *            the value used while the property is not defined
+	 */
+	public ReloadableValue(final T defaultValue) {
+		this.version = new Version<T>(defaultValue, Long.MIN_VALUE, null);
+	}
+
+	public T get() {
+		final Version<T> latest = this.version;
+		return SnapshotScope.isActive() ? latest.pinned(this.binding).value
+				: latest.value;
+	}
+
+	/**
+	 * Publishes a new value, visible within every {@link SnapshotScope} unless
+	 * the handle is bound
+	 */
+	public void set(final T value) {
+		set(value, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Publishes a new value, called when the property is bound or changed
+	 * 
+	 * @param generation
+	 *            the generation of the snapshot the value was resolved from
+	 */
+	public void set(final T value, final long generation) {
+		this.version = new Version<T>(value, generation, this.version
+				.retained(HandleVersion.oldestPinnedGeneration(this.binding)));
+	}
+
+	/**
+	 * Binds the handle to its property, called when it is bound, so reads
+	 * within a {@link SnapshotScope} of the owner of the binding read the
+	 * pinned generation
+	 */
+	public void bind(final SnapshotBinding binding) {
+		this.binding = binding;
+	}
+
+	@Override
+	public String toString() {
+		final Version<T> latest = this.version;
+		return Objects.toStringHelper(this).add("value", latest.value)
+				.add("generation", latest.generation).toString();
+	}
+
+	private static final class Version<T> extends HandleVersion<Version<T>> {
+
+		private final T value;
+
+		private Version(final T value, final long generation,
+				final Version<T> previous) {
+			super(generation, previous);
+			this.value = value;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Version<T> resolved(final Object value, final long generation) {
+			return new Version<T>((T) value, generation, null);
+		}
+	}
+
+}
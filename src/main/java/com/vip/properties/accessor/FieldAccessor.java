@@ -0,0 +1,35 @@
+package com.vip.properties.accessor;
+
+import java.lang.reflect.Field;
+
+public interface FieldAccessor {
+
+	/**
+	 * @return the {@link Field} this accessor was compiled for
+	 */
+	Field getField();
+
+	/**
+	 * @param bean
+	 *            the instance to read the field from
+	 * @return the current (possibly boxed) value of the field
+	 */
+	Object get(final Object bean);
+
+	/**
+	 * @param bean
+	 *            the instance to write the field on
+	 * @param value
+	 *            the value to set, unboxed if the field is a primitive
+	 */
+	void set(final Object bean, final Object value);
+
+	void setLong(final Object bean, final long value);
+
+	void setInt(final Object bean, final int value);
+
+	void setBoolean(final Object bean, final boolean value);
+
+	void setDouble(final Object bean, final double value);
+
+}
@@ -0,0 +1,187 @@
+package com.vip.properties.accessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.util.ReflectionUtils;
+
+import com.google.common.base.Objects;
+
+/**
+ * {@link FieldAccessor} backed by {@link MethodHandle}s which are looked up
+ * and adapted once per field. Fields of type long, int, boolean and double
+ * get an exactly typed setter so the primitive variants never box. Static
+ * fields ignore the bean passed in.
+ */
+public class MethodHandleFieldAccessor implements FieldAccessor {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(
+			Object.class, Object.class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(
+			void.class, Object.class, Object.class);
+
+	private final Field field;
+	private final MethodHandle getter;
+	private final MethodHandle setter;
+	private final MethodHandle primitiveSetter;
+
+	private MethodHandleFieldAccessor(final Field field) {
+		this.field = field;
+		try {
+			ReflectionUtils.makeAccessible(field);
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final boolean isStatic = Modifier.isStatic(field.getModifiers());
+			this.getter = withBean(lookup.unreflectGetter(field), isStatic)
+					.asType(GETTER_TYPE);
+			if (Modifier.isFinal(field.getModifiers())) {
+				this.setter = null;
+				this.primitiveSetter = null;
+			} else {
+				final MethodHandle rawSetter = withBean(
+						lookup.unreflectSetter(field), isStatic);
+				this.setter = rawSetter.asType(SETTER_TYPE);
+				this.primitiveSetter = isSpecialisedPrimitive(field.getType()) ? rawSetter
+						.asType(MethodType.methodType(void.class,
+								Object.class, field.getType())) : null;
+			}
+		} catch (final IllegalAccessException e) {
+			throw new BeanInitializationException(String.format(
+					"Unable to create accessor for field [%s] of class [%s]",
+					field.getName(), field.getDeclaringClass()
+							.getCanonicalName()), e);
+		}
+	}
+
+	/**
+	 * Creates an accessor for the given field, callers keep it themselves so
+	 * it does not pin the field's class.
+	 *
+	 * @param field
+	 *            the field to access
+	 * @return a new {@link FieldAccessor} for the field
+	 */
+	public static FieldAccessor create(final Field field) {
+		return new MethodHandleFieldAccessor(field);
+	}
+
+	@Override
+	public Field getField() {
+		return this.field;
+	}
+
+	@Override
+	public Object get(final Object bean) {
+		try {
+			return (Object) this.getter.invokeExact(bean);
+		} catch (final Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	@Override
+	public void set(final Object bean, final Object value) {
+		try {
+			writableSetter().invokeExact(bean, value);
+		} catch (final Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	@Override
+	public void setLong(final Object bean, final long value) {
+		if (this.field.getType() != long.class || null == this.primitiveSetter) {
+			set(bean, value);
+			return;
+		}
+		try {
+			this.primitiveSetter.invokeExact(bean, value);
+		} catch (final Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	@Override
+	public void setInt(final Object bean, final int value) {
+		if (this.field.getType() != int.class || null == this.primitiveSetter) {
+			set(bean, value);
+			return;
+		}
+		try {
+			this.primitiveSetter.invokeExact(bean, value);
+		} catch (final Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	@Override
+	public void setBoolean(final Object bean, final boolean value) {
+		if (this.field.getType() != boolean.class || null == this.primitiveSetter) {
+			set(bean, value);
+			return;
+		}
+		try {
+			this.primitiveSetter.invokeExact(bean, value);
+		} catch (final Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	@Override
+	public void setDouble(final Object bean, final double value) {
+		if (this.field.getType() != double.class || null == this.primitiveSetter) {
+			set(bean, value);
+			return;
+		}
+		try {
+			this.primitiveSetter.invokeExact(bean, value);
+		} catch (final Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	private MethodHandle writableSetter() {
+		if (null == this.setter) {
+			throw new IllegalStateException(String.format(
+					"Unable to set field [%s] of class [%s] as is declared final",
+					this.field.getName(), this.field.getDeclaringClass()
+							.getCanonicalName()));
+		}
+		return this.setter;
+	}
+
+	/**
+	 * @return the field handle taking the bean as its first argument, which
+	 *         a static field ignores
+	 */
+	private static MethodHandle withBean(final MethodHandle handle,
+			final boolean isStatic) {
+		return isStatic ? MethodHandles.dropArguments(handle, 0, Object.class)
+				: handle;
+	}
+
+	private static boolean isSpecialisedPrimitive(final Class<?> type) {
+		return type == long.class || type == int.class
+				|| type == boolean.class || type == double.class;
+	}
+
+	private static RuntimeException propagate(final Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		return new IllegalStateException(e);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("field", this.field)
+				.toString();
+	}
+
+}
@@ -1,37 +1,42 @@
 package com.vip.properties.bean;
 
-import java.lang.reflect.Field;
-
 import com.google.common.base.Objects;
+import com.vip.properties.accessor.FieldAccessor;
 
 public class BeanPropertyHolder {
 
 	private final Object bean;
-	private final Field field;
+	private final FieldAccessor accessor;
+	private final String propertyName;
 
-	public BeanPropertyHolder(Object bean, Field field) {
+	public BeanPropertyHolder(Object bean, FieldAccessor accessor, String propertyName) {
 		this.bean = bean;
-		this.field = field;
+		this.accessor = accessor;
+		this.propertyName = propertyName;
 	}
 
 	public Object getBean() {
 		return this.bean;
 	}
 
-	public Field getField() {
-		return this.field;
+	public FieldAccessor getAccessor() {
+		return this.accessor;
+	}
+
+	public String getPropertyName() {
+		return this.propertyName;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(this.bean, this.field);
+		return Objects.hashCode(this.bean, this.accessor);
 	}
 
 	@Override
 	public boolean equals(Object object) {
 		if (object instanceof BeanPropertyHolder) {
 			BeanPropertyHolder that = (BeanPropertyHolder) object;
-			return Objects.equal(this.bean, that.bean) && Objects.equal(this.field, that.field);
+			return Objects.equal(this.bean, that.bean) && Objects.equal(this.accessor, that.accessor);
 		}
 		return false;
 	}
@@ -40,7 +45,8 @@ public class BeanPropertyHolder {
 	public String toString() {
 		return Objects.toStringHelper(this)
 			.add("bean", this.bean)
-			.add("field", this.field)
+			.add("field", this.accessor.getField())
+			.add("propertyName", this.propertyName)
 			.toString();
 	}
 
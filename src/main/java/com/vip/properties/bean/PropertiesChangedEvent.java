@@ -0,0 +1,75 @@
+package com.vip.properties.bean;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A change set holding every property modified by a single reload, posted
+ * once per reload rather than once per key.
+ */
+public class PropertiesChangedEvent {
+
+	private final long generation;
+	private final ImmutableMap<String, PropertyModifiedEvent> changes;
+
+	public PropertiesChangedEvent(final long generation,
+			final Collection<PropertyModifiedEvent> changes) {
+		final ImmutableMap.Builder<String, PropertyModifiedEvent> builder = ImmutableMap
+				.builder();
+		for (final PropertyModifiedEvent change : changes) {
+			builder.put(change.getPropertyName(), change);
+		}
+		this.generation = generation;
+		this.changes = builder.build();
+	}
+
+	/**
+	 * @return the generation of the properties snapshot the changes produced
+	 */
+	public long getGeneration() {
+		return this.generation;
+	}
+
+	public Set<String> getPropertyNames() {
+		return this.changes.keySet();
+	}
+
+	public Collection<PropertyModifiedEvent> getChanges() {
+		return this.changes.values();
+	}
+
+	public PropertyModifiedEvent getChange(final String propertyName) {
+		return this.changes.get(propertyName);
+	}
+
+	public boolean isEmpty() {
+		return this.changes.isEmpty();
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(this.generation, this.changes);
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		if (object instanceof PropertiesChangedEvent) {
+			final PropertiesChangedEvent that = (PropertiesChangedEvent) object;
+			return this.generation == that.generation
+				&& Objects.equal(this.changes, that.changes);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+			.add("generation", this.generation)
+			.add("changes", this.changes.values())
+			.toString();
+	}
+
+}
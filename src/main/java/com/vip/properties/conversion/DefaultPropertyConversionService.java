@@ -3,89 +3,62 @@ package com.vip.properties.conversion;
 import java.lang.reflect.Field;
 import java.util.Map;
 
-import org.joda.time.LocalDate;
-import org.joda.time.LocalDateTime;
-import org.joda.time.LocalTime;
-import org.joda.time.Period;
-import org.springframework.beans.SimpleTypeConverter;
 import org.springframework.beans.factory.BeanInitializationException;
 
-import com.google.common.base.Function;
-import com.google.common.base.Functions;
-import com.google.common.collect.Maps;
-import com.vip.util.JodaUtils;
-
 public class DefaultPropertyConversionService implements
 		PropertyConversionService {
 
-	private static Map<Class<? extends Object>, Function<Object, ?>> CONVERTS = Maps
-			.newHashMap();
-	static {
-		CONVERTS.put(Period.class, new PeriodConverter());
-		CONVERTS.put(LocalDateTime.class, new LocalDateTimeConverter());
-		CONVERTS.put(LocalDate.class, new LocalDateConverter());
-		CONVERTS.put(LocalTime.class, new LocalTimeConverter());
+	private final PropertyConverterRegistry registry;
+
+	public DefaultPropertyConversionService() {
+		this(new PropertyConverterRegistry());
 	}
 
-	private static SimpleTypeConverter DEFAULT = new SimpleTypeConverter();
+	public DefaultPropertyConversionService(
+			final PropertyConverterRegistry registry) {
+		this.registry = registry;
+	}
 
 	@Override
 	public Object convertPropertyForField(final Field field,
 			final Object property) {
 		try {
-			return Functions
-					.forMap(CONVERTS, new DefaultConverter(field.getType()))
-					.apply(field.getType()).apply(property);
+			return getConverterForField(field).convert(property);
 		} catch (final Throwable e) {
-			throw new BeanInitializationException(
-					String.format(
-							"Unable to convert property for field [%s].  Value [%s] cannot be converted to [%s]",
-							field.getName(), property, field.getType()), e);
+			throw conversionFailed(field, property, e);
 		}
 	}
 
-	private static class DefaultConverter implements Function<Object, Object> {
-		private final Class<?> type;
-
-		public DefaultConverter(final Class<?> type) {
-			this.type = type;
-		}
-
-		@Override
-		public Object apply(final Object input) {
-			return DEFAULT.convertIfNecessary(input, this.type);
-		}
+	@Override
+	public PropertyConverter<?> getConverterForField(final Field field) {
+		return this.registry.getConverter(field);
 	}
 
-	private static class PeriodConverter implements Function<Object, Period> {
-		@Override
-		public Period apply(final Object input) {
-			return JodaUtils.timeStringToPeriodOrNull((String) input);
-		}
+	@Override
+	public PropertyConverter<?> getConverterForType(final Class<?> type) {
+		return this.registry.getConverter(type);
 	}
 
-	private static class LocalDateTimeConverter implements
-			Function<Object, LocalDateTime> {
-		@Override
-		public LocalDateTime apply(final Object input) {
-			return JodaUtils
-					.timestampStringToLocalDateTimeOrNull((String) input);
-		}
+	/**
+	 * Registers an additional converter, e.g. for a custom value type
+	 */
+	public <T> void registerConverter(final Class<T> type,
+			final PropertyConverter<? extends T> converter) {
+		this.registry.register(type, converter);
 	}
 
-	private static class LocalDateConverter implements
-			Function<Object, LocalDate> {
-		@Override
-		public LocalDate apply(final Object input) {
-			return JodaUtils.dateStringToLocalDateOrNull((String) input);
-		}
+	/**
+	 * Allows additional converters to be supplied from Spring configuration
+	 */
+	public void setConverters(final Map<Class<?>, PropertyConverter<?>> converters) {
+		this.registry.registerAll(converters);
 	}
 
-	private static class LocalTimeConverter implements
-			Function<Object, LocalTime> {
-		@Override
-		public LocalTime apply(final Object input) {
-			return JodaUtils.timeStringToLocalTimeOrNull((String) input);
-		}
+	public static BeanInitializationException conversionFailed(
+			final Field field, final Object property, final Throwable e) {
+		return new BeanInitializationException(
+				String.format(
+						"Unable to convert property for field [%s].  Value [%s] cannot be converted to [%s]",
+						field.getName(), property, field.getType()), e);
 	}
 }
@@ -12,4 +12,20 @@ public interface PropertyConversionService {
 	 * @return the potentially converted field
 	 */
 	Object convertPropertyForField(final Field field, final Object property);
+
+	/**
+	 * @param field
+	 *            the destination filed to set the property on
+	 * @return the converter used for the given field, primitive fields may
+	 *         return one of the non-boxing {@link PropertyConverter} variants
+	 */
+	PropertyConverter<?> getConverterForField(final Field field);
+
+	/**
+	 * @param type
+	 *            the type to convert properties to, e.g. of a method
+	 *            parameter
+	 * @return the converter used for the given type
+	 */
+	PropertyConverter<?> getConverterForType(final Class<?> type);
 }
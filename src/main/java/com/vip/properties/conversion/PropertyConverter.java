@@ -0,0 +1,28 @@
+package com.vip.properties.conversion;
+
+public interface PropertyConverter<T> {
+
+	/**
+	 * @param property
+	 *            the resolved property value to convert
+	 * @return the converted value
+	 */
+	T convert(final Object property);
+
+	interface LongConverter extends PropertyConverter<Long> {
+		long convertToLong(final Object property);
+	}
+
+	interface IntConverter extends PropertyConverter<Integer> {
+		int convertToInt(final Object property);
+	}
+
+	interface BooleanConverter extends PropertyConverter<Boolean> {
+		boolean convertToBoolean(final Object property);
+	}
+
+	interface DoubleConverter extends PropertyConverter<Double> {
+		double convertToDouble(final Object property);
+	}
+
+}
@@ -0,0 +1,293 @@
+package com.vip.properties.conversion;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+import org.joda.time.Period;
+import org.springframework.beans.SimpleTypeConverter;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.vip.properties.ReloadableBoolean;
+import com.vip.properties.ReloadableDouble;
+import com.vip.properties.ReloadableInt;
+import com.vip.properties.ReloadableLong;
+import com.vip.properties.ReloadableValue;
+import com.vip.properties.conversion.PropertyConverter.BooleanConverter;
+import com.vip.properties.conversion.PropertyConverter.DoubleConverter;
+import com.vip.properties.conversion.PropertyConverter.IntConverter;
+import com.vip.properties.conversion.PropertyConverter.LongConverter;
+import com.vip.util.JodaUtils;
+
+/**
+ * Registry of {@link PropertyConverter}s indexed by target type. A converter
+ * is resolved once per (generic) field type and cached, so repeated
+ * conversions are a single lock-free map lookup. Registered converters take
+ * precedence over the built in ones; anything else falls back to Spring's
+ * {@link SimpleTypeConverter}, one instance per thread as it is not thread
+ * safe.
+ */
+public class PropertyConverterRegistry {
+
+	private static final ThreadLocal<SimpleTypeConverter> TYPE_CONVERTERS = new ThreadLocal<SimpleTypeConverter>() {
+		@Override
+		protected SimpleTypeConverter initialValue() {
+			return new SimpleTypeConverter();
+		}
+	};
+
+	private static final Map<Class<?>, Class<?>> HANDLE_VALUE_TYPES = ImmutableMap
+			.<Class<?>, Class<?>> of(ReloadableLong.class, long.class,
+					ReloadableInt.class, int.class, ReloadableBoolean.class,
+					boolean.class, ReloadableDouble.class, double.class);
+
+	private final ConcurrentMap<Class<?>, PropertyConverter<?>> registered = Maps
+			.newConcurrentMap();
+	private final ConcurrentMap<Type, PropertyConverter<?>> resolved = Maps
+			.newConcurrentMap();
+
+	public PropertyConverterRegistry() {
+		register(long.class, new PrimitiveLongConverter());
+		register(int.class, new PrimitiveIntConverter());
+		register(boolean.class, new PrimitiveBooleanConverter());
+		register(double.class, new PrimitiveDoubleConverter());
+		register(Period.class, new PeriodConverter());
+		register(LocalDateTime.class, new LocalDateTimeConverter());
+		register(LocalDate.class, new LocalDateConverter());
+		register(LocalTime.class, new LocalTimeConverter());
+	}
+
+	/**
+	 * Registers a converter for the given type, replacing any existing one.
+	 *
+	 * @param type
+	 *            the target type of the converter
+	 * @param converter
+	 *            the converter to use for fields of the given type
+	 */
+	public <T> void register(final Class<T> type,
+			final PropertyConverter<? extends T> converter) {
+		this.registered.put(type, converter);
+		this.resolved.clear();
+	}
+
+	public void registerAll(final Map<Class<?>, PropertyConverter<?>> converters) {
+		this.registered.putAll(converters);
+		this.resolved.clear();
+	}
+
+	/**
+	 * @param field
+	 *            the destination field
+	 * @return the (cached) converter for the field's generic type
+	 */
+	public PropertyConverter<?> getConverter(final Field field) {
+		final Type type = field.getGenericType();
+		final PropertyConverter<?> existing = this.resolved.get(type);
+		if (null != existing) {
+			return existing;
+		}
+		final PropertyConverter<?> created = resolve(field);
+		final PropertyConverter<?> raced = this.resolved.putIfAbsent(type,
+				created);
+		return null == raced ? created : raced;
+	}
+
+	/**
+	 * @param type
+	 *            the target type
+	 * @return the (cached) converter for the type
+	 */
+	public PropertyConverter<?> getConverter(final Class<?> type) {
+		final PropertyConverter<?> existing = this.resolved.get(type);
+		if (null != existing) {
+			return existing;
+		}
+		final PropertyConverter<?> created = resolve(type, null);
+		final PropertyConverter<?> raced = this.resolved.putIfAbsent(type,
+				created);
+		return null == raced ? created : raced;
+	}
+
+	/**
+	 * Fields holding a {@link ReloadableValue} or one of its primitive
+	 * variants get the converter of the type of value they hold.
+	 */
+	private PropertyConverter<?> resolve(final Field field) {
+		final Class<?> valueType = HANDLE_VALUE_TYPES.get(field.getType());
+		if (null != valueType) {
+			return resolve(valueType, null);
+		}
+		if (ReloadableValue.class == field.getType()) {
+			return resolve(reloadableValueType(field), null);
+		}
+		return resolve(field.getType(),
+				field.getGenericType() instanceof Class ? null : field);
+	}
+
+	private PropertyConverter<?> resolve(final Class<?> type,
+			final Field genericField) {
+		final PropertyConverter<?> converter = this.registered.get(type);
+		if (null != converter) {
+			return converter;
+		}
+		return new DefaultConverter(type, genericField);
+	}
+
+	/**
+	 * @return the raw type argument of a {@link ReloadableValue} field, or
+	 *         Object if the field is raw, leaving the value unconverted
+	 */
+	private static Class<?> reloadableValueType(final Field field) {
+		if (field.getGenericType() instanceof ParameterizedType) {
+			final Type argument = ((ParameterizedType) field.getGenericType())
+					.getActualTypeArguments()[0];
+			if (argument instanceof Class) {
+				return (Class<?>) argument;
+			}
+			if (argument instanceof ParameterizedType) {
+				return (Class<?>) ((ParameterizedType) argument).getRawType();
+			}
+		}
+		return Object.class;
+	}
+
+	private static String text(final Object input) {
+		return input.toString().trim();
+	}
+
+	private static boolean isHex(final String text) {
+		final int index = text.startsWith("-") ? 1 : 0;
+		return text.startsWith("0x", index) || text.startsWith("0X", index)
+				|| text.startsWith("#", index);
+	}
+
+	private static class DefaultConverter implements PropertyConverter<Object> {
+		private final Class<?> type;
+		private final Field genericField;
+
+		public DefaultConverter(final Class<?> type, final Field genericField) {
+			this.type = type;
+			this.genericField = genericField;
+		}
+
+		@Override
+		public Object convert(final Object input) {
+			final SimpleTypeConverter converter = TYPE_CONVERTERS.get();
+			return null == this.genericField ? converter.convertIfNecessary(
+					input, this.type) : converter.convertIfNecessary(input,
+					this.type, this.genericField);
+		}
+	}
+
+	private static class PrimitiveLongConverter implements LongConverter {
+		@Override
+		public Long convert(final Object input) {
+			return convertToLong(input);
+		}
+
+		@Override
+		public long convertToLong(final Object input) {
+			if (input instanceof Number) {
+				return ((Number) input).longValue();
+			}
+			final String text = text(input);
+			return isHex(text) ? Long.decode(text) : Long.parseLong(text);
+		}
+	}
+
+	private static class PrimitiveIntConverter implements IntConverter {
+		@Override
+		public Integer convert(final Object input) {
+			return convertToInt(input);
+		}
+
+		@Override
+		public int convertToInt(final Object input) {
+			if (input instanceof Number) {
+				return ((Number) input).intValue();
+			}
+			final String text = text(input);
+			return isHex(text) ? Integer.decode(text) : Integer
+					.parseInt(text);
+		}
+	}
+
+	private static class PrimitiveDoubleConverter implements DoubleConverter {
+		@Override
+		public Double convert(final Object input) {
+			return convertToDouble(input);
+		}
+
+		@Override
+		public double convertToDouble(final Object input) {
+			if (input instanceof Number) {
+				return ((Number) input).doubleValue();
+			}
+			return Double.parseDouble(text(input));
+		}
+	}
+
+	private static class PrimitiveBooleanConverter implements BooleanConverter {
+		@Override
+		public Boolean convert(final Object input) {
+			return convertToBoolean(input);
+		}
+
+		@Override
+		public boolean convertToBoolean(final Object input) {
+			if (input instanceof Boolean) {
+				return (Boolean) input;
+			}
+			final String text = text(input);
+			if ("true".equalsIgnoreCase(text) || "on".equalsIgnoreCase(text)
+					|| "yes".equalsIgnoreCase(text) || "1".equals(text)) {
+				return true;
+			}
+			if ("false".equalsIgnoreCase(text) || "off".equalsIgnoreCase(text)
+					|| "no".equalsIgnoreCase(text) || "0".equals(text)) {
+				return false;
+			}
+			throw new IllegalArgumentException("Invalid boolean value ["
+					+ text + "]");
+		}
+	}
+
+	private static class PeriodConverter implements PropertyConverter<Period> {
+		@Override
+		public Period convert(final Object input) {
+			return JodaUtils.timeStringToPeriodOrNull((String) input);
+		}
+	}
+
+	private static class LocalDateTimeConverter implements
+			PropertyConverter<LocalDateTime> {
+		@Override
+		public LocalDateTime convert(final Object input) {
+			return JodaUtils
+					.timestampStringToLocalDateTimeOrNull((String) input);
+		}
+	}
+
+	private static class LocalDateConverter implements
+			PropertyConverter<LocalDate> {
+		@Override
+		public LocalDate convert(final Object input) {
+			return JodaUtils.dateStringToLocalDateOrNull((String) input);
+		}
+	}
+
+	private static class LocalTimeConverter implements
+			PropertyConverter<LocalTime> {
+		@Override
+		public LocalTime convert(final Object input) {
+			return JodaUtils.timeStringToLocalTimeOrNull((String) input);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.vip.properties.event;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vip.properties.bean.PropertiesChangedEvent;
+import com.vip.properties.bean.PropertyModifiedEvent;
+import com.vip.properties.internal.ReloadablePropertyPostProcessor;
+
+/**
+ * {@link PropertyChangedEventNotifier} which hands events off to a single
+ * dispatch thread instead of updating beans on the thread which detected the
+ * change. Changes waiting to be dispatched are coalesced per key, so when
+ * updates arrive faster than they can be applied only the latest value of
+ * each key is dispatched. Subscribers always receive a
+ * {@link PropertiesChangedEvent}, single {@link PropertyModifiedEvent}s are
+ * folded into the next change set.
+ */
+public class AsyncCoalescingPropertyChangedEventNotifier implements
+		PropertyChangedEventNotifier {
+
+	protected static Logger log = LoggerFactory
+			.getLogger(AsyncCoalescingPropertyChangedEventNotifier.class);
+
+	private final EventBus eventBus;
+	private final ThreadPoolExecutor executor;
+
+	private final Map<String, PropertyModifiedEvent> pending = Maps
+			.newLinkedHashMap();
+	private long pendingGeneration;
+
+	private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+	private final AtomicLong dispatchedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	public AsyncCoalescingPropertyChangedEventNotifier() {
+		this.eventBus = new EventBus();
+		// Only one dispatch is ever queued, later changes coalesce into it
+		this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(1), new ThreadFactoryBuilder()
+						.setNameFormat("reloadable-properties-dispatch-%d")
+						.setDaemon(true).build());
+	}
+
+	@Override
+	public void post(final PropertyModifiedEvent propertyChangedEvent) {
+		synchronized (this.pending) {
+			coalesce(propertyChangedEvent);
+		}
+		scheduleDispatch();
+	}
+
+	@Override
+	public void post(final PropertiesChangedEvent propertiesChangedEvent) {
+		synchronized (this.pending) {
+			for (final PropertyModifiedEvent change : propertiesChangedEvent
+					.getChanges()) {
+				coalesce(change);
+			}
+			this.pendingGeneration = Math.max(this.pendingGeneration,
+					propertiesChangedEvent.getGeneration());
+		}
+		scheduleDispatch();
+	}
+
+	@Override
+	public void unregister(
+			final ReloadablePropertyPostProcessor ReloadablePropertyPostProcessor) {
+		this.eventBus.unregister(ReloadablePropertyPostProcessor);
+	}
+
+	@Override
+	public void register(
+			final ReloadablePropertyPostProcessor ReloadablePropertyPostProcessor) {
+		this.eventBus.register(ReloadablePropertyPostProcessor);
+	}
+
+	/**
+	 * @return the number of changed keys waiting to be dispatched
+	 */
+	public int getQueueDepth() {
+		synchronized (this.pending) {
+			return this.pending.size();
+		}
+	}
+
+	/**
+	 * @return the number of pending updates which were replaced by a later
+	 *         update of the same key before being dispatched
+	 */
+	public long getCoalescedCount() {
+		return this.coalescedCount.get();
+	}
+
+	/**
+	 * @return the number of change sets dispatched to subscribers
+	 */
+	public long getDispatchedCount() {
+		return this.dispatchedCount.get();
+	}
+
+	public void shutdown() {
+		log.debug("Shuting down event dispatch thread");
+		this.executor.shutdown();
+	}
+
+	/**
+	 * @return true once {@link #shutdown()} was called, later changes are
+	 *         no longer dispatched
+	 */
+	public boolean isShutdown() {
+		return this.executor.isShutdown();
+	}
+
+	private void coalesce(final PropertyModifiedEvent change) {
+		final PropertyModifiedEvent previous = this.pending.remove(change
+				.getPropertyName());
+		if (null == previous) {
+			this.pending.put(change.getPropertyName(), change);
+		} else {
+			// Keep the value subscribers last saw, apply only the latest
+			this.coalescedCount.incrementAndGet();
+			this.pending.put(change.getPropertyName(),
+					new PropertyModifiedEvent(change.getPropertyName(),
+							previous.getOldValue(), change.getNewValue()));
+		}
+	}
+
+	private void scheduleDispatch() {
+		if (this.dispatchScheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(new Dispatcher());
+			} catch (final RejectedExecutionException e) {
+				this.dispatchScheduled.set(false);
+				log.error("Unable to schedule property change dispatch", e);
+			}
+		}
+	}
+
+	private class Dispatcher implements Runnable {
+
+		@Override
+		public void run() {
+			dispatchScheduled.set(false);
+			final List<PropertyModifiedEvent> changes;
+			final long generation;
+			synchronized (pending) {
+				changes = Lists.newArrayList(pending.values());
+				generation = pendingGeneration;
+				pending.clear();
+			}
+			if (!changes.isEmpty()) {
+				dispatchedCount.incrementAndGet();
+				eventBus.post(new PropertiesChangedEvent(generation, changes));
+			}
+		}
+	}
+
+}
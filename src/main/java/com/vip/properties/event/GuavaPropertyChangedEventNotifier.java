@@ -1,6 +1,7 @@
 package com.vip.properties.event;
 
 import com.google.common.eventbus.EventBus;
+import com.vip.properties.bean.PropertiesChangedEvent;
 import com.vip.properties.bean.PropertyModifiedEvent;
 import com.vip.properties.internal.ReloadablePropertyPostProcessor;
 
@@ -18,6 +19,11 @@ public class GuavaPropertyChangedEventNotifier implements
 		this.eventBus.post(propertyChangedEvent);
 	}
 
+	@Override
+	public void post(final PropertiesChangedEvent propertiesChangedEvent) {
+		this.eventBus.post(propertiesChangedEvent);
+	}
+
 	@Override
 	public void unregister(
 			final ReloadablePropertyPostProcessor ReloadablePropertyPostProcessor) {
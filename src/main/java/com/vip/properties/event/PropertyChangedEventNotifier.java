@@ -1,5 +1,6 @@
 package com.vip.properties.event;
 
+import com.vip.properties.bean.PropertiesChangedEvent;
 import com.vip.properties.bean.PropertyModifiedEvent;
 import com.vip.properties.internal.ReloadablePropertyPostProcessor;
 
@@ -7,6 +8,11 @@ public interface PropertyChangedEventNotifier {
 
 	void post(PropertyModifiedEvent propertyChangedEvent);
 
+	/**
+	 * Posts every change of a single reload as one event
+	 */
+	void post(PropertiesChangedEvent propertiesChangedEvent);
+
 	void unregister(ReloadablePropertyPostProcessor reloadablePropertyProcessor);
 
 	void register(ReloadablePropertyPostProcessor reloadablePropertyProcessor);
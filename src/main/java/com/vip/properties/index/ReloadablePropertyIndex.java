@@ -0,0 +1,196 @@
+package com.vip.properties.index;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Resources;
+
+/**
+ * The {@link com.vip.properties.ReloadableProperty} fields of every class
+ * compiled with the {@link ReloadablePropertyIndexProcessor}, read from all
+ * index files on the classpath. A class listed in the index has exactly the
+ * annotated fields recorded for it, possibly none, so it does not need to be
+ * scanned by reflection. Classes missing from the index have to be, as do
+ * classes whose number of declared fields no longer matches the index, e.g.
+ * recompiled without the processor. The index also records which classes
+ * declare {@link com.vip.properties.OnPropertyChange} methods, only their
+ * methods need to be scanned.
+ */
+public final class ReloadablePropertyIndex {
+
+	protected static Logger log = LoggerFactory
+			.getLogger(ReloadablePropertyIndex.class);
+
+	public static final String INDEX_LOCATION = "META-INF/reloadable-properties.index";
+
+	static final char SEPARATOR = '\t';
+
+	/** Suffix of the names of annotated methods in the index */
+	static final String METHOD_SUFFIX = "()";
+
+	/**
+	 * Name paired with the number of fields declared by a class in the
+	 * index, not a valid field name
+	 */
+	static final String FIELD_COUNT = "#";
+
+	private final Map<String, ImmutableMap<String, String>> classes;
+	private final Set<String> classesWithCallbacks;
+	private final Map<String, Integer> fieldCounts;
+
+	private ReloadablePropertyIndex(
+			final Map<String, ImmutableMap<String, String>> classes,
+			final Set<String> classesWithCallbacks,
+			final Map<String, Integer> fieldCounts) {
+		this.classes = classes;
+		this.classesWithCallbacks = classesWithCallbacks;
+		this.fieldCounts = fieldCounts;
+	}
+
+	/**
+	 * @param classLoader
+	 *            the class loader to read the index files from, or null for
+	 *            the system class loader
+	 */
+	public static ReloadablePropertyIndex load(final ClassLoader classLoader) {
+		final Map<String, ImmutableMap<String, String>> classes = Maps
+				.newHashMap();
+		final Set<String> classesWithCallbacks = Sets.newHashSet();
+		final Map<String, Integer> fieldCounts = Maps.newHashMap();
+		try {
+			final Enumeration<URL> urls = null == classLoader ? ClassLoader
+					.getSystemResources(INDEX_LOCATION) : classLoader
+					.getResources(INDEX_LOCATION);
+			while (urls.hasMoreElements()) {
+				read(urls.nextElement(), classes, classesWithCallbacks,
+						fieldCounts);
+			}
+		} catch (final IOException e) {
+			log.warn("Unable to read reloadable property index Exception [{}]",
+					e.getMessage());
+		}
+		log.info("Loaded reloadable property index of [{}] classes",
+				classes.size());
+		return new ReloadablePropertyIndex(classes, classesWithCallbacks,
+				fieldCounts);
+	}
+
+	private static void read(final URL url,
+			final Map<String, ImmutableMap<String, String>> classes,
+			final Set<String> classesWithCallbacks,
+			final Map<String, Integer> fieldCounts) throws IOException {
+		for (final String line : Resources.readLines(url, Charsets.UTF_8)) {
+			if (line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			// Class name followed by field or method name and property name
+			// pairs
+			final String[] parts = line.split(String.valueOf(SEPARATOR), -1);
+			if (parts.length % 2 == 0) {
+				log.warn("Ignoring malformed index entry [{}] in [{}]",
+						new Object[] { line, url });
+				continue;
+			}
+			final ImmutableMap.Builder<String, String> fields = ImmutableMap
+					.builder();
+			Integer fieldCount = null;
+			boolean hasCallbacks = false;
+			try {
+				for (int i = 1; i < parts.length; i += 2) {
+					if (FIELD_COUNT.equals(parts[i])) {
+						fieldCount = Integer.valueOf(parts[i + 1]);
+					} else if (parts[i].endsWith(METHOD_SUFFIX)) {
+						hasCallbacks = true;
+					} else {
+						fields.put(parts[i], parts[i + 1]);
+					}
+				}
+			} catch (final NumberFormatException e) {
+				log.warn("Ignoring malformed index entry [{}] in [{}]",
+						new Object[] { line, url });
+				continue;
+			}
+			if (null == fieldCount) {
+				// Written by an older processor, cannot be checked
+				continue;
+			}
+			if (hasCallbacks) {
+				classesWithCallbacks.add(parts[0]);
+			}
+			classes.put(parts[0], fields.build());
+			fieldCounts.put(parts[0], fieldCount);
+		}
+	}
+
+	/**
+	 * @return the property names of the annotated fields declared by the
+	 *         class keyed by field name, empty if it declares none, or null if
+	 *         the class is not indexed
+	 */
+	public Map<String, String> getProperties(final Class<?> type) {
+		if (!isIndexed(type)) {
+			if (this.classes.containsKey(type.getName())) {
+				log.warn(
+						"Index entry of class [{}] is out of date, scanning it",
+						type.getName());
+			}
+			return null;
+		}
+		return this.classes.get(type.getName());
+	}
+
+	/**
+	 * @return false if the class is indexed and declares no
+	 *         {@link com.vip.properties.OnPropertyChange} methods
+	 */
+	public boolean mayHaveCallbacks(final Class<?> type) {
+		return !isIndexed(type)
+				|| this.classesWithCallbacks.contains(type.getName());
+	}
+
+	/**
+	 * @return whether the class is indexed and still declares as many
+	 *         fields as when it was indexed
+	 */
+	private boolean isIndexed(final Class<?> type) {
+		final Integer fieldCount = this.fieldCounts.get(type.getName());
+		return null != fieldCount && fieldCount == declaredFieldCount(type);
+	}
+
+	/**
+	 * @return the number of fields declared in the source of the class,
+	 *         i.e. excluding those added by the compiler
+	 */
+	private static int declaredFieldCount(final Class<?> type) {
+		int count = 0;
+		for (final Field field : type.getDeclaredFields()) {
+			if (!field.isSynthetic()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int size() {
+		return this.classes.size();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("classes", this.classes.size())
+				.toString();
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.vip.properties.index;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import com.vip.properties.OnPropertyChange;
+import com.vip.properties.ReloadableProperty;
+
+/**
+ * Writes the {@link ReloadablePropertyIndex} of the classes being compiled.
+ * The compiler only runs it for compilations using {@link ReloadableProperty}
+ * or {@link OnPropertyChange}, every class of such a compilation is then
+ * listed with its number of fields and its annotated fields and methods, if
+ * any, so classes without any are never scanned at runtime. The index is
+ * rewritten by every compilation, classes not compiled in it (or anonymous
+ * and local classes, which are not visible here) are found by reflection.
+ * 
+ * Only depends on the JDK as it runs inside the compiler of the projects
+ * using the annotation.
+ */
+@SupportedAnnotationTypes({ "com.vip.properties.ReloadableProperty",
+		"com.vip.properties.OnPropertyChange" })
+public class ReloadablePropertyIndexProcessor extends AbstractProcessor {
+
+	private final Map<String, List<String>> index = new TreeMap<String, List<String>>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations,
+			final RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeIndex();
+		} else {
+			for (final TypeElement type : ElementFilter.typesIn(roundEnv
+					.getRootElements())) {
+				indexType(type);
+			}
+		}
+		// Never claim the annotations, other processors may want them
+		return false;
+	}
+
+	private void indexType(final TypeElement type) {
+		final List<String> entries = new ArrayList<String>();
+		final List<VariableElement> declaredFields = ElementFilter
+				.fieldsIn(type.getEnclosedElements());
+		entries.add(ReloadablePropertyIndex.FIELD_COUNT);
+		entries.add(String.valueOf(declaredFields.size()));
+		boolean indexable = true;
+		for (final VariableElement field : declaredFields) {
+			final ReloadableProperty annotation = field
+					.getAnnotation(ReloadableProperty.class);
+			if (null == annotation) {
+				continue;
+			}
+			if (annotation.value().indexOf(ReloadablePropertyIndex.SEPARATOR) >= 0
+					|| annotation.value().indexOf('\n') >= 0
+					|| annotation.value().indexOf('\r') >= 0) {
+				// Leave the class to be found by reflection
+				this.processingEnv.getMessager().printMessage(
+						Diagnostic.Kind.NOTE,
+						"Property name can not be indexed", field);
+				indexable = false;
+			}
+			entries.add(field.getSimpleName().toString());
+			entries.add(annotation.value());
+		}
+		for (final ExecutableElement method : ElementFilter.methodsIn(type
+				.getEnclosedElements())) {
+			if (null != method.getAnnotation(OnPropertyChange.class)) {
+				entries.add(method.getSimpleName()
+						+ ReloadablePropertyIndex.METHOD_SUFFIX);
+				entries.add("");
+			}
+		}
+		if (indexable) {
+			this.index.put(this.processingEnv.getElementUtils()
+					.getBinaryName(type).toString(), entries);
+		}
+		for (final TypeElement nested : ElementFilter.typesIn(type
+				.getEnclosedElements())) {
+			indexType(nested);
+		}
+	}
+
+	private void writeIndex() {
+		if (this.index.isEmpty()) {
+			return;
+		}
+		try {
+			final FileObject file = this.processingEnv.getFiler()
+					.createResource(StandardLocation.CLASS_OUTPUT, "",
+							ReloadablePropertyIndex.INDEX_LOCATION);
+			try (Writer writer = new OutputStreamWriter(
+					file.openOutputStream(), "UTF-8")) {
+				writer.write("# Classes compiled with their @ReloadableProperty fields and property names and @OnPropertyChange methods\n");
+				for (final Map.Entry<String, List<String>> entry : this.index
+						.entrySet()) {
+					writer.write(entry.getKey());
+					for (final String value : entry.getValue()) {
+						writer.write(ReloadablePropertyIndex.SEPARATOR);
+						writer.write(value);
+					}
+					writer.write('\n');
+				}
+			}
+		} catch (final IOException e) {
+			this.processingEnv.getMessager().printMessage(
+					Diagnostic.Kind.WARNING,
+					"Unable to write reloadable property index: "
+							+ e.getMessage());
+		}
+	}
+
+}
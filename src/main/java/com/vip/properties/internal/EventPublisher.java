@@ -1,10 +1,31 @@
 package com.vip.properties.internal;
 
+import java.util.Map;
+
 import org.springframework.core.io.Resource;
 
 public interface EventPublisher {
 
 	void onResourceChanged(Resource resource);
 
-	void onZookeeperChanged(byte[] resource);
-}
\ No newline at end of file
+	void onZookeeperChanged(String path, byte[] resource);
+
+	/**
+	 * @param root
+	 *            the znode whose children each hold one property
+	 * @param key
+	 *            the name of the changed child
+	 * @param value
+	 *            the data of the child, or null if it was removed
+	 */
+	void onZookeeperKeyChanged(String root, String key, byte[] value);
+
+	/**
+	 * @param root
+	 *            the znode whose children each hold one property
+	 * @param children
+	 *            the data of every child keyed by name, as read once the
+	 *            children are watched
+	 */
+	void onZookeeperKeysLoaded(String root, Map<String, byte[]> children);
+}
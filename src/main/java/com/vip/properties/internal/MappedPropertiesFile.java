@@ -0,0 +1,137 @@
+package com.vip.properties.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.google.common.base.Objects;
+import com.vip.properties.snapshot.HashedProperties;
+import com.vip.properties.snapshot.PropertiesParser;
+
+/**
+ * A properties file read through a memory mapping kept across reloads. The
+ * size, modification time and identity of the file are checked first so an
+ * unchanged file is not read at all, a changed one is parsed straight from
+ * the mapping reusing the values which did not change. The file is mapped
+ * again only once it is replaced or outgrows the mapping.
+ */
+final class MappedPropertiesFile {
+
+	private final Path file;
+	private final Charset charset;
+	private final boolean compact;
+
+	private MappedByteBuffer mapping;
+	private Object mappedFileKey;
+
+	private Object fileKey;
+	private long size = -1;
+	private long lastModified;
+	private long readAt;
+	private HashedProperties properties = HashedProperties.EMPTY;
+
+	/**
+	 * @param compact
+	 *            whether to hold the last properties read compacted, see
+	 *            {@link HashedProperties#compact()}
+	 */
+	MappedPropertiesFile(final Path file, final Charset charset,
+			final boolean compact) {
+		this.file = file;
+		this.charset = charset;
+		this.compact = compact;
+	}
+
+	/**
+	 * @return the properties of the file, those last read if its size,
+	 *         modification time and identity did not change since
+	 */
+	synchronized HashedProperties read() throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(
+				this.file, BasicFileAttributes.class);
+		final Object fileKey = attributes.fileKey();
+		final long size = attributes.size();
+		final long lastModified = attributes.lastModifiedTime().toMillis();
+		if (isUnchanged(fileKey, size, lastModified)) {
+			return this.properties;
+		}
+		final long readAt = System.currentTimeMillis();
+		final ByteBuffer data = map(fileKey, size);
+		try {
+			final HashedProperties parsed = PropertiesParser.parse(data,
+					this.charset, this.properties);
+			this.properties = this.compact ? parsed.compact() : parsed;
+		} catch (final IllegalArgumentException e) {
+			throw new IOException(String.format("Unable to parse [%s]",
+					this.file), e);
+		} catch (final InternalError e) {
+			// Reading a mapped page beyond the end of a file truncated
+			// meanwhile faults, its rewrite will be reported again
+			this.mapping = null;
+			this.size = -1;
+			throw new IOException(String.format(
+					"[%s] was truncated while being read", this.file), e);
+		}
+		// Only trust the attributes if the file did not change while read
+		final BasicFileAttributes after = Files.readAttributes(this.file,
+				BasicFileAttributes.class);
+		if (Objects.equal(fileKey, after.fileKey()) && size == after.size()
+				&& lastModified == after.lastModifiedTime().toMillis()) {
+			this.fileKey = fileKey;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.readAt = readAt;
+		} else {
+			this.size = -1;
+		}
+		return this.properties;
+	}
+
+	private boolean isUnchanged(final Object fileKey, final long size,
+			final long lastModified) {
+		return this.size == size
+				&& this.lastModified == lastModified
+				&& Objects.equal(this.fileKey, fileKey)
+				&& lastModified + ResourceFingerprint.MTIME_GRANULARITY_MILLIS < this.readAt;
+	}
+
+	/**
+	 * @return the first size bytes of the file, through the current mapping
+	 *         if it still maps the same file and is large enough
+	 */
+	private ByteBuffer map(final Object fileKey, final long size)
+			throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(String.format(
+					"[%s] is too large to be mapped", this.file));
+		}
+		// Without a file key a replaced file cannot be told apart
+		if (null == this.mapping || null == fileKey
+				|| !fileKey.equals(this.mappedFileKey)
+				|| size > this.mapping.capacity()) {
+			try (FileChannel channel = FileChannel.open(this.file,
+					StandardOpenOption.READ)) {
+				this.mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						size);
+			}
+			this.mappedFileKey = fileKey;
+		}
+		final ByteBuffer data = this.mapping.duplicate();
+		data.limit((int) size);
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("file", this.file)
+				.add("size", this.size)
+				.add("lastModified", this.lastModified).toString();
+	}
+
+}
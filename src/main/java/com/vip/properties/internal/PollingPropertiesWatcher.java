@@ -0,0 +1,188 @@
+package com.vip.properties.internal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Watches resources by polling their file attributes on a single scheduler
+ * thread, for file systems which do not deliver {@link PropertiesWatcher}
+ * events, e.g. NFS, or which replace files rather than modify them, e.g. a
+ * Kubernetes ConfigMap mount swapping its ..data symlink. Every poll
+ * resolves the real path of each resource through any symlinks and reads
+ * its file key, size and modification time in one call, a resource whose
+ * real path or file key changed, i.e. it was swapped or atomically renamed
+ * over, or whose modification time moved is hashed and reloaded only if its
+ * content changed.
+ */
+public class PollingPropertiesWatcher implements Runnable {
+
+	protected static Logger log = LoggerFactory
+			.getLogger(PollingPropertiesWatcher.class);
+
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 2000;
+
+	private final Resource[] locations;
+	private final EventPublisher eventPublisher;
+	private final long pollIntervalMillis;
+	private final boolean hashContent;
+
+	private final ScheduledExecutorService poller;
+	// Only accessed by the poller thread
+	private final Map<Resource, PolledFile> polledFiles = Maps.newHashMap();
+
+	private volatile Thread pollerThread;
+
+	/**
+	 * @param pollIntervalMillis
+	 *            the delay between the end of one poll of every resource and
+	 *            the start of the next
+	 * @param hashContent
+	 *            whether a changed resource is hashed and only reloaded if
+	 *            its content changed, false if the publisher reading it
+	 *            compares its content anyway
+	 */
+	public PollingPropertiesWatcher(final Resource[] locations,
+			final EventPublisher eventPublisher, final long pollIntervalMillis,
+			final boolean hashContent) {
+		this.locations = locations;
+		this.eventPublisher = eventPublisher;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.hashContent = hashContent;
+		this.poller = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+						.setNameFormat("properties-poller").setDaemon(true)
+						.build());
+	}
+
+	/**
+	 * Starts polling, the first poll records the current state of every
+	 * resource
+	 */
+	public void start() {
+		this.poller.scheduleWithFixedDelay(this, 0, this.pollIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	public void stop() {
+		log.debug("Shuting down properties poller");
+		this.poller.shutdownNow();
+	}
+
+	/**
+	 * @return the state of the poller thread, or null if it has not polled
+	 *         yet
+	 */
+	public Thread.State getPollerState() {
+		final Thread thread = this.pollerThread;
+		return null == thread ? null : thread.getState();
+	}
+
+	@Override
+	public void run() {
+		this.pollerThread = Thread.currentThread();
+		for (final Resource resource : this.locations) {
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+			try {
+				poll(resource);
+			} catch (final RuntimeException e) {
+				// Keep polling, an exception would cancel the schedule
+				log.error("Exception thrown when polling resource [{}]",
+						resource, e);
+			}
+		}
+	}
+
+	private void poll(final Resource resource) {
+		final PolledFile previous = this.polledFiles.get(resource);
+		final Path realPath;
+		final BasicFileAttributes attributes;
+		try {
+			realPath = resource.getFile().toPath().toRealPath();
+			attributes = Files.readAttributes(realPath,
+					BasicFileAttributes.class);
+		} catch (final NoSuchFileException e) {
+			// Missing mid swap or deleted, keep the last state to compare
+			// against once it is back. A file missing from the start is
+			// reloaded once it appears.
+			log.debug("Polled resource [{}] does not exist", resource);
+			if (null == previous) {
+				this.polledFiles.put(resource, PolledFile.MISSING);
+			}
+			return;
+		} catch (final IOException e) {
+			log.warn("Unable to poll resource [{}] Exception [{}]",
+					new Object[] { resource, e.getMessage() });
+			return;
+		}
+		if (null != previous && previous.isUnchanged(realPath, attributes)) {
+			return;
+		}
+		final ResourceFingerprint fingerprint;
+		try {
+			fingerprint = ResourceFingerprint.of(realPath.toFile(),
+					this.hashContent);
+		} catch (final IOException e) {
+			log.warn("Unable to fingerprint resource [{}]", resource);
+			return;
+		}
+		this.polledFiles.put(resource, new PolledFile(realPath,
+				attributes.fileKey(), fingerprint));
+		if (null == previous) {
+			return;
+		}
+		if (PolledFile.MISSING != previous
+				&& previous.fingerprint.hasSameContent(fingerprint)) {
+			log.debug("Content of [{}] unchanged, skipping reload", resource);
+			return;
+		}
+		log.debug("Polled resource [{}] changed, real path [{}]", resource,
+				realPath);
+		this.eventPublisher.onResourceChanged(resource);
+	}
+
+	/**
+	 * The real path, file key and fingerprint of a resource when last polled
+	 */
+	private static final class PolledFile {
+
+		// A resource which did not exist when first polled
+		static final PolledFile MISSING = new PolledFile(null, null, null);
+
+		private final Path realPath;
+		private final Object fileKey;
+		private final ResourceFingerprint fingerprint;
+
+		PolledFile(final Path realPath, final Object fileKey,
+				final ResourceFingerprint fingerprint) {
+			this.realPath = realPath;
+			this.fileKey = fileKey;
+			this.fingerprint = fingerprint;
+		}
+
+		boolean isUnchanged(final Path realPath,
+				final BasicFileAttributes attributes) {
+			return null != this.realPath && this.realPath.equals(realPath)
+					&& Objects.equal(this.fileKey, attributes.fileKey())
+					&& this.fingerprint.isUnchanged(attributes.size(),
+							attributes.lastModifiedTime().toMillis());
+		}
+	}
+
+}
@@ -14,44 +14,129 @@ import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
 
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Watches the parent directories of all given resources with a single
+ * {@link WatchService} owned by one event loop thread. Each directory is
+ * registered once, events are routed to the resources of the directory the
+ * {@link WatchKey} belongs to and reloads are handed off to a fixed size
+ * worker pool, so the number of threads does not grow with the number of
+ * watched directories.
+ */
 public class PropertiesWatcher implements Runnable {
 
 	protected static Logger log = LoggerFactory
 			.getLogger(PropertiesWatcher.class);
 
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+	public static final int DEFAULT_WORKER_THREADS = 2;
+
 	private final Resource[] locations;
 	private final EventPublisher eventPublisher;
+	private final long debounceMillis;
+	private final boolean hashContent;
 
 	private WatchService watchService;
-	final ExecutorService service;
+
+	private final Map<WatchKey, Path> watchedDirectories = Maps.newHashMap();
+	private final Map<Path, List<Resource>> directoryResources;
+
+	private final ScheduledExecutorService workers;
+	private final ConcurrentMap<Resource, PendingReload> pendingReloads = Maps
+			.newConcurrentMap();
+	private final ConcurrentMap<Resource, ResourceFingerprint> fingerprints = Maps
+			.newConcurrentMap();
+
+	private volatile Thread eventLoop;
 
 	public PropertiesWatcher(final Resource[] locations,
 			final EventPublisher eventPublisher) throws IOException {
+		this(locations, eventPublisher, DEFAULT_DEBOUNCE_MILLIS,
+				DEFAULT_WORKER_THREADS, true);
+	}
+
+	/**
+	 * @param debounceMillis
+	 *            how long a resource has to be quiet after a modification
+	 *            event before it is reloaded, so a file written in several
+	 *            chunks is only reloaded once
+	 * @param workerThreads
+	 *            the number of threads reloading changed resources
+	 * @param hashContent
+	 *            whether a resource whose size or modification time changed
+	 *            is hashed and only reloaded if its content changed, false
+	 *            if the publisher reading it compares its content anyway
+	 */
+	public PropertiesWatcher(final Resource[] locations,
+			final EventPublisher eventPublisher, final long debounceMillis,
+			final int workerThreads, final boolean hashContent)
+			throws IOException {
 		this.locations = locations;
 		this.eventPublisher = eventPublisher;
+		this.debounceMillis = debounceMillis;
+		this.hashContent = hashContent;
 		this.watchService = FileSystems.getDefault().newWatchService();
-		this.service = Executors.newCachedThreadPool();
+		this.directoryResources = findAvailableResourcePaths();
+		this.workers = Executors.newScheduledThreadPool(workerThreads,
+				new ThreadFactoryBuilder()
+						.setNameFormat("properties-reload-%d").setDaemon(true)
+						.build());
+	}
+
+	/**
+	 * Starts the event loop on its own daemon thread
+	 */
+	public void start() {
+		final Thread thread = new Thread(this, "properties-watcher");
+		thread.setDaemon(true);
+		this.eventLoop = thread;
+		thread.start();
 	}
 
 	@Override
 	public void run() {
-		final Map<Path, List<Resource>> pathsAndResources = findAvailableResourcePaths();
-		for (final Path pathToWatch : pathsAndResources.keySet()) {
-			final List<Resource> availableResources = pathsAndResources
-					.get(pathToWatch);
-			log.debug("Starting ResourceWatcher on file {}", availableResources);
-			this.service.submit(new ResourceWatcher(pathToWatch,
-					availableResources));
+		this.eventLoop = Thread.currentThread();
+		try {
+			// Register first, so a change made while fingerprinting is
+			// still reported
+			registerDirectories();
+			for (final Resource resource : this.locations) {
+				fingerprint(resource);
+			}
+			log.debug("START");
+			while (!Thread.currentThread().isInterrupted()
+					&& !this.watchedDirectories.isEmpty()) {
+				final WatchKey watchKey = this.watchService.take();
+				final Path directory = this.watchedDirectories.get(watchKey);
+				if (null != directory) {
+					handleEvents(directory, watchKey);
+				}
+				if (!watchKey.reset()) {
+					log.debug("Directory [{}] is no longer accessible",
+							directory);
+					this.watchedDirectories.remove(watchKey);
+				}
+			}
+		} catch (final ClosedWatchServiceException | InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final Exception e) {
+			log.error("Exception thrown when watching resources, Exception:",
+					e);
+			stop();
 		}
+		log.debug("END");
 	}
 
 	public void stop() {
@@ -60,16 +145,54 @@ public class PropertiesWatcher implements Runnable {
 			this.watchService.close();
 
 			log.debug("Shuting down Thread Service");
-			this.service.shutdownNow();
+			this.workers.shutdownNow();
 		} catch (final IOException e) {
 			log.error("Unable to stop file watcher", e);
 		}
 	}
 
+	/**
+	 * @return the state of the event loop thread, or null if not started
+	 */
+	public Thread.State getEventLoopState() {
+		final Thread thread = this.eventLoop;
+		return null == thread ? null : thread.getState();
+	}
+
+	private void registerDirectories() throws IOException {
+		for (final Path directory : this.directoryResources.keySet()) {
+			log.debug("Watching for modifcation events for path {}, files {}",
+					directory, this.directoryResources.get(directory));
+			this.watchedDirectories.put(
+					directory.register(this.watchService, ENTRY_MODIFY),
+					directory);
+		}
+	}
+
+	private void handleEvents(final Path directory, final WatchKey watchKey) {
+		final List<Resource> resources = this.directoryResources
+				.get(directory);
+		for (final WatchEvent<?> event : watchKey.pollEvents()) {
+			log.debug("File modification Event Triggered");
+			if (!(event.context() instanceof Path)) {
+				continue;
+			}
+			final Path target = (Path) event.context();
+			final Resource resource = getResource(resources, target);
+			if (null != resource) {
+				logNewEvent(directory, event.kind(), target);
+				scheduleReload(resource);
+			}
+		}
+	}
+
 	private Map<Path, List<Resource>> findAvailableResourcePaths() {
 		final Map<Path, List<Resource>> map = Maps.newHashMap();
 		for (final Resource resource : this.locations) {
 			final Path resourceParentPath = getResourceParentPath(resource);
+			if (null == resourceParentPath) {
+				continue;
+			}
 			if (null == map.get(resourceParentPath)) {
 				map.put(resourceParentPath, new ArrayList<Resource>());
 			}
@@ -91,103 +214,111 @@ public class PropertiesWatcher implements Runnable {
 		this.eventPublisher.onResourceChanged(resource);
 	}
 
-	private WatchService getWatchService() {
-		return this.watchService;
+	/**
+	 * Schedules a reload of the resource once the debounce window has passed
+	 * without further modification events for it.
+	 */
+	private void scheduleReload(final Resource resource) {
+		final PendingReload reload = new PendingReload(resource);
+		final PendingReload previous = this.pendingReloads.put(resource,
+				reload);
+		reload.schedule();
+		if (null != previous) {
+			previous.cancel();
+		}
 	}
 
-	private class ResourceWatcher implements Runnable {
-
-		private final Path path;
-		private final List<Resource> resources;
+	private boolean contentChanged(final Resource resource) {
+		final ResourceFingerprint previous = this.fingerprints.get(resource);
+		try {
+			if (null != previous && previous.isUnchanged(resource.getFile())) {
+				return false;
+			}
+		} catch (final IOException e) {
+			return true;
+		}
+		final ResourceFingerprint current = fingerprint(resource);
+		return null == previous || null == current
+				|| !previous.hasSameContent(current);
+	}
 
-		public ResourceWatcher(final Path path, final List<Resource> resources) {
-			this.path = path;
-			this.resources = resources;
+	private ResourceFingerprint fingerprint(final Resource resource) {
+		try {
+			final ResourceFingerprint fingerprint = ResourceFingerprint.of(
+					resource.getFile(), this.hashContent);
+			this.fingerprints.put(resource, fingerprint);
+			return fingerprint;
+		} catch (final IOException e) {
+			log.warn("Unable to fingerprint resource [{}]", resource);
+			this.fingerprints.remove(resource);
+			return null;
 		}
+	}
 
-		@Override
-		public void run() {
-			try {
-				log.debug("START");
-				log.debug("Watching for modifcation events for path {}",
-						this.path.toString());
-				while (!Thread.currentThread().isInterrupted()) {
-					final WatchKey pathBeingWatched = this.path.register(
-							getWatchService(), ENTRY_MODIFY);
-
-					WatchKey watchKey = null;
-					try {
-						watchKey = getWatchService().take();
-					} catch (final ClosedWatchServiceException
-							| InterruptedException e) {
-						log.debug("END");
-						Thread.currentThread().interrupt();
-					}
-
-					if (watchKey != null) {
-						for (final WatchEvent<?> event : pathBeingWatched
-								.pollEvents()) {
-							log.debug("File modification Event Triggered");
-							final Path target = path(event.context());
-							if (isValidTargetFile(target)) {
-								final Path watchedPath = path(watchKey
-										.watchable());
-								final Kind<?> eventKind = event.kind();
-
-								logNewEvent(watchedPath, eventKind, target);
-								publishResourceChangedEvent(getResource(target));
-							}
-						}
-						if (!watchKey.reset()) {
-							log.debug("END");
-							Thread.currentThread().interrupt();
-							return;
-						}
-					}
-				}
-			} catch (final Exception e) {
-				log.error(
-						"Exception thrown when watching resources, path {}\nException:",
-						this.path.toString(), e.getMessage());
-				stop();
+	private void logNewEvent(final Path watchedPath, final Kind<?> eventKind,
+			final Path target) {
+		log.debug("Watched Resource changed, modified file [{}]", target
+				.getFileName().toString());
+		log.debug("  Event Kind [{}]", eventKind);
+		log.debug("      Target [{}]", target);
+		log.debug("Watched Path [{}]", watchedPath);
+	}
+
+	private Resource getResource(final List<Resource> resources,
+			final Path target) {
+		for (final Resource resource : resources) {
+			if (pathMatchesResource(target, resource)) {
+				return resource;
 			}
 		}
+		return null;
+	}
 
-		private void logNewEvent(final Path watchedPath,
-				final Kind<?> eventKind, final Path target) {
-			log.debug("Watched Resource changed, modified file [{}]", target
-					.getFileName().toString());
-			log.debug("  Event Kind [{}]", eventKind);
-			log.debug("      Target [{}]", target);
-			log.debug("Watched Path [{}]", watchedPath);
-		}
+	private boolean pathMatchesResource(final Path target,
+			final Resource resource) {
+		return target.getFileName().toString().equals(resource.getFilename());
+	}
+
+	/**
+	 * A reload scheduled after the debounce window, removing itself from the
+	 * pending reloads only if no later modification replaced it meanwhile
+	 */
+	private final class PendingReload implements Runnable {
 
-		private Path path(final Object object) {
-			return (Path) object;
+		private final Resource resource;
+		private volatile ScheduledFuture<?> future;
+		private volatile boolean cancelled;
+
+		PendingReload(final Resource resource) {
+			this.resource = resource;
 		}
 
-		private boolean isValidTargetFile(final Path target) {
-			for (final Resource resource : this.resources) {
-				if (pathMatchesResource(target, resource)) {
-					return true;
-				}
-			}
-			return false;
+		void schedule() {
+			this.future = PropertiesWatcher.this.workers.schedule(this,
+					PropertiesWatcher.this.debounceMillis,
+					TimeUnit.MILLISECONDS);
 		}
 
-		public Resource getResource(final Path target) {
-			for (final Resource resource : this.resources) {
-				if (pathMatchesResource(target, resource)) {
-					return resource;
-				}
+		void cancel() {
+			this.cancelled = true;
+			final ScheduledFuture<?> future = this.future;
+			if (null != future) {
+				future.cancel(false);
 			}
-			return null;
 		}
 
-		private boolean pathMatchesResource(final Path target,
-				final Resource resource) {
-			return target.getFileName().toString()
-					.equals(resource.getFilename());
+		@Override
+		public void run() {
+			PropertiesWatcher.this.pendingReloads.remove(this.resource, this);
+			if (this.cancelled) {
+				return;
+			}
+			if (contentChanged(this.resource)) {
+				publishResourceChangedEvent(this.resource);
+			} else {
+				log.debug("Content of [{}] unchanged, skipping reload",
+						this.resource);
+			}
 		}
 	}
 
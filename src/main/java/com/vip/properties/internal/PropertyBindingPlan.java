@@ -0,0 +1,81 @@
+package com.vip.properties.internal;
+
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.vip.properties.accessor.FieldAccessor;
+
+/**
+ * The {@link com.vip.properties.ReloadableProperty} fields of a class and
+ * its superclasses with their accessors, and its
+ * {@link com.vip.properties.OnPropertyChange} callbacks, found and validated
+ * once per class so binding another instance only has to write the fields.
+ */
+final class PropertyBindingPlan {
+
+	/** Plan of every class without annotated fields */
+	static final PropertyBindingPlan EMPTY = new PropertyBindingPlan(
+			ImmutableList.<Binding> of(), ImmutableList.<PropertyCallback> of());
+
+	private final ImmutableList<Binding> bindings;
+	private final ImmutableList<PropertyCallback> callbacks;
+
+	private PropertyBindingPlan(final ImmutableList<Binding> bindings,
+			final ImmutableList<PropertyCallback> callbacks) {
+		this.bindings = bindings;
+		this.callbacks = callbacks;
+	}
+
+	static PropertyBindingPlan of(final List<Binding> bindings,
+			final List<PropertyCallback> callbacks) {
+		return bindings.isEmpty() && callbacks.isEmpty() ? EMPTY
+				: new PropertyBindingPlan(ImmutableList.copyOf(bindings),
+						ImmutableList.copyOf(callbacks));
+	}
+
+	ImmutableList<Binding> getBindings() {
+		return this.bindings;
+	}
+
+	ImmutableList<PropertyCallback> getCallbacks() {
+		return this.callbacks;
+	}
+
+	boolean isEmpty() {
+		return this.bindings.isEmpty() && this.callbacks.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("bindings", this.bindings)
+				.add("callbacks", this.callbacks).toString();
+	}
+
+	static final class Binding {
+
+		private final FieldAccessor accessor;
+		private final String propertyName;
+
+		Binding(final FieldAccessor accessor, final String propertyName) {
+			this.accessor = accessor;
+			this.propertyName = propertyName;
+		}
+
+		FieldAccessor getAccessor() {
+			return this.accessor;
+		}
+
+		String getPropertyName() {
+			return this.propertyName;
+		}
+
+		@Override
+		public String toString() {
+			return Objects.toStringHelper(this)
+					.add("field", this.accessor.getField())
+					.add("propertyName", this.propertyName).toString();
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.vip.properties.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.util.ReflectionUtils;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.vip.properties.OnPropertyChange;
+import com.vip.properties.bean.PropertiesChangedEvent;
+
+/**
+ * An {@link OnPropertyChange} method, looked up and adapted once per class
+ * into a method handle taking the bean and the arguments as a single array,
+ * so invoking it on any bean of the class is one exact invocation.
+ */
+final class PropertyCallback {
+
+	private final Method method;
+	private final ImmutableList<String> propertyNames;
+	private final MethodHandle invoker;
+	private final boolean takesEvent;
+	private final boolean takesValues;
+
+	private PropertyCallback(final Method method,
+			final ImmutableList<String> propertyNames,
+			final MethodHandle invoker) {
+		this.method = method;
+		this.propertyNames = propertyNames;
+		this.invoker = invoker;
+		final Class<?>[] parameters = method.getParameterTypes();
+		this.takesEvent = parameters.length == 1
+				&& parameters[0] == PropertiesChangedEvent.class;
+		this.takesValues = !this.takesEvent && parameters.length > 0;
+	}
+
+	/**
+	 * @throws BeanInitializationException
+	 *             if the method parameters do not match the properties
+	 */
+	static PropertyCallback of(final Method method,
+			final OnPropertyChange annotation) {
+		final ImmutableList<String> propertyNames = ImmutableList
+				.copyOf(annotation.value());
+		final Class<?>[] parameters = method.getParameterTypes();
+		if (propertyNames.isEmpty()
+				|| !(parameters.length == 0
+						|| (parameters.length == 1 && parameters[0] == PropertiesChangedEvent.class) || parameters.length == 2 * propertyNames
+						.size())) {
+			throw new BeanInitializationException(
+					String.format(
+							"Method [%s] of class [%s] annotated with @OnPropertyChange must take no parameters, "
+									+ "a PropertiesChangedEvent or an old and new value per property of %s",
+							method.getName(), method.getDeclaringClass()
+									.getCanonicalName(), propertyNames));
+		}
+		for (int i = 0; i < parameters.length - 1; i += 2) {
+			if (parameters[i] != parameters[i + 1]) {
+				throw new BeanInitializationException(String.format(
+						"Old and new value parameters of property [%s] of method [%s] of class [%s] differ in type",
+						propertyNames.get(i / 2), method.getName(), method
+								.getDeclaringClass().getCanonicalName()));
+			}
+		}
+		try {
+			ReflectionUtils.makeAccessible(method);
+			final MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			return new PropertyCallback(method, propertyNames, handle.asType(
+					handle.type().generic()).asSpreader(Object[].class,
+					parameters.length + 1));
+		} catch (final IllegalAccessException e) {
+			throw new BeanInitializationException(String.format(
+					"Unable to access method [%s] of class [%s]",
+					method.getName(), method.getDeclaringClass()
+							.getCanonicalName()), e);
+		}
+	}
+
+	ImmutableList<String> getPropertyNames() {
+		return this.propertyNames;
+	}
+
+	Method getMethod() {
+		return this.method;
+	}
+
+	boolean takesEvent() {
+		return this.takesEvent;
+	}
+
+	boolean takesValues() {
+		return this.takesValues;
+	}
+
+	/**
+	 * @return the type of the old and new value parameters of the property
+	 *         at the given index
+	 */
+	Class<?> getValueType(final int property) {
+		return this.method.getParameterTypes()[2 * property];
+	}
+
+	/**
+	 * @param arguments
+	 *            the bean followed by the method arguments
+	 */
+	Object invoke(final Object[] arguments) throws Throwable {
+		return (Object) this.invoker.invokeExact(arguments);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("method", this.method)
+				.add("propertyNames", this.propertyNames).toString();
+	}
+
+}
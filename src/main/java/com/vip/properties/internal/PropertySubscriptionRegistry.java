@@ -0,0 +1,199 @@
+package com.vip.properties.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.vip.properties.accessor.FieldAccessor;
+import com.vip.properties.bean.BeanPropertyHolder;
+
+/**
+ * The bean fields and {@link com.vip.properties.OnPropertyChange} callbacks
+ * subscribed to each property name. Beans are weakly referenced so the registry
+ * does not keep prototype beans alive, subscriptions of collected beans are
+ * removed through a reference queue whenever the registry is used. Safe for
+ * concurrent subscription during bean creation and lookup from reloading
+ * threads.
+ */
+public class PropertySubscriptionRegistry {
+
+	private final ConcurrentMap<String, Set<Subscription>> subscriptions = Maps
+			.newConcurrentMap();
+	private final ConcurrentMap<String, Set<Subscription>> callbacks = Maps
+			.newConcurrentMap();
+	private final ReferenceQueue<Object> collectedBeans = new ReferenceQueue<Object>();
+
+	public void subscribe(final Object bean, final FieldAccessor accessor,
+			final String propertyName) {
+		expungeCollectedBeans();
+		final Set<Subscription> subscribers = subscribers(this.subscriptions,
+				propertyName);
+		subscribers.add(new Subscription(bean, accessor, subscribers,
+				this.collectedBeans));
+	}
+
+	/**
+	 * Subscribes the callback of the bean to every property it names
+	 */
+	void subscribe(final Object bean, final PropertyCallback callback) {
+		expungeCollectedBeans();
+		for (final String propertyName : callback.getPropertyNames()) {
+			final Set<Subscription> subscribers = subscribers(this.callbacks,
+					propertyName);
+			subscribers.add(new Subscription(bean, callback, subscribers,
+					this.collectedBeans));
+		}
+	}
+
+	private static Set<Subscription> subscribers(
+			final ConcurrentMap<String, Set<Subscription>> subscriptions,
+			final String propertyName) {
+		final Set<Subscription> subscribers = subscriptions.get(propertyName);
+		if (null != subscribers) {
+			return subscribers;
+		}
+		final Set<Subscription> created = Sets.newSetFromMap(Maps
+				.<Subscription, Boolean> newConcurrentMap());
+		final Set<Subscription> raced = subscriptions.putIfAbsent(
+				propertyName, created);
+		return null == raced ? created : raced;
+	}
+
+	/**
+	 * @return holders of the live beans subscribed to the property, empty if
+	 *         there are none
+	 */
+	public List<BeanPropertyHolder> getSubscribers(final String propertyName) {
+		expungeCollectedBeans();
+		final Set<Subscription> subscribers = this.subscriptions
+				.get(propertyName);
+		if (null == subscribers) {
+			return Collections.emptyList();
+		}
+		final List<BeanPropertyHolder> holders = Lists
+				.newArrayListWithCapacity(subscribers.size());
+		for (final Subscription subscription : subscribers) {
+			final Object bean = subscription.get();
+			if (null != bean) {
+				holders.add(new BeanPropertyHolder(bean,
+						(FieldAccessor) subscription.binding, propertyName));
+			}
+		}
+		return holders;
+	}
+
+	/**
+	 * @return the live beans with a callback on the property, and the
+	 *         callback
+	 */
+	List<Map.Entry<Object, PropertyCallback>> getCallbacks(
+			final String propertyName) {
+		expungeCollectedBeans();
+		final Set<Subscription> subscribers = this.callbacks.get(propertyName);
+		if (null == subscribers) {
+			return Collections.emptyList();
+		}
+		final List<Map.Entry<Object, PropertyCallback>> callbacks = Lists
+				.newArrayListWithCapacity(subscribers.size());
+		for (final Subscription subscription : subscribers) {
+			final Object bean = subscription.get();
+			if (null != bean) {
+				callbacks.add(Maps.immutableEntry(bean,
+						(PropertyCallback) subscription.binding));
+			}
+		}
+		return callbacks;
+	}
+
+	/**
+	 * @return the number of live beans subscribed to the property
+	 */
+	public int getSubscriberCount(final String propertyName) {
+		return getSubscribers(propertyName).size();
+	}
+
+	/**
+	 * @return the number of live bean fields subscribed to each property
+	 *         with at least one
+	 */
+	public Map<String, Integer> getSubscriberCounts() {
+		expungeCollectedBeans();
+		return liveCounts(this.subscriptions);
+	}
+
+	/**
+	 * @return the number of live bean callbacks subscribed to each property
+	 *         with at least one
+	 */
+	public Map<String, Integer> getCallbackCounts() {
+		expungeCollectedBeans();
+		return liveCounts(this.callbacks);
+	}
+
+	private static Map<String, Integer> liveCounts(
+			final ConcurrentMap<String, Set<Subscription>> subscriptions) {
+		final ImmutableMap.Builder<String, Integer> counts = ImmutableMap
+				.builder();
+		for (final Map.Entry<String, Set<Subscription>> entry : subscriptions
+				.entrySet()) {
+			int live = 0;
+			for (final Subscription subscription : entry.getValue()) {
+				if (null != subscription.get()) {
+					live++;
+				}
+			}
+			if (live > 0) {
+				counts.put(entry.getKey(), live);
+			}
+		}
+		return counts.build();
+	}
+
+	/**
+	 * Removes the subscriptions of beans which have been garbage collected.
+	 * Emptied sets are kept, removing them could race with a subscription
+	 * and the number of property names is bounded.
+	 */
+	private void expungeCollectedBeans() {
+		Reference<?> reference;
+		while (null != (reference = this.collectedBeans.poll())) {
+			final Subscription subscription = (Subscription) reference;
+			subscription.owner.remove(subscription);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("properties", this.subscriptions.size()).toString();
+	}
+
+	/**
+	 * A field accessor or callback of a weakly referenced bean, compared by
+	 * identity
+	 */
+	private static final class Subscription extends WeakReference<Object> {
+
+		private final Object binding;
+		private final Set<Subscription> owner;
+
+		private Subscription(final Object bean, final Object binding,
+				final Set<Subscription> owner,
+				final ReferenceQueue<Object> queue) {
+			super(bean, queue);
+			this.binding = binding;
+			this.owner = owner;
+		}
+	}
+
+}
@@ -1,33 +1,63 @@
 package com.vip.properties.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.Iterator;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
 import org.springframework.util.StringUtils;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vip.properties.bean.PropertiesChangedEvent;
 import com.vip.properties.bean.PropertyModifiedEvent;
+import com.vip.properties.event.AsyncCoalescingPropertyChangedEventNotifier;
 import com.vip.properties.event.GuavaPropertyChangedEventNotifier;
 import com.vip.properties.event.PropertyChangedEventNotifier;
 import com.vip.properties.internal.ZookeeperWatcher.ZkClientFacotry;
 import com.vip.properties.resolver.PropertyResolver;
 import com.vip.properties.resolver.SubstitutingPropertyResolver;
+import com.vip.properties.snapshot.HashedProperties;
+import com.vip.properties.snapshot.PropertiesDiff;
+import com.vip.properties.snapshot.PropertiesParser;
+import com.vip.properties.snapshot.PropertiesSnapshot;
+import com.vip.properties.snapshot.PropertyLayers;
+import com.vip.properties.snapshot.SnapshotScope;
 
 public class ReadablePropertySourcesPlaceholderConfigurer extends
-		PropertySourcesPlaceholderConfigurer implements EventPublisher {
+		PropertySourcesPlaceholderConfigurer implements EventPublisher,
+		DisposableBean {
 
 	protected static Logger log = LoggerFactory
 			.getLogger(ReadablePropertySourcesPlaceholderConfigurer.class);
@@ -35,107 +65,645 @@ public class ReadablePropertySourcesPlaceholderConfigurer extends
 	private final PropertyChangedEventNotifier eventNotifier;
 	private final PropertyResolver propertyResolver;
 
+	private static final String LOCAL_SOURCE = "local properties";
+
+	private static final String XML_FILE_EXTENSION = ".xml";
+
+	/**
+	 * Prefix of locations naming a znode whose children each hold one
+	 * property, the name of the child being the key
+	 */
+	public static final String ZOOKEEPER_KEYS_PREFIX = "zookeeper-keys:";
+
+	/**
+	 * Prefix of file or classpath locations to watch by polling their file
+	 * attributes rather than through a WatchService, e.g.
+	 * poll:file:/etc/config/app.properties
+	 */
+	public static final String POLL_PREFIX = "poll:";
+
 	private String fileEncoding;
 
+	private boolean ignoreResourceNotFound = false;
+
 	protected boolean zkOverride = false;
 
-	private Properties properties;
+	private long zkStartupTimeoutMillis = ZookeeperBootstrap.DEFAULT_TIMEOUT_MILLIS;
+	private ZookeeperBootstrap zookeeperBootstrap;
+
+	private static final long ZK_RECONCILE_RETRY_MILLIS = 5000;
+	private ZookeeperSnapshotCache zkSnapshotCache;
+	private final Object zookeeperLock = new Object();
+	private volatile boolean zookeeperReconciled = true;
+	private boolean zookeeperWatchRequested = false;
+	private volatile CuratorFramework zookeeperClient;
+	private volatile ScheduledExecutorService zookeeperReconciler;
+	private ZookeeperWatcher zookeeperWatcher;
+
+	private long reloadDebounceMillis = PropertiesWatcher.DEFAULT_DEBOUNCE_MILLIS;
+	private int reloadWorkerThreads = PropertiesWatcher.DEFAULT_WORKER_THREADS;
+	private PropertiesWatcher propertiesWatcher;
+
+	private long pollIntervalMillis = PollingPropertiesWatcher.DEFAULT_POLL_INTERVAL_MILLIS;
+	private PollingPropertiesWatcher pollingWatcher;
+
+	private boolean mapPropertiesFiles = true;
+	private final ConcurrentMap<Resource, MappedPropertiesFile> mappedFiles = Maps
+			.newConcurrentMap();
+
+	private boolean compactProperties = false;
+
+	private static final String MBEAN_NAME = "com.vip.properties:type=ReloadableProperties,name=%s";
+	private final ReloadablePropertiesMonitor monitor = new ReloadablePropertiesMonitor(
+			this);
+	private boolean registerMBean = false;
+	private String beanName;
+	private ObjectName objectName;
+	private volatile PropertySubscriptionRegistry subscriptions;
+
+	private final AtomicReference<PropertiesSnapshot> snapshot = new AtomicReference<PropertiesSnapshot>(
+			PropertiesSnapshot.EMPTY);
+	private final Object reloadLock = new Object();
+	private volatile PropertyLayers layers = PropertyLayers.of(
+			Collections.<String> emptyList(),
+			Collections.<String, HashedProperties> emptyMap());
+
 	private Resource[] resourcesPath;
+	private Resource[] polledResourcesPath = new Resource[0];
 	private String[] zookeeperPath;
+	private String[] zookeeperKeyPath;
 
 	public ReadablePropertySourcesPlaceholderConfigurer() {
-		this.eventNotifier = new GuavaPropertyChangedEventNotifier();
+		this(new GuavaPropertyChangedEventNotifier());
+	}
+
+	/**
+	 * @param eventNotifier
+	 *            the notifier used to dispatch change events, e.g. an
+	 *            {@link AsyncCoalescingPropertyChangedEventNotifier} to
+	 *            update beans off the watcher threads, which is shut down
+	 *            with the configurer
+	 */
+	public ReadablePropertySourcesPlaceholderConfigurer(
+			final PropertyChangedEventNotifier eventNotifier) {
+		this.eventNotifier = eventNotifier;
 		this.propertyResolver = new SubstitutingPropertyResolver();
 	}
 
 	@Override
 	protected void loadProperties(final Properties props) throws IOException {
+		final Map<String, HashedProperties> layers = Maps.newHashMap();
+		layers.put(LOCAL_SOURCE, HashedProperties.of(localProperties()));
 		if (resourcesPath.length != 0) {
-			loadPropertiesFromResource(props);
+			loadPropertiesFromResource(layers);
 		}
-		if (zookeeperPath.length != 0) {
-			loadPropertiesFromZk(props);
+		if (!zookeeperSources().isEmpty()) {
+			loadPropertiesFromZk(layers);
+		}
+		for (final Map.Entry<String, HashedProperties> layer : layers
+				.entrySet()) {
+			layer.setValue(compact(layer.getValue()));
+		}
+		final PropertyLayers loadedLayers = PropertyLayers.of(sourceOrder(),
+				layers);
+		final Map<String, String> merged = loadedLayers.merge();
+		props.putAll(merged);
+		synchronized (this.reloadLock) {
+			this.layers = loadedLayers;
+			this.snapshot.set(PropertiesSnapshot.of(
+					PropertiesSnapshot.nextGeneration(), merged,
+					this.compactProperties));
+		}
+		if (!this.zookeeperReconciled) {
+			reconcileWithZookeeper();
+		}
+		if (this.registerMBean && null == this.objectName) {
+			registerMBean();
 		}
-		this.properties = props;
 	}
 
 	@Override
 	public void onResourceChanged(final Resource resource) {
+		final long start = System.nanoTime();
 		try {
-			final Properties reloadedProperties = PropertiesLoaderUtils
-					.loadProperties(resource);
-			for (final String key : this.properties.stringPropertyNames()) {
-
-				final String oldValue = this.properties.getProperty(key);
-				final String newValue = reloadedProperties.getProperty(key);
-
-				if (propertyExistsAndNotNull(key, newValue)
-						&& propertyChange(oldValue, newValue)) {
-					// Update locally stored copy of properties
-					this.properties.setProperty(key, newValue);
-					// Post change event to notify any potential listeners
-					this.eventNotifier.post(new PropertyModifiedEvent(key,
-							oldValue, newValue));
-				}
-			}
+			applyReloadedProperties(sourceName(resource), loadLayer(resource));
+			this.monitor.reloaded(sourceName(resource), start);
 		} catch (final IOException e) {
+			this.monitor.reloadFailed();
 			log.error("Failed to reload properties file once change", e);
 		}
 	}
 
 	@Override
-	public void onZookeeperChanged(byte[] resource) {
-		final Properties reloadedProperties = new Properties();
+	public void onZookeeperChanged(final String path, final byte[] resource) {
+		final long start = System.nanoTime();
 		try {
-			String result = new String(resource, this.fileEncoding);
-			reloadedProperties.load(new StringReader(result));
-			for (final String property : this.properties.stringPropertyNames()) {
-				final String oldValue = this.properties.getProperty(property);
-				final String newValue = reloadedProperties
-						.getProperty(property);
-				if (propertyExistsAndNotNull(property, newValue)
-						&& propertyChange(oldValue, newValue)) {
-					// Update locally stored copy of properties
-					this.properties.setProperty(property, newValue);
-					// Post change event to notify any potential listeners
-					this.eventNotifier.post(new PropertyModifiedEvent(property,
-							oldValue, newValue));
+			applyReloadedProperties(path, parseZookeeperData(path, resource));
+			persistZookeeperSnapshot();
+			this.monitor.reloaded(path, start);
+		} catch (IOException e) {
+			this.monitor.reloadFailed();
+			log.error("Failed to reload properties file once change", e);
+		}
+	}
+
+	/**
+	 * Replaces the layer of a per key znode layout with the children read
+	 * once they are watched, so changes made between the startup load and
+	 * the start of the watch are applied too.
+	 */
+	@Override
+	public void onZookeeperKeysLoaded(final String root,
+			final Map<String, byte[]> children) {
+		final long start = System.nanoTime();
+		try {
+			applyReloadedProperties(root, keysLayer(children));
+			persistZookeeperSnapshot();
+			this.monitor.reloaded(root, start);
+		} catch (IOException e) {
+			this.monitor.reloadFailed();
+			log.error("Failed to reload zookeeper properties once watched", e);
+		}
+	}
+
+	/**
+	 * Applies the change of a single key of a per key znode layout, without
+	 * parsing or diffing the rest of its properties. The layer and the
+	 * snapshot share every bucket but the one of the key, so a change costs
+	 * time logarithmic in the number of keys, unless the properties are
+	 * compact, which are encoded again whole, or the key is or was a
+	 * placeholder template, which rebuilds the templates. The snapshot file
+	 * is written later by its writer thread.
+	 */
+	@Override
+	public void onZookeeperKeyChanged(final String root, final String key,
+			final byte[] value) {
+		final long start = System.nanoTime();
+		final PropertiesChangedEvent changes;
+		try {
+			final String newValue = null == value ? null
+					: zookeeperString(value);
+			synchronized (this.reloadLock) {
+				final HashedProperties layer = this.layers.getLayer(root);
+				if (null == layer) {
+					log.warn("Ignoring change of unknown zookeeper root [{}]",
+							root);
+					return;
+				}
+				if (!propertyChange(layer.get(key), newValue)) {
+					return;
 				}
+				changes = swapLayer(root, layer.withProperty(key, newValue),
+						Collections.singleton(key));
 			}
 		} catch (IOException e) {
-			log.error("Failed to reload properties file once change", e);
+			this.monitor.reloadFailed();
+			log.error("Failed to reload zookeeper property once change", e);
+			return;
+		}
+		post(changes);
+		persistZookeeperSnapshot();
+		this.monitor.reloaded(root + "/" + key, start);
+	}
+
+	/**
+	 * Reloads every properties file and znode now, regardless of the
+	 * watchers
+	 */
+	public void reload() {
+		for (final Resource resource : this.resourcesPath) {
+			onResourceChanged(resource);
+		}
+		if (!zookeeperSources().isEmpty()) {
+			final long start = System.nanoTime();
+			try {
+				reloadFromZookeeper();
+				this.monitor.reloaded("zookeeper", start);
+			} catch (final IOException e) {
+				this.monitor.reloadFailed();
+				log.error("Failed to reload zookeeper properties", e);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the layer of the reloaded source, diffs it against the
+	 * previous layer and publishes the next snapshot with a single reference
+	 * swap. Once the new snapshot is visible to readers one change set is
+	 * posted, holding every added, modified or removed key and every
+	 * composite property whose resolved value depends on one.
+	 */
+	private void applyReloadedProperties(final String source,
+			final HashedProperties reloaded) {
+		final PropertiesChangedEvent changes;
+		synchronized (this.reloadLock) {
+			changes = swapLayer(source, reloaded, null);
+		}
+		post(changes);
+	}
+
+	/**
+	 * Must be called holding the reload lock.
+	 * 
+	 * @param changedKeys
+	 *            the keys which differ between the current and the reloaded
+	 *            layer, or null to diff them
+	 * @return the change set to post, or null if no property changed
+	 */
+	private PropertiesChangedEvent swapLayer(final String source,
+			final HashedProperties reloaded, final Set<String> changedKeys) {
+		final PropertyLayers currentLayers = this.layers;
+		if (!currentLayers.contains(source)) {
+			log.warn("Ignoring reload of unknown properties source [{}]",
+					source);
+			return null;
+		}
+		final Set<String> changedInLayer = null == changedKeys ? PropertiesDiff
+				.between(currentLayers.getLayer(source), reloaded)
+				.getChangedKeys() : changedKeys;
+		if (changedInLayer.isEmpty()) {
+			log.debug("No property changes in [{}]", source);
+			return null;
+		}
+		final PropertyLayers nextLayers = currentLayers.withLayer(source,
+				compact(reloaded));
+		final PropertiesSnapshot current = this.snapshot.get();
+		final Map<String, String> changes = Maps.newHashMap();
+		final Set<String> removed = Sets.newHashSet();
+		for (final String key : changedInLayer) {
+			// The key may still be defined by another source
+			final String newValue = nextLayers.get(key);
+			if (null == newValue) {
+				if (current.containsKey(key)) {
+					removed.add(key);
+				}
+			} else if (propertyChange(current.get(key), newValue)) {
+				changes.put(key, newValue);
+			}
+		}
+		final PropertiesSnapshot next = current.withChanges(changes, removed);
+		final List<PropertyModifiedEvent> events = Lists.newArrayList();
+		for (final String key : next.affectedBy(Sets.union(changes.keySet(),
+				removed))) {
+			final String oldValue = resolveForEvent(current, key);
+			final String newValue = resolveForEvent(next, key);
+			if (propertyChange(oldValue, newValue)) {
+				events.add(new PropertyModifiedEvent(key, oldValue, newValue));
+			}
+		}
+		this.layers = nextLayers;
+		this.snapshot.set(next);
+		return events.isEmpty() ? null : new PropertiesChangedEvent(
+				next.getGeneration(), events);
+	}
+
+	private HashedProperties compact(final HashedProperties properties) {
+		return this.compactProperties ? properties.compact() : properties;
+	}
+
+	/**
+	 * Posts a single change set to notify any potential listeners, outside
+	 * the reload lock
+	 */
+	private void post(final PropertiesChangedEvent changes) {
+		if (null != changes) {
+			this.eventNotifier.post(changes);
+		}
+	}
+
+	private String resolveForEvent(final PropertiesSnapshot snapshot,
+			final String key) {
+		try {
+			return snapshot.resolve(key);
+		} catch (final IllegalArgumentException e) {
+			log.error("Unable to resolve property [{}] Exception [{}]",
+					new Object[] { key, e.getMessage() });
+			return null;
+		}
+	}
+
+	protected void loadPropertiesFromResource(
+			final Map<String, HashedProperties> layers) throws IOException {
+		for (final Resource resource : this.resourcesPath) {
+			try {
+				layers.put(sourceName(resource), loadLayer(resource));
+			} catch (final IOException e) {
+				if (!this.ignoreResourceNotFound) {
+					throw e;
+				}
+				log.warn("Could not load properties from [{}] Exception [{}]",
+						new Object[] { resource, e.getMessage() });
+			}
+		}
+	}
+
+	/**
+	 * Loads the znodes from the local snapshot if one is configured and
+	 * covers every path, reconciling with ZooKeeper in the background once
+	 * the properties are in place. Otherwise the znodes are loaded from
+	 * ZooKeeper and the snapshot is refreshed.
+	 */
+	protected void loadPropertiesFromZk(
+			final Map<String, HashedProperties> layers) throws IOException {
+		final Map<String, HashedProperties> cached = null == this.zkSnapshotCache ? null
+				: this.zkSnapshotCache.read();
+		if (null != cached
+				&& cached.keySet().containsAll(zookeeperSources())) {
+			log.info("Loading zookeeper properties from snapshot [{}]",
+					this.zkSnapshotCache);
+			for (String str : zookeeperSources()) {
+				layers.put(str, cached.get(str));
+			}
+			this.zookeeperReconciled = false;
+			return;
+		}
+		final Map<String, HashedProperties> loaded = loadZookeeperLayers();
+		layers.putAll(loaded);
+		if (null != this.zkSnapshotCache) {
+			synchronized (this.reloadLock) {
+				this.zkSnapshotCache.writeLater(loaded);
+			}
 		}
 	}
 
-	protected void loadPropertiesFromResource(final Properties props)
+	private Map<String, HashedProperties> loadZookeeperLayers()
 			throws IOException {
-		super.loadProperties(props);
+		final long start = System.nanoTime();
+		if (null == this.zookeeperClient) {
+			// Held until the configurer is destroyed
+			this.zookeeperClient = ZkClientFacotry
+					.getZkClient(this.zkStartupTimeoutMillis);
+		}
+		// Loading only gets what is left of the timeout after connecting
+		this.zookeeperBootstrap = new ZookeeperBootstrap(this.zookeeperClient,
+				this.zkStartupTimeoutMillis
+						- TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+								- start));
+		final Map<String, HashedProperties> layers = Maps.newHashMap();
+		if (zookeeperPath.length != 0) {
+			final Map<String, byte[]> data = this.zookeeperBootstrap
+					.load(zookeeperPath);
+			for (String str : zookeeperPath) {
+				layers.put(str, parseZookeeperData(str, data.get(str)));
+			}
+		}
+		if (zookeeperKeyPath.length != 0) {
+			final Map<String, Map<String, byte[]>> data = this.zookeeperBootstrap
+					.loadChildren(zookeeperKeyPath);
+			for (String str : zookeeperKeyPath) {
+				layers.put(str, keysLayer(data.get(str)));
+			}
+		}
+		return layers;
 	}
 
-	protected void loadPropertiesFromZk(final Properties props)
+	private HashedProperties keysLayer(final Map<String, byte[]> children)
 			throws IOException {
-		Properties result = new Properties();
-		CuratorFramework curator = ZkClientFacotry.getZkClient();
-		for (String str : zookeeperPath) {
+		final Map<String, String> properties = Maps.newHashMap();
+		for (Map.Entry<String, byte[]> entry : children.entrySet()) {
+			properties.put(entry.getKey(), zookeeperString(entry.getValue()));
+		}
+		return HashedProperties.of(properties);
+	}
+
+	/**
+	 * Parses the data of the znode straight from its bytes, reusing the
+	 * values of its current layer which did not change. Encodings the
+	 * parser does not support are decoded and loaded as
+	 * {@link Properties}.
+	 */
+	private HashedProperties parseZookeeperData(final String path,
+			final byte[] data) throws IOException {
+		final Charset charset = zookeeperCharset();
+		if (PropertiesParser.supports(charset)) {
+			final HashedProperties previous = this.layers.getLayer(path);
 			try {
-				byte[] statbyte = curator.getData().forPath(str);
-				String propstr = new String(statbyte, this.fileEncoding);
-				result.load(new StringReader(propstr));
-			} catch (Exception e) {
-				throw new IOException(e);
-			}
-		}
-		if (zkOverride) {
-			props.putAll(result);
-		} else {
-			Iterator<Object> it = result.keySet().iterator();
-			while (it.hasNext()) {
-				Object key = it.next();
-				if (props.get(key) == null) {
-					props.put(key, result.get(key));
+				return PropertiesParser.parse(data, charset,
+						null == previous ? HashedProperties.EMPTY : previous);
+			} catch (final IllegalArgumentException e) {
+				throw new IOException(String.format(
+						"Unable to parse znode [%s]", path), e);
+			}
+		}
+		Properties result = new Properties();
+		result.load(new StringReader(zookeeperString(data)));
+		return HashedProperties.of(result);
+	}
+
+	/**
+	 * @return the encoding of znode payloads, UTF-8 unless a file encoding
+	 *         is set
+	 */
+	private Charset zookeeperCharset() throws IOException {
+		return charset(Charsets.UTF_8);
+	}
+
+	/**
+	 * @return the encoding of properties files, ISO-8859-1 as read by
+	 *         {@link Properties#load(java.io.InputStream)} unless a file
+	 *         encoding is set
+	 */
+	private Charset fileCharset() throws IOException {
+		return charset(Charsets.ISO_8859_1);
+	}
+
+	private Charset charset(final Charset defaultCharset) throws IOException {
+		try {
+			return null == this.fileEncoding ? defaultCharset : Charset
+					.forName(this.fileEncoding);
+		} catch (final IllegalArgumentException e) {
+			throw new UnsupportedEncodingException(this.fileEncoding);
+		}
+	}
+
+	private String zookeeperString(final byte[] data)
+			throws UnsupportedEncodingException {
+		return null == this.fileEncoding ? new String(data, Charsets.UTF_8)
+				: new String(data, this.fileEncoding);
+	}
+
+	/**
+	 * @return the names of all zookeeper property sources, the blob znodes
+	 *         followed by the per key roots
+	 */
+	private List<String> zookeeperSources() {
+		final List<String> sources = Lists.newArrayList(this.zookeeperPath);
+		sources.addAll(Arrays.asList(this.zookeeperKeyPath));
+		return sources;
+	}
+
+	/**
+	 * Loads the znodes from ZooKeeper on a background thread, retrying until
+	 * it succeeds, and applies them as a reload of each znode. The zookeeper
+	 * watcher is started once the properties are reconciled.
+	 */
+	private void reconcileWithZookeeper() {
+		final ScheduledExecutorService reconciler = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+						.setNameFormat("zookeeper-reconcile-%d")
+						.setDaemon(true).build());
+		this.zookeeperReconciler = reconciler;
+		reconciler.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reloadFromZookeeper();
+					log.info("Reconciled zookeeper properties with snapshot [{}]",
+							zkSnapshotCache);
+					zookeeperReconciled();
+					reconciler.shutdown();
+				} catch (final IOException | RuntimeException e) {
+					log.warn(
+							"Unable to reconcile zookeeper properties, retrying in [{}]ms Exception [{}]",
+							new Object[] { ZK_RECONCILE_RETRY_MILLIS,
+									e.getMessage() });
+					reconciler.schedule(this, ZK_RECONCILE_RETRY_MILLIS,
+							TimeUnit.MILLISECONDS);
 				}
 			}
+		});
+	}
+
+	/**
+	 * Loads every znode from ZooKeeper and applies it as a reload of the
+	 * znode
+	 */
+	private void reloadFromZookeeper() throws IOException {
+		final Map<String, HashedProperties> loaded = loadZookeeperLayers();
+		for (final String path : zookeeperSources()) {
+			applyReloadedProperties(path, loaded.get(path));
 		}
+		persistZookeeperSnapshot();
+	}
+
+	private void zookeeperReconciled() {
+		synchronized (this.zookeeperLock) {
+			this.zookeeperReconciled = true;
+			if (this.zookeeperWatchRequested) {
+				startZookeeperWatcher();
+			}
+		}
+	}
+
+	private Map<String, HashedProperties> zookeeperLayers(
+			final PropertyLayers layers) {
+		final Map<String, HashedProperties> zookeeperLayers = Maps
+				.newHashMap();
+		for (String str : zookeeperSources()) {
+			zookeeperLayers.put(str, layers.getLayer(str));
+		}
+		return zookeeperLayers;
+	}
+
+	/**
+	 * Hands the current zookeeper layers to the snapshot writer, taking them
+	 * under the reload lock so they are handed over in the order they were
+	 * swapped in
+	 */
+	private void persistZookeeperSnapshot() {
+		if (null == this.zkSnapshotCache) {
+			return;
+		}
+		synchronized (this.reloadLock) {
+			this.zkSnapshotCache.writeLater(zookeeperLayers(this.layers));
+		}
+	}
+
+	/**
+	 * Reads a properties file through its memory mapping if it can be
+	 * mapped, otherwise through {@link #loadResource(Resource)}
+	 */
+	private HashedProperties loadLayer(final Resource resource)
+			throws IOException {
+		final MappedPropertiesFile mapped = mappedFile(resource);
+		return null == mapped ? HashedProperties.of(loadResource(resource))
+				: mapped.read();
+	}
+
+	/**
+	 * @return the mapping of the resource, or null if it is not a plain
+	 *         properties file in an encoding the parser supports
+	 */
+	private MappedPropertiesFile mappedFile(final Resource resource)
+			throws IOException {
+		final MappedPropertiesFile mapped = this.mappedFiles.get(resource);
+		if (null != mapped || !this.mapPropertiesFiles) {
+			return mapped;
+		}
+		final String filename = resource.getFilename();
+		final Charset charset = fileCharset();
+		if ((null != filename && filename.endsWith(XML_FILE_EXTENSION))
+				|| !PropertiesParser.supports(charset)) {
+			return null;
+		}
+		final File file;
+		try {
+			file = resource.getFile();
+		} catch (final IOException e) {
+			// Not in the file system, e.g. within a jar
+			return null;
+		}
+		if (!file.isFile()) {
+			return null;
+		}
+		final MappedPropertiesFile created = new MappedPropertiesFile(
+				file.toPath(), charset, this.compactProperties);
+		final MappedPropertiesFile existing = this.mappedFiles.putIfAbsent(
+				resource, created);
+		return null == existing ? created : existing;
+	}
+
+	protected Properties loadResource(final Resource resource)
+			throws IOException {
+		final Properties properties = new Properties();
+		PropertiesLoaderUtils.fillProperties(properties, new EncodedResource(
+				resource, this.fileEncoding));
+		return properties;
+	}
+
+	/**
+	 * @return the names of all property sources, lowest precedence first
+	 */
+	private List<String> sourceOrder() {
+		final List<String> sources = Lists.newArrayList();
+		if (!this.zkOverride) {
+			sources.addAll(zookeeperSources());
+		}
+		if (!this.localOverride) {
+			sources.add(LOCAL_SOURCE);
+		}
+		for (final Resource resource : this.resourcesPath) {
+			sources.add(sourceName(resource));
+		}
+		if (this.zkOverride) {
+			sources.addAll(zookeeperSources());
+		}
+		if (this.localOverride) {
+			sources.add(LOCAL_SOURCE);
+		}
+		return sources;
+	}
+
+	private String sourceName(final Resource resource) {
+		return resource.getDescription();
+	}
+
+	private Properties localProperties() {
+		final Properties local = new Properties();
+		if (null != this.localProperties) {
+			for (final Properties properties : this.localProperties) {
+				for (final String key : properties.stringPropertyNames()) {
+					local.setProperty(key, properties.getProperty(key));
+				}
+			}
+		}
+		return local;
+	}
+
+	@Override
+	public void setIgnoreResourceNotFound(boolean ignoreResourceNotFound) {
+		super.setIgnoreResourceNotFound(ignoreResourceNotFound);
+		this.ignoreResourceNotFound = ignoreResourceNotFound;
 	}
 
 	public void setFileEncoding(String encoding) {
@@ -147,36 +715,201 @@ public class ReadablePropertySourcesPlaceholderConfigurer extends
 		this.zkOverride = zkOverride;
 	}
 
+	/**
+	 * @param zkStartupTimeoutMillis
+	 *            the overall time allowed for loading all znodes at startup
+	 */
+	public void setZkStartupTimeoutMillis(long zkStartupTimeoutMillis) {
+		this.zkStartupTimeoutMillis = zkStartupTimeoutMillis;
+	}
+
+	/**
+	 * @param zkSnapshotFile
+	 *            a local file holding the last good properties of every
+	 *            znode, used to start without waiting for ZooKeeper
+	 */
+	public void setZkSnapshotFile(String zkSnapshotFile) {
+		this.zkSnapshotCache = new ZookeeperSnapshotCache(new File(
+				zkSnapshotFile));
+	}
+
+	/**
+	 * @return the startup metrics of the znodes loaded, or null if no znodes
+	 *         are configured
+	 */
+	public ZookeeperBootstrap getZookeeperBootstrap() {
+		return this.zookeeperBootstrap;
+	}
+
+	/**
+	 * @param reloadDebounceMillis
+	 *            how long a properties file has to be quiet after a
+	 *            modification before it is reloaded
+	 */
+	public void setReloadDebounceMillis(long reloadDebounceMillis) {
+		this.reloadDebounceMillis = reloadDebounceMillis;
+	}
+
+	/**
+	 * @param pollIntervalMillis
+	 *            the delay between two polls of the locations prefixed with
+	 *            {@link #POLL_PREFIX}
+	 */
+	public void setPollIntervalMillis(long pollIntervalMillis) {
+		this.pollIntervalMillis = pollIntervalMillis;
+	}
+
+	/**
+	 * @param reloadWorkerThreads
+	 *            the number of threads reloading changed properties files,
+	 *            independent of the number of watched directories
+	 */
+	public void setReloadWorkerThreads(int reloadWorkerThreads) {
+		this.reloadWorkerThreads = reloadWorkerThreads;
+	}
+
+	/**
+	 * @param mapPropertiesFiles
+	 *            whether properties files are read through a memory mapping
+	 *            kept across reloads and skipped while their size and
+	 *            modification time are unchanged, true by default. Files in a
+	 *            jar, XML files and encodings other than UTF-8 and ISO-8859-1
+	 *            are always read through {@link #loadResource(Resource)}.
+	 *            Watched files are then not hashed before a reload, reading
+	 *            them through the mapping compares their content instead.
+	 */
+	public void setMapPropertiesFiles(boolean mapPropertiesFiles) {
+		this.mapPropertiesFiles = mapPropertiesFiles;
+	}
+
+	/**
+	 * @param compactProperties
+	 *            whether the properties of every source and the snapshot are
+	 *            held as {@link com.vip.properties.snapshot.CompactProperties},
+	 *            trading slower iteration for a much smaller footprint with
+	 *            large numbers of keys, false by default
+	 */
+	public void setCompactProperties(boolean compactProperties) {
+		this.compactProperties = compactProperties;
+	}
+
+	/**
+	 * @param registerMBean
+	 *            whether to register a {@link ReloadablePropertiesMonitorMBean}
+	 *            with the platform MBean server, false by default as it
+	 *            exposes every property value, secrets included, to anyone
+	 *            with JMX access
+	 */
+	public void setRegisterMBean(boolean registerMBean) {
+		this.registerMBean = registerMBean;
+	}
+
+	@Override
+	public void setBeanName(String beanName) {
+		super.setBeanName(beanName);
+		this.beanName = beanName;
+	}
+
+	/**
+	 * @return the reload statistics of this configurer, also exposed over JMX
+	 */
+	public ReloadablePropertiesMonitor getMonitor() {
+		return this.monitor;
+	}
+
+	PropertyLayers getLayers() {
+		return this.layers;
+	}
+
+	PropertySubscriptionRegistry getSubscriptions() {
+		return this.subscriptions;
+	}
+
+	/**
+	 * @param subscriptions
+	 *            the subscriptions of the post processor bound to this
+	 *            configurer, reported by the monitor
+	 */
+	void setSubscriptions(final PropertySubscriptionRegistry subscriptions) {
+		this.subscriptions = subscriptions;
+	}
+
+	Thread.State getFileWatcherState() {
+		final PropertiesWatcher watcher = this.propertiesWatcher;
+		return null == watcher ? null : watcher.getEventLoopState();
+	}
+
+	Thread.State getFilePollerState() {
+		final PollingPropertiesWatcher poller = this.pollingWatcher;
+		return null == poller ? null : poller.getPollerState();
+	}
+
+	boolean isZookeeperWatching() {
+		synchronized (this.zookeeperLock) {
+			return null != this.zookeeperWatcher;
+		}
+	}
+
 	public PropertyChangedEventNotifier getEventNotifier() {
 		return eventNotifier;
 	}
 
 	public void setLocations(final String[] locations) {
 		List<Resource> resourcesPath = Lists.newArrayList();
+		List<Resource> polledResourcesPath = Lists.newArrayList();
 		List<String> zookeeperPath = Lists.newArrayList();
-		for (String str : locations) {
+		List<String> zookeeperKeyPath = Lists.newArrayList();
+		for (String location : locations) {
+			final boolean poll = location.startsWith(POLL_PREFIX);
+			final String str = poll ? location.substring(POLL_PREFIX.length())
+					: location;
+			if (str.startsWith(ZOOKEEPER_KEYS_PREFIX)) {
+				zookeeperKeyPath.add(str.substring(ZOOKEEPER_KEYS_PREFIX
+						.length()));
+				continue;
+			}
 			if (str.startsWith("zookeeper")) {
 				zookeeperPath.add(str);
 			}
 			if (str.startsWith("classpath")) {
 				Resource resource = new ClassPathResource(str);
 				resourcesPath.add(resource);
+				if (poll) {
+					polledResourcesPath.add(resource);
+				}
 			}
 			if (str.startsWith("file")) {
 				String pathToUse = StringUtils.cleanPath(str);
 				Resource resource = new FileSystemResource(pathToUse);
 				resourcesPath.add(resource);
+				if (poll) {
+					polledResourcesPath.add(resource);
+				}
 			}
 		}
-		Resource[] arrayResourcePath = (Resource[]) resourcesPath.toArray();
-		String[] arrayZookeeperPath = (String[]) zookeeperPath.toArray();
+		Resource[] arrayResourcePath = resourcesPath
+				.toArray(new Resource[resourcesPath.size()]);
+		String[] arrayZookeeperPath = zookeeperPath
+				.toArray(new String[zookeeperPath.size()]);
 		super.setLocations(arrayResourcePath);
 		this.resourcesPath = arrayResourcePath;
+		this.polledResourcesPath = polledResourcesPath
+				.toArray(new Resource[polledResourcesPath.size()]);
 		this.zookeeperPath = arrayZookeeperPath;
+		this.zookeeperKeyPath = zookeeperKeyPath
+				.toArray(new String[zookeeperKeyPath.size()]);
 	}
 
+	/**
+	 * @return a mutable copy of the current properties, prefer
+	 *         {@link #getSnapshot()} for reads
+	 */
 	public Properties getProperties() {
-		return this.properties;
+		return this.snapshot.get().toProperties();
+	}
+
+	public PropertiesSnapshot getSnapshot() {
+		return this.snapshot.get();
 	}
 
 	public void startWatching() {
@@ -184,62 +917,140 @@ public class ReadablePropertySourcesPlaceholderConfigurer extends
 			throw new BeanInitializationException(
 					"Event bus not setup, you should not be calling this method...!");
 		}
-		if (this.resourcesPath.length != 0) {
+		final List<Resource> watchedResources = Lists
+				.newArrayList(this.resourcesPath);
+		watchedResources.removeAll(Arrays.asList(this.polledResourcesPath));
+		if (!watchedResources.isEmpty()) {
 			try {
-				Executors.newSingleThreadExecutor().execute(
-						new PropertiesWatcher(this.resourcesPath, this));
+				this.propertiesWatcher = new PropertiesWatcher(
+						watchedResources.toArray(new Resource[watchedResources
+								.size()]), this, this.reloadDebounceMillis,
+						this.reloadWorkerThreads, !this.mapPropertiesFiles);
+				this.propertiesWatcher.start();
 			} catch (final IOException e) {
 				log.error("Unable to start properties file watcher", e);
 			}
 		}
-		if (this.zookeeperPath.length != 0) {
-			ZookeeperWatcher zkWatcher = new ZookeeperWatcher(
-					this.zookeeperPath, this);
-			zkWatcher.start();
+		if (this.polledResourcesPath.length != 0) {
+			this.pollingWatcher = new PollingPropertiesWatcher(
+					this.polledResourcesPath, this, this.pollIntervalMillis,
+					!this.mapPropertiesFiles);
+			this.pollingWatcher.start();
+		}
+		if (!zookeeperSources().isEmpty()) {
+			synchronized (this.zookeeperLock) {
+				this.zookeeperWatchRequested = true;
+				if (this.zookeeperReconciled) {
+					startZookeeperWatcher();
+				}
+			}
 		}
 	}
 
-	public Object resolveProperty(final Object property) {
-		Object resolvedPropertyValue = this.properties
-				.get(this.propertyResolver.resolveProperty(property));
-		if (notStringpropertyToSubstitute(resolvedPropertyValue)) {
-			return resolvedPropertyValue;
-		}
-		while (this.propertyResolver
-				.requiresFurtherResoltuion(resolvedPropertyValue)) {
-			resolvedPropertyValue = buildResolvedString(resolvedPropertyValue);
+	private void startZookeeperWatcher() {
+		try {
+			this.zookeeperWatcher = new ZookeeperWatcher(this.zookeeperPath,
+					this.zookeeperKeyPath, this, this.zkStartupTimeoutMillis);
+			this.zookeeperWatcher.start();
+		} catch (final IOException e) {
+			log.error("Unable to start zookeeper watcher", e);
 		}
-		return resolvedPropertyValue;
 	}
 
-	private Object buildResolvedString(final Object resolvedPropertyValue) {
-		final String resolvedValueStr = resolvedPropertyValue.toString();
-
-		final int startingIndex = resolvedValueStr.indexOf("${");
-		final int endingIndex = resolvedValueStr.indexOf("}", startingIndex) + 1;
+	private void registerMBean() {
+		try {
+			final ObjectName name = new ObjectName(String.format(MBEAN_NAME,
+					ObjectName.quote(null == this.beanName ? Integer
+							.toHexString(System.identityHashCode(this))
+							: this.beanName)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					this.monitor, name);
+			this.objectName = name;
+		} catch (final JMException e) {
+			log.warn("Unable to register properties MBean Exception [{}]",
+					e.getMessage());
+		}
+	}
 
-		final String toResolve = resolvedValueStr.substring(startingIndex,
-				endingIndex);
-		final String resolved = resolveProperty(toResolve).toString();
+	/**
+	 * Stops all watchers and the asynchronous event dispatch thread, releases
+	 * the shared zookeeper client and the file mappings and unregisters the
+	 * MBean
+	 */
+	@Override
+	public void destroy() {
+		if (null != this.propertiesWatcher) {
+			this.propertiesWatcher.stop();
+		}
+		if (null != this.pollingWatcher) {
+			this.pollingWatcher.stop();
+		}
+		if (null != this.zookeeperReconciler) {
+			this.zookeeperReconciler.shutdownNow();
+		}
+		synchronized (this.zookeeperLock) {
+			this.zookeeperWatchRequested = false;
+			if (null != this.zookeeperWatcher) {
+				this.zookeeperWatcher.close();
+				this.zookeeperWatcher = null;
+			}
+		}
+		if (null != this.zookeeperClient) {
+			ZkClientFacotry.releaseZkClient(this.zookeeperClient);
+			this.zookeeperClient = null;
+		}
+		this.mappedFiles.clear();
+		if (null != this.zkSnapshotCache) {
+			this.zkSnapshotCache.close();
+		}
+		if (null != this.objectName) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+						this.objectName);
+			} catch (final JMException e) {
+				log.warn("Unable to unregister MBean [{}] Exception [{}]",
+						new Object[] { this.objectName, e.getMessage() });
+			}
+			this.objectName = null;
+		}
+		if (this.eventNotifier instanceof AsyncCoalescingPropertyChangedEventNotifier) {
+			((AsyncCoalescingPropertyChangedEventNotifier) this.eventNotifier)
+					.shutdown();
+		}
+	}
 
-		return new StringBuilder()
-				.append(resolvedValueStr.substring(0, startingIndex))
-				.append(resolved)
-				.append(resolvedValueStr.substring(endingIndex)).toString();
+	/**
+	 * Pins the current snapshot to this thread until the returned scope is
+	 * closed. Within the scope {@link #resolveProperty(Object)} and reloadable
+	 * handles read the pinned generation, without locking.
+	 *
+	 * @return the scope, to be closed on this thread
+	 */
+	public SnapshotScope pin() {
+		return SnapshotScope.open(this, this.snapshot.get());
 	}
 
-	private boolean notStringpropertyToSubstitute(
-			final Object resolvedPropertyValue) {
-		return !(resolvedPropertyValue instanceof String);
+	/**
+	 * @return the property resolved against the snapshot pinned to this
+	 *         thread, or against the current snapshot if none is
+	 */
+	public Object resolveProperty(final Object property) {
+		final PropertiesSnapshot pinned = SnapshotScope.pinned(this);
+		return resolveProperty(null == pinned ? this.snapshot.get() : pinned,
+				property);
 	}
 
-	private boolean propertyChange(final String oldValue, final String newValue) {
-		return null == oldValue || !oldValue.equals(newValue);
+	/**
+	 * @return the property resolved against the given snapshot
+	 */
+	public Object resolveProperty(final PropertiesSnapshot snapshot,
+			final Object property) {
+		return snapshot.resolve(this.propertyResolver
+				.resolveProperty(property));
 	}
 
-	private boolean propertyExistsAndNotNull(final String property,
-			final String newValue) {
-		return this.properties.containsKey(property) && null != newValue;
+	private boolean propertyChange(final String oldValue, final String newValue) {
+		return !Objects.equal(oldValue, newValue);
 	}
 
 }
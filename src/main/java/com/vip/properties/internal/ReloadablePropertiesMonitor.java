@@ -0,0 +1,188 @@
+package com.vip.properties.internal;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.vip.properties.snapshot.PropertiesSnapshot;
+import com.vip.properties.snapshot.PropertyLayers;
+
+/**
+ * Reload statistics and diagnostics of a configurer, registered as a
+ * standard MBean by {@link ReadablePropertySourcesPlaceholderConfigurer}
+ * when enabled. Its operations return property values, so it is only
+ * registered on request.
+ */
+public class ReloadablePropertiesMonitor implements
+		ReloadablePropertiesMonitorMBean {
+
+	private final ReadablePropertySourcesPlaceholderConfigurer configurer;
+
+	private final AtomicLong reloadCount = new AtomicLong();
+	private final AtomicLong failedReloadCount = new AtomicLong();
+	private volatile long lastReloadMillis = -1;
+	private volatile long lastReloadTime;
+	private volatile String lastReloadSource;
+
+	ReloadablePropertiesMonitor(
+			final ReadablePropertySourcesPlaceholderConfigurer configurer) {
+		this.configurer = configurer;
+	}
+
+	/**
+	 * Records the reload of a source started at the given
+	 * {@link System#nanoTime()}
+	 */
+	void reloaded(final String source, final long startNanos) {
+		this.lastReloadMillis = TimeUnit.NANOSECONDS.toMillis(System
+				.nanoTime() - startNanos);
+		this.lastReloadTime = System.currentTimeMillis();
+		this.lastReloadSource = source;
+		this.reloadCount.incrementAndGet();
+	}
+
+	void reloadFailed() {
+		this.failedReloadCount.incrementAndGet();
+	}
+
+	@Override
+	public long getReloadCount() {
+		return this.reloadCount.get();
+	}
+
+	@Override
+	public long getFailedReloadCount() {
+		return this.failedReloadCount.get();
+	}
+
+	@Override
+	public long getLastReloadMillis() {
+		return this.lastReloadMillis;
+	}
+
+	@Override
+	public Date getLastReloadTime() {
+		final long time = this.lastReloadTime;
+		return 0 == time ? null : new Date(time);
+	}
+
+	@Override
+	public String getLastReloadSource() {
+		return this.lastReloadSource;
+	}
+
+	@Override
+	public long getGeneration() {
+		return this.configurer.getSnapshot().getGeneration();
+	}
+
+	@Override
+	public int getKeyCount() {
+		return this.configurer.getSnapshot().size();
+	}
+
+	@Override
+	public List<String> getSources() {
+		return this.configurer.getLayers().getSources();
+	}
+
+	@Override
+	public Map<String, Integer> getSubscriberCounts() {
+		final PropertySubscriptionRegistry subscriptions = this.configurer
+				.getSubscriptions();
+		if (null == subscriptions) {
+			return Collections.emptyMap();
+		}
+		final Map<String, Integer> counts = Maps.newTreeMap();
+		counts.putAll(subscriptions.getSubscriberCounts());
+		for (final Map.Entry<String, Integer> callbacks : subscriptions
+				.getCallbackCounts().entrySet()) {
+			final Integer fields = counts.get(callbacks.getKey());
+			counts.put(callbacks.getKey(), null == fields ? callbacks
+					.getValue() : fields + callbacks.getValue());
+		}
+		return counts;
+	}
+
+	@Override
+	public String getFileWatcherState() {
+		final Thread.State state = this.configurer.getFileWatcherState();
+		return null == state ? null : state.name();
+	}
+
+	@Override
+	public String getFilePollerState() {
+		final Thread.State state = this.configurer.getFilePollerState();
+		return null == state ? null : state.name();
+	}
+
+	@Override
+	public boolean isZookeeperWatching() {
+		return this.configurer.isZookeeperWatching();
+	}
+
+	@Override
+	public long getZookeeperLoadMillis() {
+		final ZookeeperBootstrap bootstrap = this.configurer
+				.getZookeeperBootstrap();
+		return null == bootstrap ? -1 : bootstrap.getTotalLoadMillis();
+	}
+
+	@Override
+	public String describeProperty(final String key) {
+		final PropertiesSnapshot snapshot = this.configurer.getSnapshot();
+		if (!snapshot.containsKey(key)) {
+			return String.format("[%s] is not defined", key);
+		}
+		final PropertySubscriptionRegistry subscriptions = this.configurer
+				.getSubscriptions();
+		String resolved;
+		try {
+			resolved = snapshot.resolve(key);
+		} catch (final IllegalArgumentException e) {
+			resolved = e.getMessage();
+		}
+		return String.format(
+				"[%s] value [%s] resolved [%s] source [%s] subscribers [%s]",
+				key, snapshot.get(key), resolved, this.configurer.getLayers()
+						.sourceOf(key), null == subscriptions ? 0
+						: subscriptions.getSubscriberCount(key)
+								+ subscriptions.getCallbacks(key).size());
+	}
+
+	@Override
+	public void forceReload() {
+		this.configurer.reload();
+	}
+
+	@Override
+	public String dumpSnapshot() {
+		final PropertiesSnapshot snapshot = this.configurer.getSnapshot();
+		final PropertyLayers layers = this.configurer.getLayers();
+		final StringBuilder dump = new StringBuilder();
+		dump.append("# generation ").append(snapshot.getGeneration())
+				.append('\n');
+		for (final String key : Ordering.natural().sortedCopy(
+				snapshot.keySet())) {
+			dump.append(key).append('=').append(snapshot.get(key))
+					.append("  # ").append(layers.sourceOf(key)).append('\n');
+		}
+		return dump.toString();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("reloadCount", this.reloadCount)
+				.add("failedReloadCount", this.failedReloadCount)
+				.add("lastReloadMillis", this.lastReloadMillis)
+				.add("lastReloadSource", this.lastReloadSource).toString();
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.vip.properties.internal;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of a {@link ReadablePropertySourcesPlaceholderConfigurer}
+ */
+public interface ReloadablePropertiesMonitorMBean {
+
+	/**
+	 * @return the number of sources reloaded since startup, whether or not
+	 *         any property changed
+	 */
+	long getReloadCount();
+
+	long getFailedReloadCount();
+
+	/**
+	 * @return how long the last reload took to read, diff and publish its
+	 *         changes, or -1 if nothing was reloaded yet
+	 */
+	long getLastReloadMillis();
+
+	/**
+	 * @return when the last reload completed, or null if nothing was
+	 *         reloaded yet
+	 */
+	Date getLastReloadTime();
+
+	String getLastReloadSource();
+
+	long getGeneration();
+
+	int getKeyCount();
+
+	/**
+	 * @return the names of all property sources, lowest precedence first
+	 */
+	List<String> getSources();
+
+	/**
+	 * @return the number of live bean fields and callbacks subscribed to
+	 *         each property with at least one, ordered by property
+	 */
+	Map<String, Integer> getSubscriberCounts();
+
+	/**
+	 * @return the state of the properties file watcher thread, or null if no
+	 *         file is watched
+	 */
+	String getFileWatcherState();
+
+	/**
+	 * @return the state of the thread polling poll: locations, or null if no
+	 *         file is polled
+	 */
+	String getFilePollerState();
+
+	boolean isZookeeperWatching();
+
+	/**
+	 * @return the time the last full load of all znodes took, or -1 if no
+	 *         znodes were loaded
+	 */
+	long getZookeeperLoadMillis();
+
+	/**
+	 * @return the raw and resolved value of the property, the source it
+	 *         comes from and the number of bean fields and callbacks
+	 *         subscribed to it
+	 */
+	String describeProperty(String key);
+
+	/**
+	 * Reloads every properties file and znode now, regardless of the
+	 * watchers
+	 */
+	void forceReload();
+
+	/**
+	 * @return every property of the current snapshot with the source it
+	 *         comes from, one per line ordered by key
+	 */
+	String dumpSnapshot();
+}
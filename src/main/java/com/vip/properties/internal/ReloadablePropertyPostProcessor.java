@@ -1,10 +1,13 @@
 package com.vip.properties.internal;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
 
 import javax.annotation.PostConstruct;
@@ -15,15 +18,35 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanInitializationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.util.ClassUtils;
 
-import com.google.common.collect.Maps;
+import com.google.common.base.Defaults;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.Subscribe;
+import com.vip.properties.OnPropertyChange;
+import com.vip.properties.ReloadableBoolean;
+import com.vip.properties.ReloadableDouble;
+import com.vip.properties.ReloadableInt;
+import com.vip.properties.ReloadableLong;
 import com.vip.properties.ReloadableProperty;
+import com.vip.properties.ReloadableValue;
+import com.vip.properties.accessor.FieldAccessor;
+import com.vip.properties.accessor.MethodHandleFieldAccessor;
 import com.vip.properties.bean.BeanPropertyHolder;
+import com.vip.properties.bean.PropertiesChangedEvent;
 import com.vip.properties.bean.PropertyModifiedEvent;
 import com.vip.properties.conversion.DefaultPropertyConversionService;
 import com.vip.properties.conversion.PropertyConversionService;
+import com.vip.properties.conversion.PropertyConverter;
+import com.vip.properties.conversion.PropertyConverter.BooleanConverter;
+import com.vip.properties.conversion.PropertyConverter.DoubleConverter;
+import com.vip.properties.conversion.PropertyConverter.IntConverter;
+import com.vip.properties.conversion.PropertyConverter.LongConverter;
+import com.vip.properties.index.ReloadablePropertyIndex;
+import com.vip.properties.snapshot.PropertiesSnapshot;
+import com.vip.properties.snapshot.SnapshotBinding;
 
 public class ReloadablePropertyPostProcessor extends
 		InstantiationAwareBeanPostProcessorAdapter {
@@ -31,17 +54,43 @@ public class ReloadablePropertyPostProcessor extends
 	protected static Logger log = LoggerFactory
 			.getLogger(ReloadablePropertyPostProcessor.class);
 
+	private static final Set<Class<?>> RELOADABLE_HANDLES = ImmutableSet
+			.<Class<?>> of(ReloadableValue.class, ReloadableLong.class,
+					ReloadableInt.class, ReloadableBoolean.class,
+					ReloadableDouble.class);
+
 	private final PropertyConversionService propertyConversionService;
 	private final ReadablePropertySourcesPlaceholderConfigurer placeholderConfigurer;
+	private final ReloadablePropertyIndex propertyIndex;
+
+	/**
+	 * Binding plans stored with their class. Plans reference their class
+	 * through its fields, but nothing the processor holds references the
+	 * plans, so classes are unloaded with their class loader.
+	 */
+	private final ClassValue<PropertyBindingPlan> bindingPlans = new ClassValue<PropertyBindingPlan>() {
+		@Override
+		protected PropertyBindingPlan computeValue(final Class<?> type) {
+			return createBindingPlan(type);
+		}
+	};
 
-	private Map<String, Set<BeanPropertyHolder>> beanPropertySubscriptions = Maps
-			.newHashMap();
+	private final PropertySubscriptionRegistry beanPropertySubscriptions = new PropertySubscriptionRegistry();
 
 	@Autowired
 	public ReloadablePropertyPostProcessor(
 			final ReadablePropertySourcesPlaceholderConfigurer placeholderConfigurer) {
+		this(placeholderConfigurer, new DefaultPropertyConversionService());
+	}
+
+	public ReloadablePropertyPostProcessor(
+			final ReadablePropertySourcesPlaceholderConfigurer placeholderConfigurer,
+			final PropertyConversionService propertyConversionService) {
 		this.placeholderConfigurer = placeholderConfigurer;
-		this.propertyConversionService = new DefaultPropertyConversionService();
+		this.propertyConversionService = propertyConversionService;
+		this.propertyIndex = ReloadablePropertyIndex.load(ClassUtils
+				.getDefaultClassLoader());
+		placeholderConfigurer.setSubscriptions(this.beanPropertySubscriptions);
 	}
 
 	@PostConstruct
@@ -79,27 +128,136 @@ public class ReloadablePropertyPostProcessor extends
 	 */
 	@Subscribe
 	public void handlePropertyChange(final PropertyModifiedEvent event) {
-		for (final BeanPropertyHolder bean : this.beanPropertySubscriptions
-				.get(event.getPropertyName())) {
-			updateField(bean, event);
+		handlePropertiesChange(new PropertiesChangedEvent(getSnapshot()
+				.getGeneration(), Collections.singleton(event)));
+	}
+
+	/**
+	 * Method subscribing to the {@link PropertiesChangedEvent} utilising the
+	 * {@link Subscribe} annotation. Field updates are grouped per bean so
+	 * every field of a bean is updated in one pass, then every
+	 * {@link OnPropertyChange} callback on any of the changed properties is
+	 * called once. Every field is resolved against the snapshot current
+	 * when the change set is dispatched, so fields and handles updated by
+	 * one change set always agree with each other.
+	 * 
+	 * @param event
+	 *            the {@link PropertiesChangedEvent} detailing what's changed
+	 */
+	@Subscribe
+	public void handlePropertiesChange(final PropertiesChangedEvent event) {
+		final PropertiesSnapshot snapshot = getSnapshot();
+		final Map<Object, List<BeanPropertyHolder>> holdersByBean = new IdentityHashMap<Object, List<BeanPropertyHolder>>();
+		for (final String propertyName : event.getPropertyNames()) {
+			for (final BeanPropertyHolder holder : this.beanPropertySubscriptions
+					.getSubscribers(propertyName)) {
+				List<BeanPropertyHolder> beanHolders = holdersByBean
+						.get(holder.getBean());
+				if (null == beanHolders) {
+					beanHolders = Lists.newArrayList();
+					holdersByBean.put(holder.getBean(), beanHolders);
+				}
+				beanHolders.add(holder);
+			}
+		}
+		for (final List<BeanPropertyHolder> beanHolders : holdersByBean
+				.values()) {
+			for (final BeanPropertyHolder holder : beanHolders) {
+				updateField(holder, event.getChange(holder.getPropertyName()),
+						snapshot);
+			}
+		}
+		final Map<Object, Set<PropertyCallback>> callbacksByBean = new IdentityHashMap<Object, Set<PropertyCallback>>();
+		for (final String propertyName : event.getPropertyNames()) {
+			for (final Map.Entry<Object, PropertyCallback> callback : this.beanPropertySubscriptions
+					.getCallbacks(propertyName)) {
+				Set<PropertyCallback> beanCallbacks = callbacksByBean
+						.get(callback.getKey());
+				if (null == beanCallbacks) {
+					beanCallbacks = Sets.newLinkedHashSet();
+					callbacksByBean.put(callback.getKey(), beanCallbacks);
+				}
+				beanCallbacks.add(callback.getValue());
+			}
+		}
+		for (final Map.Entry<Object, Set<PropertyCallback>> beanCallbacks : callbacksByBean
+				.entrySet()) {
+			for (final PropertyCallback callback : beanCallbacks.getValue()) {
+				invokeCallback(beanCallbacks.getKey(), callback, event);
+			}
 		}
 	}
 
+	private void invokeCallback(final Object bean,
+			final PropertyCallback callback, final PropertiesChangedEvent event) {
+		final Method method = callback.getMethod();
+		try {
+			final List<Object> arguments = Lists.newArrayList();
+			arguments.add(bean);
+			if (callback.takesEvent()) {
+				arguments.add(event);
+			} else if (callback.takesValues()) {
+				for (int i = 0; i < callback.getPropertyNames().size(); i++) {
+					final String propertyName = callback.getPropertyNames()
+							.get(i);
+					final PropertyModifiedEvent change = event
+							.getChange(propertyName);
+					final Object oldValue = null == change ? resolverProperty(propertyName)
+							: change.getOldValue();
+					final Object newValue = null == change ? oldValue : change
+							.getNewValue();
+					arguments.add(convertForCallback(callback.getValueType(i),
+							oldValue));
+					arguments.add(convertForCallback(callback.getValueType(i),
+							newValue));
+				}
+			}
+			log.info("Calling [{}] of class [{}] for changed properties {}",
+					new Object[] { method.getName(),
+							bean.getClass().getCanonicalName(),
+							callback.getPropertyNames() });
+			callback.invoke(arguments.toArray());
+		} catch (final Throwable e) {
+			log.error(
+					"Unable to call [{}] of class [{}] for changed properties {}\n Exception [{}]",
+					new Object[] { method.getName(),
+							bean.getClass().getCanonicalName(),
+							callback.getPropertyNames(), e.getMessage() });
+		}
+	}
+
+	/**
+	 * @return the value converted to the type, or the default of the type if
+	 *         the property is not defined
+	 */
+	private Object convertForCallback(final Class<?> type, final Object value) {
+		if (null == value) {
+			return Defaults.defaultValue(type);
+		}
+		return this.propertyConversionService.getConverterForType(type)
+				.convert(value);
+	}
+
 	public void updateField(final BeanPropertyHolder holder,
 			final PropertyModifiedEvent event) {
+		updateField(holder, event, getSnapshot());
+	}
+
+	private void updateField(final BeanPropertyHolder holder,
+			final PropertyModifiedEvent event, final PropertiesSnapshot snapshot) {
 		final Object beanToUpdate = holder.getBean();
-		final Field fieldToUpdate = holder.getField();
+		final FieldAccessor accessor = holder.getAccessor();
+		final Field fieldToUpdate = accessor.getField();
 		final String canonicalName = beanToUpdate.getClass().getCanonicalName();
 
-		final Object convertedProperty = convertPropertyForField(fieldToUpdate,
-				event.getPropertyName());
 		try {
 			log.info(
 					"Reloading property [{}] on field [{}] for class [{}]",
 					new Object[] { event.getPropertyName(),
 							fieldToUpdate.getName(), canonicalName });
-			fieldToUpdate.set(beanToUpdate, convertedProperty);
-		} catch (final IllegalAccessException e) {
+			injectProperty(beanToUpdate, accessor, event.getPropertyName(),
+					snapshot);
+		} catch (final RuntimeException e) {
 			log.error(
 					"Unable to reloading property [{}] on field [{}] for class [{}]\n Exception [{}]",
 					new Object[] { event.getPropertyName(),
@@ -108,6 +266,13 @@ public class ReloadablePropertyPostProcessor extends
 		}
 	}
 
+	/**
+	 * @return the live bean fields and callbacks subscribed to each property
+	 */
+	public PropertySubscriptionRegistry getSubscriptions() {
+		return this.beanPropertySubscriptions;
+	}
+
 	@Override
 	public boolean postProcessAfterInstantiation(final Object bean,
 			final String beanName) throws BeansException {
@@ -118,125 +283,414 @@ public class ReloadablePropertyPostProcessor extends
 		return true;
 	}
 
+	/**
+	 * Binds every {@link ReloadableProperty} field of the bean's class and
+	 * its superclasses, following the binding plan cached for the class, and
+	 * subscribes its {@link OnPropertyChange} callbacks.
+	 */
 	private void setPropertiesOnBean(final Object bean) {
-		ReflectionUtils.doWithFields(bean.getClass(),
-				new ReflectionUtils.FieldCallback() {
-
-					@Override
-					public void doWith(final Field field)
-							throws IllegalArgumentException,
-							IllegalAccessException {
-
-						final ReloadableProperty annotation = field
-								.getAnnotation(ReloadableProperty.class);
-						if (null != annotation) {
-
-							ReflectionUtils.makeAccessible(field);
-							validateFieldNotFinal(bean, field);
-
-							final Object property = getProperties().get(
-									annotation.value());
-							validatePropertyAvailableOrDefaultSet(bean, field,
-									annotation, property);
-
-							if (null != property) {
-
-								log.info(
-										"Attempting to convert and set property [{}] on field [{}] for class [{}] to type [{}]",
-										new Object[] {
-												property,
-												field.getName(),
-												bean.getClass()
-														.getCanonicalName(),
-												field.getType() });
-
-								final Object convertedProperty = convertPropertyForField(
-										field, annotation.value());
-
-								log.info(
-										"Setting field [{}] of class [{}] with value [{}]",
-										new Object[] {
-												field.getName(),
-												bean.getClass()
-														.getCanonicalName(),
-												convertedProperty });
-
-								field.set(bean, convertedProperty);
-
-								subscribeBeanToPropertyChangedEvent(
-										annotation.value(),
-										new BeanPropertyHolder(bean, field));
-							} else {
-								log.info(
-										"Leaving field [{}] of class [{}] with default value",
-										new Object[] {
-												field.getName(),
-												bean.getClass()
-														.getCanonicalName() });
-							}
-						}
-					}
-				});
+		final PropertyBindingPlan plan = getBindingPlan(bean.getClass());
+		final PropertiesSnapshot snapshot = getSnapshot();
+		for (final PropertyBindingPlan.Binding binding : plan.getBindings()) {
+			setPropertyOnField(bean, binding, snapshot);
+		}
+		for (final PropertyCallback callback : plan.getCallbacks()) {
+			this.beanPropertySubscriptions.subscribe(bean, callback);
+		}
+	}
+
+	private PropertyBindingPlan getBindingPlan(final Class<?> type) {
+		// A plan that fails validation is not stored, so fails for every bean
+		return this.bindingPlans.get(type);
+	}
+
+	/**
+	 * Finds and validates the annotated fields and methods of the class and
+	 * its superclasses. Annotated fields are taken from the
+	 * {@link ReloadablePropertyIndex}, only classes missing from it are
+	 * scanned by reflection.
+	 */
+	private PropertyBindingPlan createBindingPlan(final Class<?> beanType) {
+		final List<PropertyBindingPlan.Binding> bindings = Lists
+				.newArrayList();
+		final List<PropertyCallback> callbacks = Lists.newArrayList();
+		final Set<String> overridden = Sets.newHashSet();
+		for (Class<?> type = beanType; null != type && Object.class != type; type = type
+				.getSuperclass()) {
+			for (final Method method : findCallbackMethods(type)) {
+				// An overriding method is called in place of the overridden
+				if (overridden.add(method.getName()
+						+ Arrays.toString(method.getParameterTypes()))) {
+					callbacks.add(PropertyCallback.of(method,
+							method.getAnnotation(OnPropertyChange.class)));
+				}
+			}
+			for (final Field field : findAnnotatedFields(type)) {
+				if (!RELOADABLE_HANDLES.contains(field.getType())) {
+					validateFieldNotFinal(beanType, field);
+				}
+				bindings.add(new PropertyBindingPlan.Binding(
+						MethodHandleFieldAccessor.create(field), field
+								.getAnnotation(ReloadableProperty.class)
+								.value()));
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug(
+					"Created binding plan of [{}] fields and [{}] callbacks for class [{}]",
+					new Object[] { bindings.size(), callbacks.size(),
+							beanType.getName() });
+		}
+		return PropertyBindingPlan.of(bindings, callbacks);
+	}
+
+	/**
+	 * @return the {@link OnPropertyChange} methods declared by the class,
+	 *         classes listed in the index without any are not scanned
+	 */
+	private List<Method> findCallbackMethods(final Class<?> type) {
+		if (type.getName().startsWith("java.")
+				|| !this.propertyIndex.mayHaveCallbacks(type)) {
+			return Collections.emptyList();
+		}
+		final List<Method> methods = Lists.newArrayList();
+		for (final Method method : type.getDeclaredMethods()) {
+			if (null != method.getAnnotation(OnPropertyChange.class)) {
+				methods.add(method);
+			}
+		}
+		return methods;
+	}
+
+	private void setPropertyOnField(final Object bean,
+			final PropertyBindingPlan.Binding binding,
+			final PropertiesSnapshot snapshot) {
+		final FieldAccessor accessor = binding.getAccessor();
+		final Field field = accessor.getField();
+		final String propertyName = binding.getPropertyName();
+		if (RELOADABLE_HANDLES.contains(field.getType())) {
+			initialiseHandle(bean, accessor);
+			bindHandle(accessor.get(bean), new HandleBinding(field,
+					propertyName));
+		}
+
+		final Object property = snapshot.get(propertyName);
+		validatePropertyAvailableOrDefaultSet(bean, accessor, propertyName,
+				property);
+
+		if (null != property) {
+
+			log.info(
+					"Attempting to convert and set property [{}] on field [{}] for class [{}] to type [{}]",
+					new Object[] { property, field.getName(),
+							bean.getClass().getCanonicalName(),
+							field.getType() });
+
+			injectProperty(bean, accessor, propertyName, snapshot);
+		} else {
+			log.info("Leaving field [{}] of class [{}] with default value",
+					new Object[] { field.getName(),
+							bean.getClass().getCanonicalName() });
+		}
+		// Subscribe either way, the property may be added by a later reload
+		this.beanPropertySubscriptions.subscribe(bean, accessor, propertyName);
+	}
+
+	/**
+	 * @return the {@link ReloadableProperty} fields declared by the class,
+	 *         from the index if the class is listed in it and still matches,
+	 *         by reflection otherwise
+	 */
+	private List<Field> findAnnotatedFields(final Class<?> type) {
+		if (type.getName().startsWith("java.")) {
+			return Collections.emptyList();
+		}
+		final Map<String, String> indexed = this.propertyIndex
+				.getProperties(type);
+		if (null != indexed) {
+			final List<Field> fields = indexedFields(type, indexed);
+			if (null != fields) {
+				return fields;
+			}
+			log.warn("Index entry of class [{}] is out of date, scanning it",
+					type.getName());
+		}
+		final List<Field> fields = Lists.newArrayList();
+		for (final Field field : type.getDeclaredFields()) {
+			if (null != field.getAnnotation(ReloadableProperty.class)) {
+				fields.add(field);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * @return the indexed fields of the class, or null if they no longer
+	 *         match its annotated fields
+	 */
+	private List<Field> indexedFields(final Class<?> type,
+			final Map<String, String> indexed) {
+		final List<Field> fields = Lists.newArrayListWithCapacity(indexed
+				.size());
+		for (final Map.Entry<String, String> entry : indexed.entrySet()) {
+			final Field field;
+			try {
+				field = type.getDeclaredField(entry.getKey());
+			} catch (final NoSuchFieldException e) {
+				return null;
+			}
+			final ReloadableProperty annotation = field
+					.getAnnotation(ReloadableProperty.class);
+			if (null == annotation
+					|| !annotation.value().equals(entry.getValue())) {
+				return null;
+			}
+			fields.add(field);
+		}
+		return fields;
 	}
 
 	private void validatePropertyAvailableOrDefaultSet(final Object bean,
-			final Field field, final ReloadableProperty annotation,
-			final Object property) throws IllegalArgumentException,
-			IllegalAccessException {
-		if (null == property && fieldDoesNotHaveDefault(field, bean)) {
+			final FieldAccessor accessor, final String propertyName,
+			final Object property) {
+		if (null == property && fieldDoesNotHaveDefault(accessor, bean)) {
+			final Field field = accessor.getField();
 			throw new BeanInitializationException(
 					String.format(
 							"No property found for field annotated with @ReloadableProperty, "
 									+ "and no default specified. Property [%s] of class [%s] requires a property named [%s]",
 							field.getName(),
 							bean.getClass().getCanonicalName(),
-							annotation.value()));
+							propertyName));
 		}
 	}
 
-	private void validateFieldNotFinal(final Object bean, final Field field) {
+	private void validateFieldNotFinal(final Class<?> type, final Field field) {
 		if (Modifier.isFinal(field.getModifiers())) {
 			throw new BeanInitializationException(
 					String.format(
 							"Unable to set field [%s] of class [%s] as is declared final",
-							field.getName(), bean.getClass().getCanonicalName()));
+							field.getName(), type.getCanonicalName()));
 		}
 	}
 
-	private boolean fieldDoesNotHaveDefault(final Field field,
-			final Object value) throws IllegalArgumentException,
-			IllegalAccessException {
+	private boolean fieldDoesNotHaveDefault(final FieldAccessor accessor,
+			final Object value) {
 		try {
-			return (null == field.get(value));
+			final Object fieldValue = accessor.get(value);
+			if (fieldValue instanceof ReloadableValue) {
+				return null == ((ReloadableValue<?>) fieldValue).get();
+			}
+			return (null == fieldValue);
 		} catch (final NullPointerException e) {
 			return true;
 		}
 	}
 
-	private void subscribeBeanToPropertyChangedEvent(final String property,
-			final BeanPropertyHolder fieldProperty) {
-		if (!this.beanPropertySubscriptions.containsKey(property)) {
-			this.beanPropertySubscriptions.put(property,
-					new HashSet<BeanPropertyHolder>());
+	/**
+	 * Creates the {@link ReloadableValue} (or primitive variant) of a field
+	 * left null, final fields have to be initialised by the bean.
+	 */
+	private void initialiseHandle(final Object bean,
+			final FieldAccessor accessor) {
+		if (null != accessor.get(bean)) {
+			return;
+		}
+		final Field field = accessor.getField();
+		if (Modifier.isFinal(field.getModifiers())) {
+			throw new BeanInitializationException(
+					String.format(
+							"Final field [%s] of class [%s] must be initialised with a [%s]",
+							field.getName(),
+							bean.getClass().getCanonicalName(),
+							field.getType().getSimpleName()));
+		}
+		accessor.set(bean, newHandle(field.getType()));
+	}
+
+	private static Object newHandle(final Class<?> type) {
+		if (ReloadableLong.class == type) {
+			return new ReloadableLong();
+		} else if (ReloadableInt.class == type) {
+			return new ReloadableInt();
+		} else if (ReloadableBoolean.class == type) {
+			return new ReloadableBoolean();
+		} else if (ReloadableDouble.class == type) {
+			return new ReloadableDouble();
+		}
+		return new ReloadableValue<Object>();
+	}
+
+	private static void bindHandle(final Object handle,
+			final SnapshotBinding binding) {
+		if (handle instanceof ReloadableLong) {
+			((ReloadableLong) handle).bind(binding);
+		} else if (handle instanceof ReloadableInt) {
+			((ReloadableInt) handle).bind(binding);
+		} else if (handle instanceof ReloadableBoolean) {
+			((ReloadableBoolean) handle).bind(binding);
+		} else if (handle instanceof ReloadableDouble) {
+			((ReloadableDouble) handle).bind(binding);
+		} else {
+			((ReloadableValue<?>) handle).bind(binding);
+		}
+	}
+
+	/**
+	 * Publishes the converted value into the handle, primitive variants are
+	 * converted without boxing when a primitive converter is registered.
+	 * 
+	 * @param generation
+	 *            the generation of the snapshot the property was resolved
+	 *            from
+	 */
+	@SuppressWarnings("unchecked")
+	private static void publishToHandle(final Object handle,
+			final PropertyConverter<?> converter, final Object property,
+			final long generation) {
+		if (handle instanceof ReloadableLong) {
+			((ReloadableLong) handle)
+					.set(converter instanceof LongConverter ? ((LongConverter) converter)
+							.convertToLong(property) : (Long) converter
+							.convert(property), generation);
+		} else if (handle instanceof ReloadableInt) {
+			((ReloadableInt) handle)
+					.set(converter instanceof IntConverter ? ((IntConverter) converter)
+							.convertToInt(property) : (Integer) converter
+							.convert(property), generation);
+		} else if (handle instanceof ReloadableBoolean) {
+			((ReloadableBoolean) handle)
+					.set(converter instanceof BooleanConverter ? ((BooleanConverter) converter)
+							.convertToBoolean(property) : (Boolean) converter
+							.convert(property), generation);
+		} else if (handle instanceof ReloadableDouble) {
+			((ReloadableDouble) handle)
+					.set(converter instanceof DoubleConverter ? ((DoubleConverter) converter)
+							.convertToDouble(property) : (Double) converter
+							.convert(property), generation);
+		} else {
+			((ReloadableValue<Object>) handle).set(converter.convert(property),
+					generation);
+		}
+	}
+
+	/**
+	 * Resolves and converts the property of a handle field against a pinned
+	 * snapshot, for reads within a scope pinning a generation the handle
+	 * holds no value for
+	 */
+	private final class HandleBinding implements SnapshotBinding {
+
+		private final Field field;
+		private final String propertyName;
+		private final PropertyConverter<?> converter;
+
+		HandleBinding(final Field field, final String propertyName) {
+			this.field = field;
+			this.propertyName = propertyName;
+			this.converter = ReloadablePropertyPostProcessor.this.propertyConversionService
+					.getConverterForField(field);
+		}
+
+		@Override
+		public Object getOwner() {
+			return ReloadablePropertyPostProcessor.this.placeholderConfigurer;
+		}
+
+		@Override
+		public Object resolve(final PropertiesSnapshot snapshot) {
+			final Object resolvedProperty = ReloadablePropertyPostProcessor.this.placeholderConfigurer
+					.resolveProperty(snapshot, this.propertyName);
+			if (null == resolvedProperty) {
+				return null;
+			}
+			try {
+				return this.converter.convert(resolvedProperty);
+			} catch (final RuntimeException e) {
+				log.error(
+						"Unable to convert property [{}] of generation [{}] for field [{}]\n Exception [{}]",
+						new Object[] { this.propertyName,
+								snapshot.getGeneration(), this.field.getName(),
+								e.getMessage() });
+				return null;
+			}
 		}
-		this.beanPropertySubscriptions.get(property).add(fieldProperty);
 	}
 
 	// ///////////////////////////////////
 	// Utility methods for class access //
 	// ///////////////////////////////////
 
-	private Object convertPropertyForField(final Field field,
-			final Object property) {
-		return this.propertyConversionService.convertPropertyForField(field,
-				resolverProperty(property));
+	/**
+	 * Resolves, converts and writes the property onto the field, or into the
+	 * {@link ReloadableValue} it holds. Primitive long, int, boolean and
+	 * double fields are converted and written without boxing when a
+	 * primitive converter is registered for them.
+	 * 
+	 * @param snapshot
+	 *            the snapshot to resolve the property against, handles are
+	 *            stamped with its generation
+	 */
+	private void injectProperty(final Object bean,
+			final FieldAccessor accessor, final Object property,
+			final PropertiesSnapshot snapshot) {
+		final Field field = accessor.getField();
+		final Class<?> type = field.getType();
+		final Object resolvedProperty = this.placeholderConfigurer
+				.resolveProperty(snapshot, property);
+		if (null == resolvedProperty) {
+			log.info(
+					"Property [{}] is no longer defined, leaving field [{}] of class [{}] unchanged",
+					new Object[] { property, field.getName(),
+							bean.getClass().getCanonicalName() });
+			return;
+		}
+		final PropertyConverter<?> converter = this.propertyConversionService
+				.getConverterForField(field);
+
+		if (log.isDebugEnabled()) {
+			log.debug("Setting field [{}] of class [{}] with value [{}]",
+					new Object[] { field.getName(),
+							bean.getClass().getCanonicalName(),
+							resolvedProperty });
+		}
+		try {
+			if (RELOADABLE_HANDLES.contains(type)) {
+				publishToHandle(accessor.get(bean), converter,
+						resolvedProperty, snapshot.getGeneration());
+			} else if (type == long.class && converter instanceof LongConverter) {
+				accessor.setLong(bean, ((LongConverter) converter)
+						.convertToLong(resolvedProperty));
+			} else if (type == int.class && converter instanceof IntConverter) {
+				accessor.setInt(bean,
+						((IntConverter) converter).convertToInt(resolvedProperty));
+			} else if (type == boolean.class
+					&& converter instanceof BooleanConverter) {
+				accessor.setBoolean(bean, ((BooleanConverter) converter)
+						.convertToBoolean(resolvedProperty));
+			} else if (type == double.class
+					&& converter instanceof DoubleConverter) {
+				accessor.setDouble(bean, ((DoubleConverter) converter)
+						.convertToDouble(resolvedProperty));
+			} else {
+				accessor.set(bean, converter.convert(resolvedProperty));
+			}
+		} catch (final RuntimeException e) {
+			throw DefaultPropertyConversionService.conversionFailed(field,
+					resolvedProperty, e);
+		}
 	}
 
+	/**
+	 * @return the property resolved against the current snapshot, ignoring
+	 *         any snapshot pinned by the dispatching thread
+	 */
 	private Object resolverProperty(final Object property) {
-		return this.placeholderConfigurer.resolveProperty(property);
+		return this.placeholderConfigurer.resolveProperty(getSnapshot(),
+				property);
 	}
 
-	private Properties getProperties() {
-		return this.placeholderConfigurer.getProperties();
+	private PropertiesSnapshot getSnapshot() {
+		return this.placeholderConfigurer.getSnapshot();
 	}
 }
@@ -0,0 +1,86 @@
+package com.vip.properties.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Objects;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Size, modification time and content hash of a watched file, used to skip
+ * reloads when a modification event did not actually change the bytes. A
+ * fingerprint taken without hashing the content never has the same content
+ * as another, leaving the comparison to whoever reloads the file.
+ */
+final class ResourceFingerprint {
+
+	/**
+	 * Coarsest modification time resolution we expect from a file system, a
+	 * file modified within this window of being fingerprinted may have been
+	 * changed again without its modification time moving.
+	 */
+	static final long MTIME_GRANULARITY_MILLIS = 2000;
+
+	private final long size;
+	private final long lastModified;
+	private final long capturedAt;
+	private final HashCode hash;
+
+	private ResourceFingerprint(final long size, final long lastModified,
+			final long capturedAt, final HashCode hash) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.capturedAt = capturedAt;
+		this.hash = hash;
+	}
+
+	static ResourceFingerprint of(final File file) throws IOException {
+		return of(file, true);
+	}
+
+	/**
+	 * @param hashContent
+	 *            whether to hash the content of the file, or only record its
+	 *            size and modification time
+	 */
+	static ResourceFingerprint of(final File file, final boolean hashContent)
+			throws IOException {
+		final long capturedAt = System.currentTimeMillis();
+		final long lastModified = file.lastModified();
+		final long size = file.length();
+		return new ResourceFingerprint(size, lastModified, capturedAt,
+				hashContent ? Files.hash(file, Hashing.murmur3_128()) : null);
+	}
+
+	/**
+	 * @return true if the size and modification time of the file still match
+	 *         and the modification time is old enough to be trusted, in which
+	 *         case the content does not need to be hashed again
+	 */
+	boolean isUnchanged(final File file) {
+		return isUnchanged(file.length(), file.lastModified());
+	}
+
+	/**
+	 * @see #isUnchanged(File)
+	 */
+	boolean isUnchanged(final long size, final long lastModified) {
+		return this.size == size && this.lastModified == lastModified
+				&& this.lastModified + MTIME_GRANULARITY_MILLIS < this.capturedAt;
+	}
+
+	boolean hasSameContent(final ResourceFingerprint other) {
+		return this.size == other.size && null != this.hash
+				&& this.hash.equals(other.hash);
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("size", this.size)
+				.add("lastModified", this.lastModified)
+				.add("hash", this.hash).toString();
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.vip.properties.internal;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Loads the data of all configured znodes at startup. Every getChildren and
+ * getData request is sent at once through Curator's background API and the
+ * results are awaited against a single deadline shared by every load of the
+ * bootstrap, so startup costs roughly one round trip per step instead of
+ * one per path. The time taken by each path is recorded.
+ */
+public class ZookeeperBootstrap {
+
+	protected static Logger log = LoggerFactory
+			.getLogger(ZookeeperBootstrap.class);
+
+	public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	private final CuratorFramework curatorFramework;
+	private final long timeoutMillis;
+	private final long deadlineNanos;
+
+	private final ConcurrentMap<String, Long> pathLoadMillis = Maps
+			.newConcurrentMap();
+	private volatile long totalLoadMillis = -1;
+
+	/**
+	 * @param timeoutMillis
+	 *            the time allowed for all loads of this bootstrap, counted
+	 *            from now
+	 */
+	public ZookeeperBootstrap(final CuratorFramework curatorFramework,
+			final long timeoutMillis) {
+		this.curatorFramework = curatorFramework;
+		this.timeoutMillis = timeoutMillis;
+		this.deadlineNanos = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	/**
+	 * @param paths
+	 *            the znodes to load
+	 * @return the data of each znode keyed by path
+	 * @throws IOException
+	 *             if any znode could not be read or the timeout elapsed
+	 */
+	public Map<String, byte[]> load(final String[] paths) throws IOException {
+		final ConcurrentMap<String, byte[]> results = Maps.newConcurrentMap();
+		final ConcurrentMap<String, KeeperException.Code> failures = Maps
+				.newConcurrentMap();
+		final CountDownLatch latch = new CountDownLatch(paths.length);
+		final long start = System.nanoTime();
+
+		for (final String path : paths) {
+			final long pathStart = System.nanoTime();
+			try {
+				this.curatorFramework.getData()
+						.inBackground(new BackgroundCallback() {
+							@Override
+							public void processResult(
+									final CuratorFramework client,
+									final CuratorEvent event) {
+								pathLoadMillis.put(path,
+										elapsedMillis(pathStart));
+								if (event.getResultCode() == KeeperException.Code.OK
+										.intValue()) {
+									results.put(path, null == event.getData() ? new byte[0]
+											: event.getData());
+								} else {
+									failures.put(path, KeeperException.Code
+											.get(event.getResultCode()));
+								}
+								latch.countDown();
+							}
+						}).forPath(path);
+			} catch (final Exception e) {
+				throw new IOException(String.format(
+						"Unable to request znode [%s]", path), e);
+			}
+		}
+
+		if (!await(latch)) {
+			throw new IOException(String.format(
+					"Timed out after [%s]ms loading znodes %s",
+					this.timeoutMillis,
+					Sets.difference(Sets.newHashSet(paths),
+							Sets.union(results.keySet(), failures.keySet()))));
+		}
+		this.totalLoadMillis = elapsedMillis(start);
+		if (!failures.isEmpty()) {
+			throw new IOException(String.format(
+					"Unable to load znodes %s", failures));
+		}
+		for (final String path : paths) {
+			log.info("Loaded znode [{}] in [{}]ms", new Object[] { path,
+					this.pathLoadMillis.get(path) });
+		}
+		log.info("Loaded [{}] znodes in [{}]ms", new Object[] {
+				paths.length, this.totalLoadMillis });
+		return results;
+	}
+
+	/**
+	 * Loads the children of every root, each child holding the value of the
+	 * property named after it. The children of all roots are listed at once,
+	 * then the data of all children is loaded at once.
+	 * 
+	 * @param roots
+	 *            the znodes whose children to load
+	 * @return the data of the children of each root keyed by root and child
+	 *         name
+	 * @throws IOException
+	 *             if any znode could not be read or the timeout elapsed
+	 */
+	public Map<String, Map<String, byte[]>> loadChildren(final String[] roots)
+			throws IOException {
+		final ConcurrentMap<String, List<String>> children = Maps
+				.newConcurrentMap();
+		final ConcurrentMap<String, KeeperException.Code> failures = Maps
+				.newConcurrentMap();
+		final CountDownLatch latch = new CountDownLatch(roots.length);
+		for (final String root : roots) {
+			try {
+				this.curatorFramework.getChildren()
+						.inBackground(new BackgroundCallback() {
+							@Override
+							public void processResult(
+									final CuratorFramework client,
+									final CuratorEvent event) {
+								if (event.getResultCode() == KeeperException.Code.OK
+										.intValue()) {
+									children.put(root, event.getChildren());
+								} else {
+									failures.put(root, KeeperException.Code
+											.get(event.getResultCode()));
+								}
+								latch.countDown();
+							}
+						}).forPath(root);
+			} catch (final Exception e) {
+				throw new IOException(String.format(
+						"Unable to list children of znode [%s]", root), e);
+			}
+		}
+		if (!await(latch)) {
+			throw new IOException(String.format(
+					"Timed out after [%s]ms listing the children of znodes %s",
+					this.timeoutMillis,
+					Sets.difference(Sets.newHashSet(roots),
+							Sets.union(children.keySet(), failures.keySet()))));
+		}
+		if (!failures.isEmpty()) {
+			throw new IOException(String.format(
+					"Unable to list children of znodes %s", failures));
+		}
+		final List<String> paths = Lists.newArrayList();
+		for (final Map.Entry<String, List<String>> entry : children.entrySet()) {
+			for (final String child : entry.getValue()) {
+				paths.add(ZKPaths.makePath(entry.getKey(), child));
+			}
+		}
+		final Map<String, byte[]> data = load(paths.toArray(new String[paths
+				.size()]));
+		final Map<String, Map<String, byte[]>> result = Maps.newHashMap();
+		for (final Map.Entry<String, List<String>> entry : children.entrySet()) {
+			final Map<String, byte[]> values = Maps.newHashMap();
+			for (final String child : entry.getValue()) {
+				values.put(child,
+						data.get(ZKPaths.makePath(entry.getKey(), child)));
+			}
+			result.put(entry.getKey(), values);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the time in milliseconds each znode took to load
+	 */
+	public Map<String, Long> getPathLoadMillis() {
+		return ImmutableMap.copyOf(this.pathLoadMillis);
+	}
+
+	/**
+	 * @return the time in milliseconds the whole load took, or -1 if it has
+	 *         not completed
+	 */
+	public long getTotalLoadMillis() {
+		return this.totalLoadMillis;
+	}
+
+	/**
+	 * @return whether the latch was counted down before the deadline
+	 */
+	private boolean await(final CountDownLatch latch) throws IOException {
+		try {
+			return latch.await(this.deadlineNanos - System.nanoTime(),
+					TimeUnit.NANOSECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading znodes", e);
+		}
+	}
+
+	private static long elapsedMillis(final long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+}
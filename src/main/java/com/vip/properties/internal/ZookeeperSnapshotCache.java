@@ -0,0 +1,315 @@
+package com.vip.properties.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vip.properties.snapshot.HashedProperties;
+
+/**
+ * The last good properties of every znode persisted to a local file, so an
+ * application can start while ZooKeeper is slow or unreachable. The file
+ * holds a magic number, a format version, the payload length and a CRC32 of
+ * the payload, it is read through a memory mapping and replaced atomically
+ * on write so a reader never sees a partially written file. The payload is
+ * checked and decoded straight from the mapping.
+ * <p>
+ * Writes handed over by {@link #writeLater(Map)} are made by a single writer
+ * thread, latest first: layers handed over while a write is pending replace
+ * it, so the file is never overwritten with older layers and bursts of
+ * changes cost one write.
+ */
+final class ZookeeperSnapshotCache {
+
+	protected static Logger log = LoggerFactory
+			.getLogger(ZookeeperSnapshotCache.class);
+
+	private static final int MAGIC = 0x52505a53;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 4 + 4 + 4 + 8;
+	private static final int CHUNK_LENGTH = 8192;
+
+	private final Path file;
+
+	private final AtomicReference<Map<String, HashedProperties>> pendingWrite = new AtomicReference<Map<String, HashedProperties>>();
+	private ExecutorService writer;
+	private boolean closed;
+
+	ZookeeperSnapshotCache(final File file) {
+		this.file = file.toPath();
+	}
+
+	/**
+	 * @return the properties of every cached znode keyed by path, or null if
+	 *         the file does not exist or is not a valid snapshot
+	 */
+	Map<String, HashedProperties> read() {
+		if (!Files.isRegularFile(this.file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(this.file,
+				StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_LENGTH
+					|| buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				log.warn("Ignoring unrecognised zookeeper snapshot [{}]",
+						this.file);
+				return null;
+			}
+			final int length = buffer.getInt();
+			final long checksum = buffer.getLong();
+			if (length != buffer.remaining()) {
+				log.warn("Ignoring truncated zookeeper snapshot [{}]", this.file);
+				return null;
+			}
+			if (crc(buffer.duplicate()) != checksum) {
+				log.warn("Ignoring corrupt zookeeper snapshot [{}]", this.file);
+				return null;
+			}
+			return decode(buffer);
+		} catch (final IOException | RuntimeException e) {
+			log.warn("Unable to read zookeeper snapshot [{}] Exception [{}]",
+					new Object[] { this.file, e.getMessage() });
+			return null;
+		}
+	}
+
+	/**
+	 * Hands the layers to the writer thread. Callers must hand layers over
+	 * in the order they were current, e.g. holding the lock they are swapped
+	 * under. Does nothing once the cache is closed.
+	 * 
+	 * @param layers
+	 *            the properties of every znode keyed by path
+	 */
+	void writeLater(final Map<String, HashedProperties> layers) {
+		if (null != this.pendingWrite.getAndSet(layers)) {
+			// The pending write has not started yet and will take these
+			return;
+		}
+		final boolean submitted = submit(new Runnable() {
+			@Override
+			public void run() {
+				final Map<String, HashedProperties> latest = pendingWrite
+						.getAndSet(null);
+				if (null == latest) {
+					return;
+				}
+				try {
+					write(latest);
+				} catch (final IOException e) {
+					log.warn(
+							"Unable to write zookeeper snapshot [{}] Exception [{}]",
+							new Object[] { file, e.getMessage() });
+				}
+			}
+		});
+		if (!submitted) {
+			this.pendingWrite.set(null);
+			log.debug("Zookeeper snapshot [{}] is closed, not writing it",
+					this.file);
+		}
+	}
+
+	/**
+	 * @return whether the task was handed to the writer thread, false once
+	 *         closed
+	 */
+	private synchronized boolean submit(final Runnable task) {
+		if (this.closed) {
+			return false;
+		}
+		if (null == this.writer) {
+			this.writer = Executors
+					.newSingleThreadExecutor(new ThreadFactoryBuilder()
+							.setNameFormat("zookeeper-snapshot-writer")
+							.setDaemon(true).build());
+		}
+		this.writer.execute(task);
+		return true;
+	}
+
+	/**
+	 * Stops the writer thread once the pending write, if any, is made. Layers
+	 * handed over afterwards are no longer written.
+	 */
+	synchronized void close() {
+		this.closed = true;
+		if (null != this.writer) {
+			this.writer.shutdown();
+			this.writer = null;
+		}
+	}
+
+	/**
+	 * Writes the layers now, on the calling thread
+	 * 
+	 * @param layers
+	 *            the properties of every znode keyed by path
+	 */
+	void write(final Map<String, HashedProperties> layers) throws IOException {
+		final byte[] payload = encode(layers);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				HEADER_LENGTH + payload.length);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(payload.length);
+		out.writeLong(crc(payload));
+		out.write(payload);
+		out.flush();
+
+		final Path directory = this.file.toAbsolutePath().getParent();
+		if (null != directory) {
+			Files.createDirectories(directory);
+		}
+		final Path temp = Files.createTempFile(directory, this.file
+				.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, bytes.toByteArray(), StandardOpenOption.SYNC);
+			try {
+				Files.move(temp, this.file, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static byte[] encode(final Map<String, HashedProperties> layers)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(layers.size());
+		for (final Map.Entry<String, HashedProperties> layer : layers
+				.entrySet()) {
+			writeString(out, layer.getKey());
+			out.writeInt(layer.getValue().size());
+			for (final Map.Entry<String, String> entry : layer.getValue()
+					.asMap().entrySet()) {
+				writeString(out, entry.getKey());
+				writeString(out, entry.getValue());
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static Map<String, HashedProperties> decode(final ByteBuffer buffer)
+			throws CharacterCodingException {
+		final StringDecoder strings = new StringDecoder();
+		final Map<String, HashedProperties> layers = Maps.newHashMap();
+		final int layerCount = buffer.getInt();
+		for (int i = 0; i < layerCount; i++) {
+			final String path = strings.read(buffer);
+			final int size = buffer.getInt();
+			final Map<String, String> properties = Maps
+					.newHashMapWithExpectedSize(size);
+			for (int j = 0; j < size; j++) {
+				final String key = strings.read(buffer);
+				properties.put(key, strings.read(buffer));
+			}
+			layers.put(path, HashedProperties.of(properties));
+		}
+		return layers;
+	}
+
+	private static void writeString(final DataOutputStream out,
+			final String value) throws IOException {
+		final byte[] bytes = value.getBytes(Charsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static long crc(final byte[] payload) {
+		final CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * @return the CRC32 of the remaining bytes of the buffer, read through
+	 *         a small chunk rather than copied out whole
+	 */
+	private static long crc(final ByteBuffer buffer) {
+		final CRC32 crc = new CRC32();
+		final byte[] chunk = new byte[Math.min(CHUNK_LENGTH,
+				buffer.remaining())];
+		while (buffer.hasRemaining()) {
+			final int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Decodes length prefixed UTF-8 strings straight from a buffer into a
+	 * reused char buffer, so a string costs no more than its own chars
+	 */
+	private static final class StringDecoder {
+
+		private final CharsetDecoder decoder = Charsets.UTF_8.newDecoder();
+		private CharBuffer chars = CharBuffer.allocate(256);
+
+		String read(final ByteBuffer buffer) throws CharacterCodingException {
+			final int length = buffer.getInt();
+			if (length < 0 || length > buffer.remaining()) {
+				throw new IllegalArgumentException("Invalid string length "
+						+ length);
+			}
+			if (this.chars.capacity() < length) {
+				// UTF-8 never decodes to more chars than bytes
+				this.chars = CharBuffer.allocate(Math.max(length,
+						this.chars.capacity() * 2));
+			}
+			final ByteBuffer bytes = buffer.duplicate();
+			bytes.limit(bytes.position() + length);
+			buffer.position(buffer.position() + length);
+			this.chars.clear();
+			this.decoder.reset();
+			CoderResult result = this.decoder.decode(bytes, this.chars, true);
+			if (!result.isError()) {
+				result = this.decoder.flush(this.chars);
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			return new String(this.chars.array(), 0, this.chars.position());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("file", this.file).toString();
+	}
+
+}
@@ -1,12 +1,20 @@
 package com.vip.properties.internal;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.NodeCache;
 import org.apache.curator.framework.recipes.cache.NodeCacheListener;
 import org.apache.curator.framework.recipes.cache.PathChildrenCache;
@@ -14,56 +22,116 @@ import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent.Type;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class ZookeeperWatcher {
 	protected static Logger log = LoggerFactory
 			.getLogger(ZookeeperWatcher.class);
 
 	private final String[] locations;
+	private final String[] keyLocations;
 	private final EventPublisher eventPublisher;
 
 	private CuratorFramework curatorFramework;
 	final ExecutorService service;
 
+	private final List<Closeable> caches = new CopyOnWriteArrayList<Closeable>();
+
+	/**
+	 * @param locations
+	 *            the znodes each holding a properties blob
+	 * @param keyLocations
+	 *            the znodes whose children each hold one property
+	 * @param connectTimeoutMillis
+	 *            how long to wait for the shared zookeeper client to connect
+	 * @throws IOException
+	 *             if the client did not connect within the timeout
+	 */
 	public ZookeeperWatcher(final String[] locations,
-			final EventPublisher eventPublisher) {
+			final String[] keyLocations, final EventPublisher eventPublisher,
+			final long connectTimeoutMillis) throws IOException {
 		this.locations = locations;
+		this.keyLocations = keyLocations;
 		this.eventPublisher = eventPublisher;
-		this.curatorFramework = ZkClientFacotry.getZkClient();
-		this.service = Executors.newCachedThreadPool();
+		this.curatorFramework = ZkClientFacotry
+				.getZkClient(connectTimeoutMillis);
+		this.service = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setNameFormat("zookeeper-watcher-%d").setDaemon(true).build());
 	}
 
 	public void start() {
 		Set<String> locationsSet = Sets.newHashSet(this.locations);
-		Set<String> locationParentSet = Sets.newHashSet();
+		Map<String, Set<String>> pendingLocations = Maps.newHashMap();
 		for (String path : locationsSet) {
 			try {
 				Stat stat = curatorFramework.checkExists().forPath(path);
 				if (stat != null) {
-					doNodeWatch(path);
+					doNodeWatch(path, true);
 				} else {
 					String parentPath = path
 							.substring(0, path.lastIndexOf("/"));
-					locationParentSet.add(parentPath);
+					Set<String> pending = pendingLocations.get(parentPath);
+					if (null == pending) {
+						pending = Collections
+								.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+						pendingLocations.put(parentPath, pending);
+					}
+					pending.add(path);
 				}
 			} catch (Exception e) {
 				log.error("Unable to watch path [{}] Exception [{}]",
 						new Object[] { path, e.getMessage() });
 			}
 		}
-		doPathWatch(locationParentSet);
+		doPathWatch(pendingLocations);
+		for (String root : Sets.newHashSet(this.keyLocations)) {
+			try {
+				doKeysWatch(root);
+			} catch (Exception e) {
+				log.error("Unable to watch path [{}] Exception [{}]",
+						new Object[] { root, e.getMessage() });
+			}
+		}
+	}
+
+	/**
+	 * Closes all node caches and releases the shared zookeeper client
+	 */
+	public void close() {
+		for (Closeable cache : this.caches) {
+			try {
+				cache.close();
+			} catch (IOException e) {
+				log.warn("Unable to close zookeeper cache Exception [{}]",
+						e.getMessage());
+			}
+		}
+		this.caches.clear();
+		this.service.shutdownNow();
+		ZkClientFacotry.releaseZkClient(this.curatorFramework);
 	}
 
-	private void doPathWatch(Set<String> pathSet) {
-		for (String path : pathSet) {
+	/**
+	 * Watches the parent of every location which does not exist yet, each
+	 * location is watched once it is created and its data published once
+	 * the watch is set. The cache of a parent is closed once all its pending
+	 * locations exist.
+	 */
+	private void doPathWatch(Map<String, Set<String>> pendingLocations) {
+		for (Map.Entry<String, Set<String>> parent : pendingLocations
+				.entrySet()) {
+			final String path = parent.getKey();
+			final Set<String> pending = parent.getValue();
 			final PathChildrenCache cache = new PathChildrenCache(
 					curatorFramework, path, true);
+			this.caches.add(cache);
 			try {
 				cache.start();
 				cache.getListenable().addListener(
@@ -72,15 +140,18 @@ public class ZookeeperWatcher {
 							public void childEvent(CuratorFramework client,
 									PathChildrenCacheEvent event)
 									throws Exception {
-								if (event.getType() == Type.CHILD_ADDED) {
-									final String path = event.getData()
-											.getPath();
+								if (event.getType() == Type.CHILD_ADDED
+										&& pending.remove(event.getData()
+												.getPath())) {
 									try {
-										eventPublisher.onZookeeperChanged(event
-												.getData().getData());
-										doNodeWatch(path);
+										// Publishes the data once loaded
+										doNodeWatch(event.getData().getPath(),
+												false);
 									} finally {
-										cache.close();
+										if (pending.isEmpty()) {
+											caches.remove(cache);
+											cache.close();
+										}
 									}
 								}
 							}
@@ -92,44 +163,171 @@ public class ZookeeperWatcher {
 		}
 	}
 
-	private void doNodeWatch(String path) throws Exception {
+	/**
+	 * Watches the children of the root, publishing the single key of every
+	 * child added, updated or removed. Once the initial children are loaded
+	 * they are published whole, so changes made since the keys were loaded
+	 * at startup are not missed. Events are handled on the cache's own
+	 * thread, so the changes of a key are published in order.
+	 */
+	private void doKeysWatch(final String root) throws Exception {
+		final PathChildrenCache cache = new PathChildrenCache(curatorFramework,
+				root, true);
+		this.caches.add(cache);
+		cache.getListenable().addListener(new PathChildrenCacheListener() {
+			private boolean initialized;
+
+			@Override
+			public void childEvent(CuratorFramework client,
+					PathChildrenCacheEvent event) throws Exception {
+				switch (event.getType()) {
+				case INITIALIZED:
+					initialized = true;
+					// The current data holds every change made meanwhile
+					final Map<String, byte[]> children = Maps.newHashMap();
+					for (ChildData child : cache.getCurrentData()) {
+						children.put(ZKPaths.getNodeFromPath(child.getPath()),
+								null == child.getData() ? new byte[0] : child
+										.getData());
+					}
+					eventPublisher.onZookeeperKeysLoaded(root, children);
+					break;
+				case CHILD_ADDED:
+				case CHILD_UPDATED:
+					if (initialized) {
+						eventPublisher.onZookeeperKeyChanged(root, ZKPaths
+								.getNodeFromPath(event.getData().getPath()),
+								null == event.getData().getData() ? new byte[0]
+										: event.getData().getData());
+					}
+					break;
+				case CHILD_REMOVED:
+					if (initialized) {
+						eventPublisher.onZookeeperKeyChanged(root, ZKPaths
+								.getNodeFromPath(event.getData().getPath()),
+								null);
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		});
+		cache.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
+	}
+
+	/**
+	 * @param buildInitial
+	 *            whether the current data is loaded at startup and only later
+	 *            changes published, otherwise the data is published once
+	 *            loaded, which misses no change made before the watch is set
+	 */
+	private void doNodeWatch(final String path, final boolean buildInitial)
+			throws Exception {
 		final NodeCache cache = new NodeCache(curatorFramework, path);
+		this.caches.add(cache);
 		cache.getListenable().addListener(new NodeCacheListener() {
 			@Override
 			public void nodeChanged() throws Exception {
-				byte[] data = cache.getCurrentData().getData();
-				eventPublisher.onZookeeperChanged(data);
-				;
+				final ChildData currentData = cache.getCurrentData();
+				// A deleted node no longer defines any properties
+				final byte[] data = null == currentData
+						|| null == currentData.getData() ? new byte[0]
+						: currentData.getData();
+				eventPublisher.onZookeeperChanged(path, data);
 			}
 		}, service);
-		cache.start(true);
-
+		cache.start(buildInitial);
 	}
 
+	/**
+	 * Registry of the Curator clients of the JVM, one per connect string.
+	 * Clients are reference counted, every {@link #getZkClient(long)} must
+	 * be paired with a {@link #releaseZkClient(CuratorFramework)} and a
+	 * client is closed once its last reference is released.
+	 */
 	public static class ZkClientFacotry {
 
-		private static Map<String, CuratorFramework> cacheConnection = Maps
-				.newConcurrentMap();
+		private static final Map<String, SharedClient> cacheConnection = Maps
+				.newHashMap();
 
-		public static CuratorFramework getZkClient() {
+		/**
+		 * @param connectTimeoutMillis
+		 *            how long to wait for the connection to be established
+		 * @return the shared client of the connect string held by the
+		 *         ZK_CONNECTION system property
+		 * @throws IOException
+		 *             if no connection was established within the timeout
+		 */
+		public static CuratorFramework getZkClient(
+				final long connectTimeoutMillis) throws IOException {
 			String zkConnection = System.getProperty("ZK_CONNECTION");
-			if (cacheConnection.get(zkConnection) != null) {
-				return cacheConnection.get(zkConnection);
-			} else {
-				CuratorFrameworkFactory.Builder builder = CuratorFrameworkFactory
-						.builder();
-				CuratorFramework client = builder.connectString(zkConnection)
-						.sessionTimeoutMs(30000).connectionTimeoutMs(30000)
-						.canBeReadOnly(true)
-						.retryPolicy(new ExponentialBackoffRetry(1000, 3))
-						.build();
-				client.start();
-				try {
-					client.blockUntilConnected();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+			final CuratorFramework client;
+			synchronized (cacheConnection) {
+				SharedClient shared = cacheConnection.get(zkConnection);
+				if (null == shared) {
+					shared = new SharedClient(newClient(zkConnection));
+					cacheConnection.put(zkConnection, shared);
+				}
+				shared.references++;
+				client = shared.client;
+			}
+			try {
+				if (client.blockUntilConnected((int) connectTimeoutMillis,
+						TimeUnit.MILLISECONDS)) {
+					return client;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			releaseZkClient(client);
+			throw new IOException(String.format(
+					"Unable to connect to zookeeper [%s] within [%s]ms",
+					zkConnection, connectTimeoutMillis));
+		}
+
+		/**
+		 * Releases a reference obtained from {@link #getZkClient(long)},
+		 * closing the client once no references are left
+		 */
+		public static void releaseZkClient(final CuratorFramework client) {
+			synchronized (cacheConnection) {
+				for (Map.Entry<String, SharedClient> entry : cacheConnection
+						.entrySet()) {
+					final SharedClient shared = entry.getValue();
+					if (shared.client == client) {
+						if (--shared.references == 0) {
+							log.info("Closing zookeeper client [{}]",
+									entry.getKey());
+							cacheConnection.remove(entry.getKey());
+							client.close();
+						}
+						return;
+					}
 				}
-				return client;
+			}
+			log.warn("Released unknown zookeeper client [{}]", client);
+		}
+
+		private static CuratorFramework newClient(final String zkConnection) {
+			log.info("Starting zookeeper client [{}]", zkConnection);
+			CuratorFrameworkFactory.Builder builder = CuratorFrameworkFactory
+					.builder();
+			CuratorFramework client = builder.connectString(zkConnection)
+					.sessionTimeoutMs(30000).connectionTimeoutMs(30000)
+					.canBeReadOnly(true)
+					.retryPolicy(new ExponentialBackoffRetry(1000, 3)).build();
+			client.start();
+			return client;
+		}
+
+		private static final class SharedClient {
+
+			private final CuratorFramework client;
+			private int references;
+
+			private SharedClient(final CuratorFramework client) {
+				this.client = client;
 			}
 		}
 	}
@@ -0,0 +1,212 @@
+package com.vip.properties.resolver;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Compiled {@link PlaceholderTemplate}s for a set of properties together with a
+ * reverse dependency index (key to the keys whose values reference it). Only
+ * values holding placeholders are compiled, literal values are read from the
+ * properties themselves. Resolved values are memoized, instances are immutable
+ * apart from the memo and are rebuilt per reload, re-using the templates and
+ * resolved values of every key not affected by the change.
+ */
+public final class CompiledPropertyTemplates {
+
+	private final Map<String, String> properties;
+	private final ImmutableMap<String, PlaceholderTemplate> templates;
+	private final ImmutableSetMultimap<String, String> dependents;
+	private final ConcurrentMap<String, String> resolved;
+
+	private CompiledPropertyTemplates(final Map<String, String> properties,
+			final ImmutableMap<String, PlaceholderTemplate> templates,
+			final ImmutableSetMultimap<String, String> dependents,
+			final ConcurrentMap<String, String> resolved) {
+		this.properties = properties;
+		this.templates = templates;
+		this.dependents = dependents;
+		this.resolved = resolved;
+	}
+
+	/**
+	 * @param properties
+	 *            the raw property values to compile, an immutable map which is
+	 *            kept to read literal values from
+	 * @return the compiled templates
+	 */
+	public static CompiledPropertyTemplates compile(
+			final Map<String, String> properties) {
+		final ImmutableMap.Builder<String, PlaceholderTemplate> templates = ImmutableMap
+				.builder();
+		final ImmutableSetMultimap.Builder<String, String> dependents = ImmutableSetMultimap
+				.builder();
+		for (final Map.Entry<String, String> entry : properties.entrySet()) {
+			addTemplate(templates, dependents, entry.getKey(),
+					entry.getValue());
+		}
+		return new CompiledPropertyTemplates(properties, templates.build(),
+				dependents.build(), Maps.<String, String> newConcurrentMap());
+	}
+
+	private static void addTemplate(
+			final ImmutableMap.Builder<String, PlaceholderTemplate> templates,
+			final ImmutableSetMultimap.Builder<String, String> dependents,
+			final String key, final String raw) {
+		final PlaceholderTemplate template = PlaceholderTemplate.compile(raw);
+		if (!template.isLiteral()) {
+			addTemplate(templates, dependents, key, template);
+		}
+	}
+
+	private static void addTemplate(
+			final ImmutableMap.Builder<String, PlaceholderTemplate> templates,
+			final ImmutableSetMultimap.Builder<String, String> dependents,
+			final String key, final PlaceholderTemplate template) {
+		templates.put(key, template);
+		for (final String reference : template.getReferences()) {
+			dependents.put(reference, key);
+		}
+	}
+
+	/**
+	 * @param properties
+	 *            all raw property values after the change, an immutable map
+	 *            which is kept to read literal values from
+	 * @param changedKeys
+	 *            the keys whose raw value changed
+	 * @return the compiled templates for the changed properties, sharing
+	 *         the templates and dependency index of these if no changed key
+	 *         holds a placeholder before or after the change
+	 */
+	public CompiledPropertyTemplates withChanges(
+			final Map<String, String> properties,
+			final Collection<String> changedKeys) {
+		// Unchanged literal values stay literal, only compile changed values
+		final Set<String> changed = Sets.newHashSet(changedKeys);
+		final Map<String, PlaceholderTemplate> compiled = Maps.newHashMap();
+		boolean templatesChanged = false;
+		for (final String key : changed) {
+			final String raw = properties.get(key);
+			if (null != raw) {
+				final PlaceholderTemplate template = PlaceholderTemplate
+						.compile(raw);
+				if (!template.isLiteral()) {
+					compiled.put(key, template);
+					templatesChanged = true;
+				}
+			}
+			templatesChanged |= this.templates.containsKey(key);
+		}
+		final CompiledPropertyTemplates next;
+		if (templatesChanged) {
+			final ImmutableMap.Builder<String, PlaceholderTemplate> templates = ImmutableMap
+					.builder();
+			final ImmutableSetMultimap.Builder<String, String> dependents = ImmutableSetMultimap
+					.builder();
+			for (final Map.Entry<String, PlaceholderTemplate> entry : this.templates
+					.entrySet()) {
+				if (!changed.contains(entry.getKey())) {
+					addTemplate(templates, dependents, entry.getKey(),
+							entry.getValue());
+				}
+			}
+			for (final Map.Entry<String, PlaceholderTemplate> entry : compiled
+					.entrySet()) {
+				addTemplate(templates, dependents, entry.getKey(),
+						entry.getValue());
+			}
+			next = new CompiledPropertyTemplates(properties, templates.build(),
+					dependents.build(), Maps.<String, String> newConcurrentMap());
+		} else {
+			next = new CompiledPropertyTemplates(properties, this.templates,
+					this.dependents, Maps.<String, String> newConcurrentMap());
+		}
+
+		// Carry over memoized values which the change cannot have affected
+		final Set<String> affected = templatesChanged ? Sets.union(
+				this.affectedBy(changedKeys), next.affectedBy(changedKeys))
+				: this.affectedBy(changedKeys);
+		for (final Map.Entry<String, String> entry : this.resolved.entrySet()) {
+			if (!affected.contains(entry.getKey())) {
+				next.resolved.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * @param key
+	 *            the property to resolve
+	 * @return the value of the property with all placeholders substituted,
+	 *         unresolvable placeholders are left as they are, or null if there
+	 *         is no such property
+	 * @throws IllegalArgumentException
+	 *             if the property references itself, directly or indirectly
+	 */
+	public String resolve(final String key) {
+		final String existing = this.resolved.get(key);
+		if (null != existing) {
+			return existing;
+		}
+		return resolve(key, new LinkedHashSet<String>());
+	}
+
+	private String resolve(final String key, final Set<String> visiting) {
+		final String existing = this.resolved.get(key);
+		if (null != existing) {
+			return existing;
+		}
+		final PlaceholderTemplate template = this.templates.get(key);
+		if (null == template) {
+			return this.properties.get(key);
+		}
+		if (!visiting.add(key)) {
+			throw new IllegalArgumentException(String.format(
+					"Circular placeholder reference [%s] in properties [%s]",
+					key, Joiner.on(" -> ").join(visiting)));
+		}
+		final String[] references = new String[template.getReferences()
+				.size()];
+		for (int i = 0; i < references.length; i++) {
+			final String reference = template.getReferences().get(i);
+			final String value = resolve(reference, visiting);
+			references[i] = null == value ? PlaceholderTemplate
+					.placeholder(reference) : value;
+		}
+		visiting.remove(key);
+		final String value = template.render(references);
+		this.resolved.put(key, value);
+		return value;
+	}
+
+	/**
+	 * @param keys
+	 *            the keys which changed
+	 * @return the given keys plus every key which transitively references one
+	 *         of them
+	 */
+	public Set<String> affectedBy(final Collection<String> keys) {
+		final Set<String> affected = Sets.newLinkedHashSet(keys);
+		final Deque<String> toVisit = new ArrayDeque<String>(keys);
+		while (!toVisit.isEmpty()) {
+			for (final String dependent : this.dependents.get(toVisit.poll())) {
+				if (affected.add(dependent)) {
+					toVisit.add(dependent);
+				}
+			}
+		}
+		return affected;
+	}
+
+}
@@ -0,0 +1,117 @@
+package com.vip.properties.resolver;
+
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A property value parsed once into literal text and ${...} references, so
+ * resolving it never has to scan the raw value again.
+ */
+public final class PlaceholderTemplate {
+
+	private static final String PREFIX = "${";
+	private static final String SUFFIX = "}";
+
+	private final String raw;
+	private final String[] literals;
+	private final ImmutableList<String> references;
+
+	private PlaceholderTemplate(final String raw, final String[] literals,
+			final ImmutableList<String> references) {
+		this.raw = raw;
+		this.literals = literals;
+		this.references = references;
+	}
+
+	/**
+	 * @param raw
+	 *            the raw property value
+	 * @return the compiled template of the value
+	 */
+	public static PlaceholderTemplate compile(final String raw) {
+		int startingIndex = raw.indexOf(PREFIX);
+		if (startingIndex < 0) {
+			return new PlaceholderTemplate(raw, null,
+					ImmutableList.<String> of());
+		}
+		final List<String> literals = Lists.newArrayList();
+		final ImmutableList.Builder<String> references = ImmutableList
+				.builder();
+		final StringBuilder literal = new StringBuilder();
+		int position = 0;
+		while (startingIndex >= 0) {
+			final int endingIndex = raw.indexOf(SUFFIX, startingIndex
+					+ PREFIX.length());
+			if (endingIndex < 0) {
+				break;
+			}
+			literal.append(raw, position, startingIndex);
+			literals.add(literal.toString());
+			literal.setLength(0);
+			references.add(raw.substring(startingIndex + PREFIX.length(),
+					endingIndex));
+			position = endingIndex + SUFFIX.length();
+			startingIndex = raw.indexOf(PREFIX, position);
+		}
+		if (literals.isEmpty()) {
+			return new PlaceholderTemplate(raw, null,
+					ImmutableList.<String> of());
+		}
+		literals.add(raw.substring(position));
+		return new PlaceholderTemplate(raw,
+				literals.toArray(new String[literals.size()]),
+				references.build());
+	}
+
+	public String getRaw() {
+		return this.raw;
+	}
+
+	/**
+	 * @return the keys referenced by this template, in order of appearance
+	 */
+	public ImmutableList<String> getReferences() {
+		return this.references;
+	}
+
+	public boolean isLiteral() {
+		return this.references.isEmpty();
+	}
+
+	/**
+	 * @param resolvedReferences
+	 *            the resolved value of each reference, in the order of
+	 *            {@link #getReferences()}
+	 * @return the rendered value
+	 */
+	public String render(final String[] resolvedReferences) {
+		if (isLiteral()) {
+			return this.raw;
+		}
+		final StringBuilder builder = new StringBuilder(this.raw.length());
+		builder.append(this.literals[0]);
+		for (int i = 0; i < resolvedReferences.length; i++) {
+			builder.append(resolvedReferences[i]).append(this.literals[i + 1]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @param reference
+	 *            an unresolvable reference of this template
+	 * @return the reference as it appeared in the raw value
+	 */
+	public static String placeholder(final String reference) {
+		return PREFIX + reference + SUFFIX;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("raw", this.raw)
+				.add("references", this.references).toString();
+	}
+
+}
@@ -0,0 +1,347 @@
+package com.vip.properties.snapshot;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * An immutable map of properties held in a handful of arrays instead of an
+ * entry, a key and a value object per property, for configurations of
+ * hundreds of thousands of keys. Keys are split after their last dot, the
+ * part before it is stored once for all keys sharing it and the rest is
+ * packed into a single char array. Equal values are stored once, and
+ * values which are plain decimal numbers are parsed once and kept as
+ * primitives, see {@link #getLong(String, long)}.
+ * <p>
+ * Lookups probe an open addressing table of entry indices, comparing keys
+ * in place. Iterating builds a key String per entry.
+ */
+public final class CompactProperties extends AbstractMap<String, String> {
+
+	// Kinds of numeric values, zero if a value is not numeric
+	private static final byte LONG = 1;
+	private static final byte DOUBLE = 2;
+
+	public static final CompactProperties EMPTY = copyOf(ImmutableMap
+			.<String, String> of());
+
+	private final String[] prefixes;
+	private final char[] suffixes;
+	private final String[] values;
+	private final byte[] numericKinds;
+	private final long[] numbers;
+
+	// Per entry
+	private final int[] keyPrefixes;
+	private final int[] suffixEnds;
+	private final int[] keyHashes;
+	private final int[] keyValues;
+
+	// Entry index plus one per slot, zero for an empty slot
+	private final int[] table;
+
+	private Set<Map.Entry<String, String>> entrySet;
+
+	private CompactProperties(final Map<String, String> properties) {
+		final int size = properties.size();
+		this.keyPrefixes = new int[size];
+		this.suffixEnds = new int[size];
+		this.keyHashes = new int[size];
+		this.keyValues = new int[size];
+
+		final Map<String, Integer> prefixIndex = Maps.newHashMap();
+		final List<String> prefixes = Lists.newArrayList();
+		final Map<String, Integer> valueIndex = Maps
+				.newHashMapWithExpectedSize(size);
+		final List<String> values = Lists.newArrayList();
+		final StringBuilder suffixes = new StringBuilder();
+		int entry = 0;
+		for (final Map.Entry<String, String> property : properties.entrySet()) {
+			final String key = property.getKey();
+			final int split = key.lastIndexOf('.') + 1;
+			this.keyPrefixes[entry] = indexOf(prefixIndex, prefixes,
+					key.substring(0, split));
+			suffixes.append(key, split, key.length());
+			this.suffixEnds[entry] = suffixes.length();
+			this.keyHashes[entry] = key.hashCode();
+			this.keyValues[entry] = indexOf(valueIndex, values,
+					property.getValue());
+			entry++;
+		}
+		this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+		this.suffixes = suffixes.toString().toCharArray();
+		this.values = values.toArray(new String[values.size()]);
+
+		this.numericKinds = new byte[this.values.length];
+		this.numbers = new long[this.values.length];
+		for (int i = 0; i < this.values.length; i++) {
+			parseNumber(i);
+		}
+
+		int capacity = 2;
+		while (capacity < size * 2L) {
+			capacity <<= 1;
+		}
+		this.table = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			int slot = spread(this.keyHashes[i]) & (capacity - 1);
+			while (0 != this.table[slot]) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			this.table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * @return a compact copy of the properties, or the properties themselves
+	 *         if they are already compact
+	 */
+	public static CompactProperties copyOf(final Map<String, String> properties) {
+		if (properties instanceof CompactProperties) {
+			return (CompactProperties) properties;
+		}
+		return new CompactProperties(properties);
+	}
+
+	private static int indexOf(final Map<String, Integer> index,
+			final List<String> distinct, final String value) {
+		final Integer existing = index.get(value);
+		if (null != existing) {
+			return existing;
+		}
+		index.put(value, distinct.size());
+		distinct.add(value);
+		return distinct.size() - 1;
+	}
+
+	private void parseNumber(final int value) {
+		final String text = this.values[value];
+		if (isInteger(text) && text.length() <= 20) {
+			try {
+				this.numbers[value] = Long.parseLong(text);
+				this.numericKinds[value] = LONG;
+				return;
+			} catch (final NumberFormatException e) {
+				// Out of range, still a valid double
+			}
+		}
+		if (isDecimal(text)) {
+			this.numbers[value] = Double.doubleToRawLongBits(Double
+					.parseDouble(text));
+			this.numericKinds[value] = DOUBLE;
+		}
+	}
+
+	private static boolean isInteger(final String text) {
+		final int start = skipSign(text, 0);
+		return start < text.length() && skipDigits(text, start) == text.length();
+	}
+
+	/**
+	 * @return whether the text is a decimal number, with an optional
+	 *         fraction and exponent, i.e. a subset of what
+	 *         {@link Double#parseDouble(String)} accepts
+	 */
+	private static boolean isDecimal(final String text) {
+		final int start = skipSign(text, 0);
+		int position = skipDigits(text, start);
+		int digits = position - start;
+		if (position < text.length() && '.' == text.charAt(position)) {
+			final int fraction = position + 1;
+			position = skipDigits(text, fraction);
+			digits += position - fraction;
+		}
+		if (0 == digits) {
+			return false;
+		}
+		if (position < text.length()
+				&& ('e' == text.charAt(position) || 'E' == text
+						.charAt(position))) {
+			final int exponent = skipSign(text, position + 1);
+			position = skipDigits(text, exponent);
+			if (position == exponent) {
+				return false;
+			}
+		}
+		return position == text.length();
+	}
+
+	private static int skipSign(final String text, final int start) {
+		return start < text.length()
+				&& ('-' == text.charAt(start) || '+' == text.charAt(start)) ? start + 1
+				: start;
+	}
+
+	private static int skipDigits(final String text, final int start) {
+		int position = start;
+		while (position < text.length() && text.charAt(position) >= '0'
+				&& text.charAt(position) <= '9') {
+			position++;
+		}
+		return position;
+	}
+
+	private static int spread(final int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return the index of the entry of the key, or -1 if there is none
+	 */
+	private int entryOf(final Object key) {
+		if (!(key instanceof String)) {
+			return -1;
+		}
+		final String name = (String) key;
+		final int hash = name.hashCode();
+		final int mask = this.table.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			final int entry = this.table[slot] - 1;
+			if (entry < 0) {
+				return -1;
+			}
+			if (this.keyHashes[entry] == hash && keyEquals(entry, name)) {
+				return entry;
+			}
+		}
+	}
+
+	private boolean keyEquals(final int entry, final String key) {
+		final String prefix = this.prefixes[this.keyPrefixes[entry]];
+		final int start = suffixStart(entry);
+		final int length = this.suffixEnds[entry] - start;
+		if (key.length() != prefix.length() + length
+				|| !key.startsWith(prefix)) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key.charAt(prefix.length() + i) != this.suffixes[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int suffixStart(final int entry) {
+		return 0 == entry ? 0 : this.suffixEnds[entry - 1];
+	}
+
+	/**
+	 * @return the key of the entry, entries being numbered in iteration
+	 *         order
+	 */
+	String keyAt(final int entry) {
+		final int start = suffixStart(entry);
+		return this.prefixes[this.keyPrefixes[entry]].concat(new String(
+				this.suffixes, start, this.suffixEnds[entry] - start));
+	}
+
+	@Override
+	public String get(final Object key) {
+		final int entry = entryOf(key);
+		return entry < 0 ? null : this.values[this.keyValues[entry]];
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return entryOf(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return this.keyValues.length;
+	}
+
+	/**
+	 * @return the value of the key as a long, parsed when these properties
+	 *         were built if it is a plain decimal integer, or the default
+	 *         value if there is no such key
+	 * @throws NumberFormatException
+	 *             if the value is not a long
+	 */
+	public long getLong(final String key, final long defaultValue) {
+		final int entry = entryOf(key);
+		if (entry < 0) {
+			return defaultValue;
+		}
+		final int value = this.keyValues[entry];
+		return LONG == this.numericKinds[value] ? this.numbers[value] : Long
+				.parseLong(this.values[value]);
+	}
+
+	/**
+	 * @return the value of the key as a double, parsed when these properties
+	 *         were built if it is a plain decimal number, or the default value
+	 *         if there is no such key
+	 * @throws NumberFormatException
+	 *             if the value is not a double
+	 */
+	public double getDouble(final String key, final double defaultValue) {
+		final int entry = entryOf(key);
+		if (entry < 0) {
+			return defaultValue;
+		}
+		final int value = this.keyValues[entry];
+		switch (this.numericKinds[value]) {
+		case LONG:
+			return this.numbers[value];
+		case DOUBLE:
+			return Double.longBitsToDouble(this.numbers[value]);
+		default:
+			return Double.parseDouble(this.values[value]);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		if (null == this.entrySet) {
+			this.entrySet = new AbstractSet<Map.Entry<String, String>>() {
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size() {
+					return CompactProperties.this.size();
+				}
+			};
+		}
+		return this.entrySet;
+	}
+
+	private final class EntryIterator implements
+			Iterator<Map.Entry<String, String>> {
+
+		private int next;
+
+		@Override
+		public boolean hasNext() {
+			return this.next < size();
+		}
+
+		@Override
+		public Map.Entry<String, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final int entry = this.next++;
+			return new SimpleImmutableEntry<String, String>(keyAt(entry),
+					values[keyValues[entry]]);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
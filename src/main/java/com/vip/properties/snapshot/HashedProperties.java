@@ -0,0 +1,530 @@
+package com.vip.properties.snapshot;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * An immutable set of properties whose keys are partitioned into hash
+ * buckets, each carrying an order independent digest of its entries. Two
+ * instances can then be diffed by comparing bucket digests and only walking
+ * the buckets which differ, see {@link PropertiesDiff}.
+ * <p>
+ * Unless compact, the buckets are the leaves of a persistent radix tree of
+ * at most four levels. Changing a key copies its bucket, updates the digest
+ * of that bucket alone and copies the path to it, every other bucket is
+ * shared with the properties the change was applied to.
+ */
+public final class HashedProperties {
+
+	private static final int ENTRIES_PER_BUCKET = 8;
+	private static final int MAX_BUCKETS = 1 << 16;
+
+	// Children per node of the bucket tree
+	private static final int NODE_BITS = 5;
+	private static final int NODE_MASK = (1 << NODE_BITS) - 1;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	public static final HashedProperties EMPTY = of(ImmutableMap
+			.<String, String> of());
+
+	private final int size;
+	private final int bucketCount;
+	// Either a view of the bucket tree or CompactProperties
+	private final Map<String, String> properties;
+
+	// The root of the bucket tree and the shift of its index bits, null if
+	// compact
+	private final Object[] root;
+	private final int rootShift;
+
+	// The entries of each compact bucket, numbered in iteration order, and
+	// their digests, null unless compact
+	private final int[][] compactBuckets;
+	private final long[] compactDigests;
+
+	private HashedProperties(final Map<String, String> properties) {
+		this.size = properties.size();
+		this.bucketCount = bucketCountFor(this.size);
+		final int[] sizes = new int[this.bucketCount];
+		for (final String key : properties.keySet()) {
+			sizes[bucketOf(key, this.bucketCount)]++;
+		}
+		final String[][] keys = new String[this.bucketCount][];
+		final String[][] values = new String[this.bucketCount][];
+		for (int i = 0; i < this.bucketCount; i++) {
+			keys[i] = new String[sizes[i]];
+			values[i] = new String[sizes[i]];
+			sizes[i] = 0;
+		}
+		final long[] digests = new long[this.bucketCount];
+		for (final Map.Entry<String, String> entry : properties.entrySet()) {
+			final int bucket = bucketOf(entry.getKey(), this.bucketCount);
+			keys[bucket][sizes[bucket]] = entry.getKey();
+			values[bucket][sizes[bucket]++] = entry.getValue();
+			digests[bucket] += entryHash(entry.getKey(), entry.getValue());
+		}
+		final Object[] leaves = new Object[this.bucketCount];
+		for (int i = 0; i < this.bucketCount; i++) {
+			leaves[i] = 0 == keys[i].length ? Bucket.EMPTY : new Bucket(
+					keys[i], values[i], digests[i]);
+		}
+		this.root = tree(leaves);
+		this.rootShift = rootShift(this.bucketCount);
+		this.properties = new BucketMap();
+		this.compactBuckets = null;
+		this.compactDigests = null;
+	}
+
+	private HashedProperties(final int size, final int bucketCount,
+			final Object[] root) {
+		this.size = size;
+		this.bucketCount = bucketCount;
+		this.root = root;
+		this.rootShift = rootShift(bucketCount);
+		this.properties = new BucketMap();
+		this.compactBuckets = null;
+		this.compactDigests = null;
+	}
+
+	private HashedProperties(final CompactProperties properties) {
+		this.size = properties.size();
+		this.bucketCount = bucketCountFor(this.size);
+		this.properties = properties;
+		this.root = null;
+		this.rootShift = 0;
+		final int[] entryBuckets = new int[this.size];
+		final int[] sizes = new int[this.bucketCount];
+		this.compactDigests = new long[this.bucketCount];
+		int index = 0;
+		for (final Map.Entry<String, String> entry : properties.entrySet()) {
+			final int bucket = bucketOf(entry.getKey(), this.bucketCount);
+			entryBuckets[index++] = bucket;
+			sizes[bucket]++;
+			this.compactDigests[bucket] += entryHash(entry.getKey(),
+					entry.getValue());
+		}
+		this.compactBuckets = new int[this.bucketCount][];
+		for (int i = 0; i < this.bucketCount; i++) {
+			this.compactBuckets[i] = new int[sizes[i]];
+			sizes[i] = 0;
+		}
+		for (int i = 0; i < entryBuckets.length; i++) {
+			this.compactBuckets[entryBuckets[i]][sizes[entryBuckets[i]]++] = i;
+		}
+	}
+
+	/**
+	 * @param properties
+	 *            the properties to copy, kept as they are if they are
+	 *            {@link CompactProperties}
+	 */
+	public static HashedProperties of(final Map<String, String> properties) {
+		return properties instanceof CompactProperties ? new HashedProperties(
+				(CompactProperties) properties) : new HashedProperties(
+				properties);
+	}
+
+	public static HashedProperties of(final Properties properties) {
+		final Map<String, String> copy = Maps.newHashMap();
+		for (final String key : properties.stringPropertyNames()) {
+			copy.put(key, properties.getProperty(key));
+		}
+		return new HashedProperties(copy);
+	}
+
+	/**
+	 * @return these properties held as {@link CompactProperties}
+	 */
+	public HashedProperties compact() {
+		if (isCompact()) {
+			return this;
+		}
+		return new HashedProperties(CompactProperties.copyOf(this.properties));
+	}
+
+	public boolean isCompact() {
+		return null == this.root;
+	}
+
+	/**
+	 * Costs time logarithmic in the number of keys, unless these properties
+	 * are compact in which case they are encoded again whole.
+	 * 
+	 * @param value
+	 *            the new value of the key, or null to remove it
+	 * @return properties identical to these apart from the given key, compact
+	 *         if these are, or these properties if the key already has the
+	 *         value
+	 */
+	public HashedProperties withProperty(final String key, final String value) {
+		if (isCompact()) {
+			if (Objects.equal(get(key), value)) {
+				return this;
+			}
+			return null == value ? withChanges(
+					ImmutableMap.<String, String> of(), ImmutableSet.of(key))
+					: withChanges(ImmutableMap.of(key, value),
+							ImmutableSet.<String> of());
+		}
+		final int index = bucketOf(key, this.bucketCount);
+		final Bucket bucket = bucket(index);
+		final Bucket changed = bucket.with(key, value);
+		if (changed == bucket) {
+			return this;
+		}
+		final int size = this.size - bucket.size() + changed.size();
+		final int bucketCount = bucketCountFor(size);
+		if (bucketCount > 2 * this.bucketCount
+				|| 2 * bucketCount < this.bucketCount) {
+			// Buckets grew or shrank well past their intended size
+			final Map<String, String> copy = Maps.newHashMap(this.properties);
+			if (null == value) {
+				copy.remove(key);
+			} else {
+				copy.put(key, value);
+			}
+			return new HashedProperties(copy);
+		}
+		return new HashedProperties(size, this.bucketCount, withLeaf(
+				this.root, this.rootShift, index, changed));
+	}
+
+	/**
+	 * @param changes
+	 *            the keys to add or replace and their values
+	 * @param removed
+	 *            the keys to remove
+	 * @return properties identical to these apart from the given keys,
+	 *         compact if these are
+	 * @see #withProperty(String, String)
+	 */
+	public HashedProperties withChanges(final Map<String, String> changes,
+			final Set<String> removed) {
+		if (isCompact()
+				|| changes.size() + removed.size() > this.size
+						/ ENTRIES_PER_BUCKET) {
+			// Building afresh is cheaper than changing most buckets
+			final Map<String, String> copy = Maps.newHashMap(this.properties);
+			copy.putAll(changes);
+			copy.keySet().removeAll(removed);
+			return isCompact() ? new HashedProperties(
+					CompactProperties.copyOf(copy)) : new HashedProperties(copy);
+		}
+		HashedProperties result = this;
+		for (final Map.Entry<String, String> entry : changes.entrySet()) {
+			result = result.withProperty(entry.getKey(), entry.getValue());
+		}
+		for (final String key : removed) {
+			result = result.withProperty(key, null);
+		}
+		return result;
+	}
+
+	public String get(final String key) {
+		if (isCompact()) {
+			return this.properties.get(key);
+		}
+		return bucket(bucketOf(key, this.bucketCount)).get(key);
+	}
+
+	public boolean containsKey(final String key) {
+		return null != get(key);
+	}
+
+	public Set<String> keySet() {
+		return this.properties.keySet();
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return an unmodifiable view of these properties
+	 */
+	public Map<String, String> asMap() {
+		return this.properties;
+	}
+
+	int bucketCount() {
+		return this.bucketCount;
+	}
+
+	/**
+	 * @return the keys of the bucket, not to be modified
+	 */
+	String[] bucketKeys(final int bucket) {
+		if (!isCompact()) {
+			return bucket(bucket).keys;
+		}
+		final int[] entries = this.compactBuckets[bucket];
+		final String[] keys = new String[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			keys[i] = ((CompactProperties) this.properties).keyAt(entries[i]);
+		}
+		return keys;
+	}
+
+	long digest(final int bucket) {
+		return isCompact() ? this.compactDigests[bucket]
+				: bucket(bucket).digest;
+	}
+
+	private Bucket bucket(final int index) {
+		Object[] node = this.root;
+		for (int shift = this.rootShift; shift > 0; shift -= NODE_BITS) {
+			node = (Object[]) node[(index >>> shift) & NODE_MASK];
+		}
+		return (Bucket) node[index & NODE_MASK];
+	}
+
+	/**
+	 * @return a copy of the path from the node to the leaf with the leaf
+	 *         replaced, sharing every other node
+	 */
+	private static Object[] withLeaf(final Object[] node, final int shift,
+			final int index, final Bucket leaf) {
+		final Object[] copy = node.clone();
+		final int slot = (index >>> shift) & NODE_MASK;
+		copy[slot] = 0 == shift ? leaf : withLeaf((Object[]) node[slot], shift
+				- NODE_BITS, index, leaf);
+		return copy;
+	}
+
+	/**
+	 * @return the root of a tree with the given leaves, whose number is a
+	 *         power of two
+	 */
+	private static Object[] tree(final Object[] leaves) {
+		Object[] nodes = leaves;
+		do {
+			final Object[] parents = new Object[(nodes.length + NODE_MASK) >>> NODE_BITS];
+			for (int i = 0; i < parents.length; i++) {
+				parents[i] = Arrays.copyOfRange(nodes, i << NODE_BITS,
+						Math.min(nodes.length, (i + 1) << NODE_BITS));
+			}
+			nodes = parents;
+		} while (nodes.length > 1);
+		return (Object[]) nodes[0];
+	}
+
+	private static int rootShift(final int bucketCount) {
+		int shift = 0;
+		while (1 << (shift + NODE_BITS) < bucketCount) {
+			shift += NODE_BITS;
+		}
+		return shift;
+	}
+
+	/**
+	 * @return the number of buckets used for the given number of entries,
+	 *         always a power of two so differently sized instances can be
+	 *         folded onto each other
+	 */
+	static int bucketCountFor(final int size) {
+		return Math.min(MAX_BUCKETS,
+				Integer.highestOneBit(Math.max(1, size / ENTRIES_PER_BUCKET)));
+	}
+
+	static int bucketOf(final String key, final int bucketCount) {
+		final int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (bucketCount - 1);
+	}
+
+	/**
+	 * @return a 64 bit FNV-1a hash of the key and value
+	 */
+	static long entryHash(final String key, final String value) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+		}
+		// Separate key and value by a value no char can take
+		hash = (hash ^ 0x10000L) * FNV_PRIME;
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("size", this.size)
+				.add("buckets", this.bucketCount).toString();
+	}
+
+	/**
+	 * The keys and values of one bucket and the digest of its entries, never
+	 * modified once built
+	 */
+	private static final class Bucket {
+
+		static final Bucket EMPTY = new Bucket(new String[0], new String[0], 0);
+
+		private final String[] keys;
+		private final String[] values;
+		private final long digest;
+
+		Bucket(final String[] keys, final String[] values, final long digest) {
+			this.keys = keys;
+			this.values = values;
+			this.digest = digest;
+		}
+
+		int size() {
+			return this.keys.length;
+		}
+
+		String get(final String key) {
+			final int entry = indexOf(key);
+			return entry < 0 ? null : this.values[entry];
+		}
+
+		/**
+		 * @param value
+		 *            the new value of the key, or null to remove it
+		 * @return a bucket with the change applied, or this bucket if the
+		 *         key already has the value
+		 */
+		Bucket with(final String key, final String value) {
+			final int entry = indexOf(key);
+			if (entry < 0) {
+				if (null == value) {
+					return this;
+				}
+				final String[] keys = Arrays.copyOf(this.keys,
+						this.keys.length + 1);
+				final String[] values = Arrays.copyOf(this.values,
+						this.values.length + 1);
+				keys[this.keys.length] = key;
+				values[this.values.length] = value;
+				return new Bucket(keys, values, this.digest
+						+ entryHash(key, value));
+			}
+			final long digest = this.digest
+					- entryHash(key, this.values[entry]);
+			if (null == value) {
+				if (1 == this.keys.length) {
+					return EMPTY;
+				}
+				return new Bucket(without(this.keys, entry), without(
+						this.values, entry), digest);
+			}
+			if (value.equals(this.values[entry])) {
+				return this;
+			}
+			final String[] values = this.values.clone();
+			values[entry] = value;
+			return new Bucket(this.keys, values, digest
+					+ entryHash(key, value));
+		}
+
+		private int indexOf(final String key) {
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i].equals(key)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private static String[] without(final String[] array, final int index) {
+			final String[] copy = new String[array.length - 1];
+			System.arraycopy(array, 0, copy, 0, index);
+			System.arraycopy(array, index + 1, copy, index, copy.length
+					- index);
+			return copy;
+		}
+	}
+
+	/**
+	 * Read only map view of the bucket tree, iterating bucket by bucket
+	 */
+	private final class BucketMap extends AbstractMap<String, String> {
+
+		private Set<Map.Entry<String, String>> entrySet;
+
+		@Override
+		public String get(final Object key) {
+			return key instanceof String ? HashedProperties.this
+					.get((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(final Object key) {
+			return null != get(key);
+		}
+
+		@Override
+		public int size() {
+			return HashedProperties.this.size;
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			if (null == this.entrySet) {
+				this.entrySet = new AbstractSet<Map.Entry<String, String>>() {
+					@Override
+					public Iterator<Map.Entry<String, String>> iterator() {
+						return new EntryIterator();
+					}
+
+					@Override
+					public int size() {
+						return HashedProperties.this.size;
+					}
+				};
+			}
+			return this.entrySet;
+		}
+	}
+
+	private final class EntryIterator implements
+			Iterator<Map.Entry<String, String>> {
+
+		private int bucketIndex = -1;
+		private Bucket bucket = Bucket.EMPTY;
+		private int entry;
+
+		@Override
+		public boolean hasNext() {
+			while (this.entry == this.bucket.size()) {
+				if (this.bucketIndex + 1 == HashedProperties.this.bucketCount) {
+					return false;
+				}
+				this.bucket = bucket(++this.bucketIndex);
+				this.entry = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public Map.Entry<String, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final int entry = this.entry++;
+			return new AbstractMap.SimpleImmutableEntry<String, String>(
+					this.bucket.keys[entry], this.bucket.values[entry]);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.vip.properties.snapshot;
+
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The keys added, removed and modified between two {@link HashedProperties}.
+ * Buckets whose digests match are skipped, so the cost of a diff is
+ * proportional to the number of buckets plus the size of the buckets which
+ * actually changed, not to the total number of keys.
+ */
+public final class PropertiesDiff {
+
+	private final ImmutableMap<String, String> added;
+	private final ImmutableMap<String, String> removed;
+	private final ImmutableMap<String, String> modified;
+
+	private PropertiesDiff(final ImmutableMap<String, String> added,
+			final ImmutableMap<String, String> removed,
+			final ImmutableMap<String, String> modified) {
+		this.added = added;
+		this.removed = removed;
+		this.modified = modified;
+	}
+
+	/**
+	 * @param previous
+	 *            the properties before the change
+	 * @param current
+	 *            the properties after the change
+	 * @return the differences between the two
+	 */
+	public static PropertiesDiff between(final HashedProperties previous,
+			final HashedProperties current) {
+		final ImmutableMap.Builder<String, String> added = ImmutableMap
+				.builder();
+		final ImmutableMap.Builder<String, String> removed = ImmutableMap
+				.builder();
+		final ImmutableMap.Builder<String, String> modified = ImmutableMap
+				.builder();
+
+		// Bucket counts are powers of two, fold the larger onto the smaller
+		final int buckets = Math.min(previous.bucketCount(),
+				current.bucketCount());
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			if (foldedDigest(previous, bucket, buckets) == foldedDigest(
+					current, bucket, buckets)) {
+				continue;
+			}
+			for (int i = bucket; i < previous.bucketCount(); i += buckets) {
+				for (final String key : previous.bucketKeys(i)) {
+					final String newValue = current.get(key);
+					if (null == newValue) {
+						removed.put(key, previous.get(key));
+					} else if (!newValue.equals(previous.get(key))) {
+						modified.put(key, newValue);
+					}
+				}
+			}
+			for (int i = bucket; i < current.bucketCount(); i += buckets) {
+				for (final String key : current.bucketKeys(i)) {
+					if (!previous.containsKey(key)) {
+						added.put(key, current.get(key));
+					}
+				}
+			}
+		}
+		return new PropertiesDiff(added.build(), removed.build(),
+				modified.build());
+	}
+
+	private static long foldedDigest(final HashedProperties properties,
+			final int bucket, final int buckets) {
+		long digest = 0;
+		for (int i = bucket; i < properties.bucketCount(); i += buckets) {
+			digest += properties.digest(i);
+		}
+		return digest;
+	}
+
+	/**
+	 * @return the added keys and their values
+	 */
+	public ImmutableMap<String, String> getAdded() {
+		return this.added;
+	}
+
+	/**
+	 * @return the removed keys and their previous values
+	 */
+	public ImmutableMap<String, String> getRemoved() {
+		return this.removed;
+	}
+
+	/**
+	 * @return the modified keys and their new values
+	 */
+	public ImmutableMap<String, String> getModified() {
+		return this.modified;
+	}
+
+	public Set<String> getChangedKeys() {
+		return ImmutableSet.<String> builder().addAll(this.added.keySet())
+				.addAll(this.removed.keySet())
+				.addAll(this.modified.keySet()).build();
+	}
+
+	public boolean isEmpty() {
+		return this.added.isEmpty() && this.removed.isEmpty()
+				&& this.modified.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("added", this.added.keySet())
+				.add("removed", this.removed.keySet())
+				.add("modified", this.modified.keySet()).toString();
+	}
+
+}
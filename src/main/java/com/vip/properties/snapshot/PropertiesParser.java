@@ -0,0 +1,383 @@
+package com.vip.properties.snapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+/**
+ * Parses the {@link java.util.Properties} format straight from encoded
+ * bytes, without decoding the whole payload or building an intermediate
+ * {@link java.util.Properties}. Keys and values are decoded from their own
+ * byte spans, and a value equal to the previous value of its key is not
+ * decoded at all, the previous String instance is reused so diffing against
+ * the previous properties compares values by identity.
+ * <p>
+ * Only charsets in which every byte below 0x80 is the ASCII character are
+ * supported, see {@link #supports(Charset)}. Lines holding a backslash,
+ * i.e. escapes or continuations, are decoded as a whole and unescaped like
+ * {@link java.util.Properties#load(java.io.Reader)} does on JDK 7 and 8: a
+ * line following a continuation preceded by nothing is joined to it even if
+ * it starts like a comment. A comment ending in a backslash never affects
+ * the next line.
+ */
+public final class PropertiesParser {
+
+	/**
+	 * Receives every property in the order it is parsed, a later duplicate
+	 * of a key replacing the earlier one
+	 */
+	public interface Handler {
+
+		void property(String key, String value);
+	}
+
+	private final ByteBuffer data;
+	private final Charset charset;
+	private final boolean latin1;
+	private final HashedProperties previous;
+	private final Handler handler;
+
+	private byte[] line = new byte[256];
+
+	private PropertiesParser(final ByteBuffer data, final Charset charset,
+			final HashedProperties previous, final Handler handler) {
+		this.data = data;
+		this.charset = charset;
+		this.latin1 = Charsets.ISO_8859_1.equals(charset)
+				|| Charsets.US_ASCII.equals(charset);
+		this.previous = previous;
+		this.handler = handler;
+	}
+
+	/**
+	 * @return whether bytes in the charset can be parsed, i.e. it is UTF-8,
+	 *         ISO-8859-1 or US-ASCII
+	 */
+	public static boolean supports(final Charset charset) {
+		return Charsets.UTF_8.equals(charset)
+				|| Charsets.ISO_8859_1.equals(charset)
+				|| Charsets.US_ASCII.equals(charset);
+	}
+
+	/**
+	 * @param previous
+	 *            the properties the data replaces, whose values are reused
+	 *            where unchanged
+	 * @return the parsed properties
+	 */
+	public static HashedProperties parse(final byte[] data,
+			final Charset charset, final HashedProperties previous) {
+		return parse(ByteBuffer.wrap(data), charset, previous);
+	}
+
+	/**
+	 * @param data
+	 *            the bytes from its position to its limit are parsed, the
+	 *            position is left unchanged
+	 * @param previous
+	 *            the properties the data replaces, whose values are reused
+	 *            where unchanged
+	 * @return the parsed properties
+	 */
+	public static HashedProperties parse(final ByteBuffer data,
+			final Charset charset, final HashedProperties previous) {
+		final Map<String, String> properties = Maps
+				.newHashMapWithExpectedSize(previous.size());
+		parse(data, charset, previous, new Handler() {
+			@Override
+			public void property(final String key, final String value) {
+				properties.put(key, value);
+			}
+		});
+		return HashedProperties.of(properties);
+	}
+
+	/**
+	 * Streams every property of the data to the handler
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the charset is not supported or the data holds a
+	 *             malformed \\uxxxx escape
+	 */
+	public static void parse(final ByteBuffer data, final Charset charset,
+			final HashedProperties previous, final Handler handler) {
+		if (!supports(charset)) {
+			throw new IllegalArgumentException(String.format(
+					"Unable to parse properties encoded in [%s]", charset));
+		}
+		new PropertiesParser(data, charset, previous, handler).parse();
+	}
+
+	private void parse() {
+		final int end = this.data.limit();
+		int position = this.data.position();
+		while (position < end) {
+			final byte b = this.data.get(position);
+			if (isWhitespace(b) || '\r' == b || '\n' == b) {
+				position++;
+				continue;
+			}
+			final int lineEnd = endOfLine(position);
+			if ('#' == b || '!' == b) {
+				position = lineEnd;
+			} else if (indexOfBackslash(position, lineEnd) < 0) {
+				parseLine(position, lineEnd);
+				position = lineEnd;
+			} else {
+				position = parseEscapedLine(position);
+			}
+		}
+	}
+
+	/**
+	 * Parses a line without escapes, decoding the key and value from their
+	 * spans
+	 */
+	private void parseLine(final int start, final int end) {
+		int keyEnd = start;
+		boolean separator = false;
+		while (keyEnd < end) {
+			final byte b = this.data.get(keyEnd);
+			if ('=' == b || ':' == b) {
+				separator = true;
+				break;
+			}
+			if (isWhitespace(b)) {
+				break;
+			}
+			keyEnd++;
+		}
+		int valueStart = keyEnd < end ? keyEnd + 1 : end;
+		while (valueStart < end) {
+			final byte b = this.data.get(valueStart);
+			if (!isWhitespace(b)) {
+				if (separator || ('=' != b && ':' != b)) {
+					break;
+				}
+				separator = true;
+			}
+			valueStart++;
+		}
+		final String key = decode(start, keyEnd);
+		final String previousValue = this.previous.get(key);
+		this.handler.property(key, null != previousValue
+				&& matches(valueStart, end, previousValue) ? previousValue
+				: decode(valueStart, end));
+	}
+
+	/**
+	 * Joins the physical lines of a logical line ending with an odd number
+	 * of backslashes, decodes it and parses it with its escapes
+	 *
+	 * @return the position after the logical line
+	 */
+	private int parseEscapedLine(final int start) {
+		final int end = this.data.limit();
+		int position = start;
+		int length = 0;
+		while (true) {
+			final int lineEnd = endOfLine(position);
+			int backslashes = 0;
+			for (int i = position; i < lineEnd; i++) {
+				final byte b = this.data.get(i);
+				backslashes = '\\' == b ? backslashes + 1 : 0;
+				appendToLine(length++, b);
+			}
+			position = lineEnd;
+			if (backslashes % 2 == 0) {
+				break;
+			}
+			// Drop the continuation and the leading whitespace of the next
+			length--;
+			if (0 == length && position + 1 >= end) {
+				// As java.util.Properties, which reads an empty key if the
+				// data ends right after a lone continuation
+				this.handler.property("", "");
+				return end;
+			}
+			if (position == end) {
+				break;
+			}
+			if ('\r' == this.data.get(position)) {
+				position++;
+			}
+			if (position < end && '\n' == this.data.get(position)) {
+				position++;
+			}
+			while (position < end && isWhitespace(this.data.get(position))) {
+				position++;
+			}
+			if (0 == length
+					&& (position == end || '\r' == this.data.get(position) || '\n' == this.data
+							.get(position))) {
+				// A lone continuation followed by a blank line is a blank
+				// line, any other line is joined to it even if it starts
+				// like a comment
+				return position;
+			}
+		}
+		parseLine(new String(this.line, 0, length, this.charset));
+		return position;
+	}
+
+	private void parseLine(final String line) {
+		final int end = line.length();
+		int keyEnd = 0;
+		boolean separator = false;
+		boolean precedingBackslash = false;
+		while (keyEnd < end) {
+			final char c = line.charAt(keyEnd);
+			if (!precedingBackslash && ('=' == c || ':' == c)) {
+				separator = true;
+				break;
+			}
+			if (!precedingBackslash && isWhitespace(c)) {
+				break;
+			}
+			precedingBackslash = '\\' == c && !precedingBackslash;
+			keyEnd++;
+		}
+		int valueStart = keyEnd < end ? keyEnd + 1 : end;
+		while (valueStart < end) {
+			final char c = line.charAt(valueStart);
+			if (!isWhitespace(c)) {
+				if (separator || ('=' != c && ':' != c)) {
+					break;
+				}
+				separator = true;
+			}
+			valueStart++;
+		}
+		final String key = unescape(line, 0, keyEnd);
+		final String value = unescape(line, valueStart, end);
+		final String previousValue = this.previous.get(key);
+		this.handler.property(key, value.equals(previousValue) ? previousValue
+				: value);
+	}
+
+	/**
+	 * Converts the escapes of the span as {@link java.util.Properties} does,
+	 * \\uxxxx, \\t, \\n, \\r and \\f are converted and any other escaped
+	 * character stands for itself
+	 */
+	private static String unescape(final String line, final int start,
+			final int end) {
+		final int backslash = line.indexOf('\\', start);
+		if (backslash < 0 || backslash >= end) {
+			return line.substring(start, end);
+		}
+		final StringBuilder unescaped = new StringBuilder(end - start);
+		int i = start;
+		while (i < end) {
+			char c = line.charAt(i++);
+			if ('\\' != c || i == end) {
+				// A single trailing backslash is dropped
+				if ('\\' != c) {
+					unescaped.append(c);
+				}
+				continue;
+			}
+			c = line.charAt(i++);
+			if ('u' == c) {
+				if (i + 4 > end) {
+					throw new IllegalArgumentException(
+							"Malformed \\uxxxx encoding.");
+				}
+				int value = 0;
+				for (int digit = 0; digit < 4; digit++) {
+					final int hex = Character.digit(line.charAt(i++), 16);
+					if (hex < 0) {
+						throw new IllegalArgumentException(
+								"Malformed \\uxxxx encoding.");
+					}
+					value = (value << 4) + hex;
+				}
+				unescaped.append((char) value);
+			} else if ('t' == c) {
+				unescaped.append('\t');
+			} else if ('r' == c) {
+				unescaped.append('\r');
+			} else if ('n' == c) {
+				unescaped.append('\n');
+			} else if ('f' == c) {
+				unescaped.append('\f');
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	/**
+	 * @return whether the span decodes to the value, without decoding it
+	 *         unless it holds non ASCII UTF-8
+	 */
+	private boolean matches(final int start, final int end, final String value) {
+		if (end - start < value.length()
+				|| (this.latin1 && end - start != value.length())) {
+			return false;
+		}
+		for (int i = 0; i < end - start; i++) {
+			final byte b = this.data.get(start + i);
+			if (b < 0) {
+				if (!this.latin1) {
+					return decode(start, end).equals(value);
+				}
+				if (i >= value.length() || (b & 0xff) != value.charAt(i)) {
+					return false;
+				}
+			} else if (i >= value.length() || b != value.charAt(i)) {
+				return false;
+			}
+		}
+		return end - start == value.length();
+	}
+
+	private String decode(final int start, final int end) {
+		if (this.data.hasArray()) {
+			return new String(this.data.array(), this.data.arrayOffset()
+					+ start, end - start, this.charset);
+		}
+		for (int i = start; i < end; i++) {
+			appendToLine(i - start, this.data.get(i));
+		}
+		return new String(this.line, 0, end - start, this.charset);
+	}
+
+	private void appendToLine(final int index, final byte b) {
+		if (index == this.line.length) {
+			final byte[] grown = new byte[this.line.length * 2];
+			System.arraycopy(this.line, 0, grown, 0, index);
+			this.line = grown;
+		}
+		this.line[index] = b;
+	}
+
+	private int endOfLine(final int start) {
+		final int end = this.data.limit();
+		for (int i = start; i < end; i++) {
+			final byte b = this.data.get(i);
+			if ('\n' == b || '\r' == b) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	private int indexOfBackslash(final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			if ('\\' == this.data.get(i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isWhitespace(final int c) {
+		return ' ' == c || '\t' == c || '\f' == c;
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.vip.properties.snapshot;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.vip.properties.resolver.CompiledPropertyTemplates;
+
+/**
+ * An immutable, hash indexed view of all properties at a given generation.
+ * A reload never mutates a snapshot, it builds a new one with the next
+ * generation number which is then published in a single reference swap, so
+ * readers need no locking and never observe a partially applied reload.
+ * Generation numbers increase across every snapshot of the JVM, so the
+ * generations of different configurers can be ordered. A snapshot derived
+ * with a few changes shares the buckets of every unchanged key with the
+ * snapshot it was derived from, see {@link HashedProperties}.
+ */
+public final class PropertiesSnapshot {
+
+	public static final PropertiesSnapshot EMPTY = new PropertiesSnapshot(0,
+			HashedProperties.EMPTY,
+			CompiledPropertyTemplates.compile(HashedProperties.EMPTY.asMap()));
+
+	private static final AtomicLong GENERATIONS = new AtomicLong();
+
+	private final long generation;
+	private final HashedProperties properties;
+	private final CompiledPropertyTemplates templates;
+
+	private PropertiesSnapshot(final long generation,
+			final HashedProperties properties,
+			final CompiledPropertyTemplates templates) {
+		this.generation = generation;
+		this.properties = properties;
+		this.templates = templates;
+	}
+
+	/**
+	 * @param generation
+	 *            the generation number of the new snapshot
+	 * @param properties
+	 *            the properties to copy, including any defaults
+	 * @return a new snapshot holding a copy of the given properties
+	 */
+	public static PropertiesSnapshot of(final long generation,
+			final Properties properties) {
+		final HashedProperties copy = HashedProperties.of(properties);
+		return new PropertiesSnapshot(generation, copy,
+				CompiledPropertyTemplates.compile(copy.asMap()));
+	}
+
+	/**
+	 * @param generation
+	 *            the generation number of the new snapshot
+	 * @param properties
+	 *            the properties to copy
+	 * @return a new snapshot holding a copy of the given properties
+	 */
+	public static PropertiesSnapshot of(final long generation,
+			final Map<String, String> properties) {
+		return of(generation, properties, false);
+	}
+
+	/**
+	 * @param generation
+	 *            the generation number of the new snapshot
+	 * @param properties
+	 *            the properties to copy
+	 * @param compact
+	 *            whether to hold the properties as {@link CompactProperties},
+	 *            as will every snapshot derived from this one
+	 * @return a new snapshot holding a copy of the given properties
+	 */
+	public static PropertiesSnapshot of(final long generation,
+			final Map<String, String> properties, final boolean compact) {
+		final HashedProperties copy = HashedProperties
+				.of(compact ? CompactProperties.copyOf(properties) : properties);
+		return new PropertiesSnapshot(generation, copy,
+				CompiledPropertyTemplates.compile(copy.asMap()));
+	}
+
+	/**
+	 * @return a generation number greater than that of every snapshot
+	 *         created so far
+	 */
+	public static long nextGeneration() {
+		return GENERATIONS.incrementAndGet();
+	}
+
+	/**
+	 * @param changes
+	 *            the keys and values to replace
+	 * @return a snapshot of the next generation with the changes applied, or
+	 *         this snapshot if there are no changes
+	 */
+	public PropertiesSnapshot withChanges(final Map<String, String> changes) {
+		return withChanges(changes, ImmutableSet.<String> of());
+	}
+
+	/**
+	 * @param changes
+	 *            the keys to add or replace and their values
+	 * @param removed
+	 *            the keys to remove
+	 * @return a snapshot of the next generation with the changes applied, or
+	 *         this snapshot if there are no changes
+	 */
+	public PropertiesSnapshot withChanges(final Map<String, String> changes,
+			final Set<String> removed) {
+		if (changes.isEmpty() && removed.isEmpty()) {
+			return this;
+		}
+		final HashedProperties next = this.properties.withChanges(changes,
+				removed);
+		return new PropertiesSnapshot(nextGeneration(), next,
+				this.templates.withChanges(next.asMap(),
+						Sets.union(changes.keySet(), removed)));
+	}
+
+	public long getGeneration() {
+		return this.generation;
+	}
+
+	public String get(final String key) {
+		return this.properties.get(key);
+	}
+
+	/**
+	 * @return the raw value of the key as a long, without parsing it again if
+	 *         the snapshot is compact, or the default value if there is no
+	 *         such key
+	 * @throws NumberFormatException
+	 *             if the value is not a long
+	 */
+	public long getLong(final String key, final long defaultValue) {
+		if (isCompact()) {
+			return ((CompactProperties) this.properties.asMap()).getLong(key,
+					defaultValue);
+		}
+		final String value = this.properties.get(key);
+		return null == value ? defaultValue : Long.parseLong(value);
+	}
+
+	/**
+	 * @return the raw value of the key as a double, without parsing it again
+	 *         if the snapshot is compact, or the default value if there is no
+	 *         such key
+	 * @throws NumberFormatException
+	 *             if the value is not a double
+	 */
+	public double getDouble(final String key, final double defaultValue) {
+		if (isCompact()) {
+			return ((CompactProperties) this.properties.asMap()).getDouble(
+					key, defaultValue);
+		}
+		final String value = this.properties.get(key);
+		return null == value ? defaultValue : Double.parseDouble(value);
+	}
+
+	public boolean isCompact() {
+		return this.properties.isCompact();
+	}
+
+	/**
+	 * @param key
+	 *            the property to resolve
+	 * @return the property value with any ${...} placeholders substituted,
+	 *         or null if there is no such property
+	 * @throws IllegalArgumentException
+	 *             if the property has a circular reference
+	 */
+	public String resolve(final String key) {
+		return this.templates.resolve(key);
+	}
+
+	/**
+	 * @param keys
+	 *            the changed keys
+	 * @return the changed keys plus every key whose resolved value depends
+	 *         on one of them
+	 */
+	public Set<String> affectedBy(final Collection<String> keys) {
+		return this.templates.affectedBy(keys);
+	}
+
+	public boolean containsKey(final String key) {
+		return this.properties.containsKey(key);
+	}
+
+	public Set<String> keySet() {
+		return this.properties.keySet();
+	}
+
+	public int size() {
+		return this.properties.size();
+	}
+
+	public Map<String, String> asMap() {
+		return this.properties.asMap();
+	}
+
+	/**
+	 * @return a mutable copy of this snapshot
+	 */
+	public Properties toProperties() {
+		final Properties copy = new Properties();
+		copy.putAll(this.properties.asMap());
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("generation", this.generation)
+				.add("size", this.properties.size()).toString();
+	}
+
+}
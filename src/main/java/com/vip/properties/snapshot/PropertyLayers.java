@@ -0,0 +1,110 @@
+package com.vip.properties.snapshot;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * The properties of every source (a file, a znode, local properties) kept
+ * separately, ordered from lowest to highest precedence. A reload replaces
+ * one layer, so keys removed from a source fall back to the value of the
+ * next source defining them.
+ */
+public final class PropertyLayers {
+
+	private final ImmutableList<String> sources;
+	private final ImmutableMap<String, HashedProperties> layers;
+
+	private PropertyLayers(final ImmutableList<String> sources,
+			final ImmutableMap<String, HashedProperties> layers) {
+		this.sources = sources;
+		this.layers = layers;
+	}
+
+	/**
+	 * @param sources
+	 *            the source names, lowest precedence first
+	 * @param layers
+	 *            the properties of each source
+	 */
+	public static PropertyLayers of(final List<String> sources,
+			final Map<String, HashedProperties> layers) {
+		final ImmutableList<String> distinctSources = ImmutableSet.copyOf(
+				sources).asList();
+		final ImmutableMap.Builder<String, HashedProperties> builder = ImmutableMap
+				.builder();
+		for (final String source : distinctSources) {
+			final HashedProperties layer = layers.get(source);
+			builder.put(source, null == layer ? HashedProperties.EMPTY : layer);
+		}
+		return new PropertyLayers(distinctSources, builder.build());
+	}
+
+	public boolean contains(final String source) {
+		return this.layers.containsKey(source);
+	}
+
+	public HashedProperties getLayer(final String source) {
+		return this.layers.get(source);
+	}
+
+	public ImmutableList<String> getSources() {
+		return this.sources;
+	}
+
+	/**
+	 * @return layers identical to these apart from the given source
+	 */
+	public PropertyLayers withLayer(final String source,
+			final HashedProperties layer) {
+		final Map<String, HashedProperties> copy = Maps
+				.newHashMap(this.layers);
+		copy.put(source, layer);
+		return of(this.sources, copy);
+	}
+
+	/**
+	 * @return the effective value of the key, taken from the highest
+	 *         precedence source defining it
+	 */
+	public String get(final String key) {
+		final String source = sourceOf(key);
+		return null == source ? null : this.layers.get(source).get(key);
+	}
+
+	/**
+	 * @return the name of the source the effective value of the key comes
+	 *         from, or null if no source defines it
+	 */
+	public String sourceOf(final String key) {
+		for (int i = this.sources.size() - 1; i >= 0; i--) {
+			if (this.layers.get(this.sources.get(i)).containsKey(key)) {
+				return this.sources.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the effective value of every key
+	 */
+	public Map<String, String> merge() {
+		final Map<String, String> merged = Maps.newHashMap();
+		for (final String source : this.sources) {
+			merged.putAll(this.layers.get(source).asMap());
+		}
+		return merged;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this).add("layers", this.layers)
+				.toString();
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.vip.properties.snapshot;
+
+/**
+ * The property a reloadable handle is bound to, letting a read within a
+ * {@link SnapshotScope} resolve the value of the pinned generation when the
+ * handle holds no value published for it.
+ */
+public interface SnapshotBinding {
+
+	/**
+	 * @return the configurer whose scopes pin the snapshots the property is
+	 *         resolved against
+	 */
+	Object getOwner();
+
+	/**
+	 * @return the property resolved against the snapshot and converted to
+	 *         the value type of the handle, or null if it is not defined or
+	 *         cannot be converted
+	 */
+	Object resolve(PropertiesSnapshot snapshot);
+
+}
@@ -0,0 +1,160 @@
+package com.vip.properties.snapshot;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Sets;
+
+/**
+ * Pins a {@link PropertiesSnapshot} to the current thread until closed, so
+ * every read within the scope sees one generation however many reloads land
+ * meanwhile:
+ *
+ * <pre>
+ * try (SnapshotScope scope = configurer.pin()) {
+ * 	// handles and resolveProperty read the pinned generation
+ * }
+ * </pre>
+ *
+ * Scopes nest, a scope opened within a scope of the same owner pins the same
+ * snapshot. Reloadable handles bound to the owner read the pinned
+ * generation too: a handle keeps the values of older generations while a
+ * scope pins them, and resolves the value of a pinned generation it holds
+ * no value for, e.g. one bound or changed after the scope was opened, from
+ * the pinned snapshot itself.
+ */
+public final class SnapshotScope implements AutoCloseable {
+
+	private static final ThreadLocal<SnapshotScope> CURRENT = new ThreadLocal<SnapshotScope>();
+	private static final Set<SnapshotScope> OPEN = Sets
+			.newSetFromMap(new ConcurrentHashMap<SnapshotScope, Boolean>());
+	private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+	private final Object owner;
+	private final PropertiesSnapshot snapshot;
+	private final SnapshotScope outer;
+	private final Thread thread;
+	private boolean closed;
+
+	private SnapshotScope(final Object owner,
+			final PropertiesSnapshot snapshot, final SnapshotScope outer) {
+		this.owner = owner;
+		this.snapshot = snapshot;
+		this.outer = outer;
+		this.thread = Thread.currentThread();
+	}
+
+	/**
+	 * @param owner
+	 *            the configurer the snapshot belongs to
+	 * @param latest
+	 *            the snapshot to pin, unless a scope of the owner is already
+	 *            open on this thread
+	 * @return the scope, to be closed on this thread
+	 */
+	public static SnapshotScope open(final Object owner,
+			final PropertiesSnapshot latest) {
+		final SnapshotScope outer = CURRENT.get();
+		final PropertiesSnapshot pinned = pinned(outer, owner);
+		final SnapshotScope scope = new SnapshotScope(owner,
+				null == pinned ? latest : pinned, outer);
+		OPEN.add(scope);
+		ACTIVE.incrementAndGet();
+		CURRENT.set(scope);
+		return scope;
+	}
+
+	/**
+	 * @return the snapshot pinned by the innermost scope of the owner open
+	 *         on this thread, or null if there is none
+	 */
+	public static PropertiesSnapshot pinned(final Object owner) {
+		if (0 == ACTIVE.get()) {
+			return null;
+		}
+		return pinned(CURRENT.get(), owner);
+	}
+
+	private static PropertiesSnapshot pinned(final SnapshotScope innermost,
+			final Object owner) {
+		for (SnapshotScope scope = innermost; null != scope; scope = scope.outer) {
+			if (scope.owner == owner) {
+				return scope.snapshot;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return whether any thread has a scope open, a single volatile read
+	 */
+	public static boolean isActive() {
+		return 0 != ACTIVE.get();
+	}
+
+	/**
+	 * @return the generation pinned by the innermost scope of the owner open
+	 *         on this thread, or {@link Long#MAX_VALUE} if there is none
+	 */
+	public static long pinnedGeneration(final Object owner) {
+		final PropertiesSnapshot pinned = pinned(owner);
+		return null == pinned ? Long.MAX_VALUE : pinned.getGeneration();
+	}
+
+	/**
+	 * @return the oldest generation pinned by a scope of the owner open on
+	 *         any thread, or {@link Long#MAX_VALUE} if there is none
+	 */
+	public static long oldestPinnedGeneration(final Object owner) {
+		long oldest = Long.MAX_VALUE;
+		if (0 != ACTIVE.get()) {
+			for (final SnapshotScope scope : OPEN) {
+				if (scope.owner == owner) {
+					oldest = Math.min(oldest, scope.snapshot.getGeneration());
+				}
+			}
+		}
+		return oldest;
+	}
+
+	public PropertiesSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	public long getGeneration() {
+		return this.snapshot.getGeneration();
+	}
+
+	/**
+	 * Unpins the snapshot, restoring the enclosing scope. Scopes must be
+	 * closed on their thread, innermost first.
+	 */
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		if (Thread.currentThread() != this.thread || CURRENT.get() != this) {
+			throw new IllegalStateException(
+					"Snapshot scopes must be closed on their thread, innermost first");
+		}
+		this.closed = true;
+		if (null == this.outer) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(this.outer);
+		}
+		OPEN.remove(this);
+		ACTIVE.decrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("generation", this.snapshot.getGeneration())
+				.add("closed", this.closed).toString();
+	}
+
+}
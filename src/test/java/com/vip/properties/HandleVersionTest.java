@@ -0,0 +1,69 @@
+package com.vip.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class HandleVersionTest {
+
+	private static final class Version extends HandleVersion<Version> {
+
+		private final String value;
+
+		private Version(final String value, final long generation,
+				final Version previous) {
+			super(generation, previous);
+			this.value = value;
+		}
+
+		@Override
+		Version resolved(final Object value, final long generation) {
+			return new Version((String) value, generation, null);
+		}
+	}
+
+	@Test
+	public void findsLatestVersionVisibleAtGeneration() {
+		final Version first = new Version("1", 10, null);
+		final Version second = new Version("2", 20, first);
+		final Version third = new Version("3", 30, second);
+
+		assertSame(third, third.at(35));
+		assertSame(third, third.at(30));
+		assertSame(second, third.at(29));
+		assertSame(first, third.at(10));
+		// Nothing older is kept, the oldest version stands in
+		assertSame(first, third.at(5));
+	}
+
+	@Test
+	public void retainsVersionsVisibleAtOldestPinnedGeneration() {
+		final Version first = new Version("1", 10, null);
+		final Version second = new Version("2", 20, first);
+		final Version third = new Version("3", 30, second);
+
+		assertSame(third, third.retained(25));
+
+		assertSame(second, third.at(25));
+		// The first version is no longer reachable
+		assertEquals("2", third.at(10).value);
+	}
+
+	@Test
+	public void retainsNothingWithoutPinnedGeneration() {
+		final Version first = new Version("1", 10, null);
+		final Version second = new Version("2", 20, first);
+
+		assertNull(second.retained(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void unboundVersionIsItsOwnPinnedVersion() {
+		final Version version = new Version("1", 10, null);
+
+		assertSame(version, version.pinned(null));
+	}
+
+}
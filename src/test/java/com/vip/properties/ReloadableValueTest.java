@@ -0,0 +1,47 @@
+package com.vip.properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReloadableValueTest {
+
+	@Test
+	public void readsDefaultUntilSet() {
+		final ReloadableValue<String> value = new ReloadableValue<String>(
+				"default");
+		assertEquals("default", value.get());
+		assertNull(new ReloadableValue<String>().get());
+
+		value.set("set", 3);
+
+		assertEquals("set", value.get());
+		assertTrue(value.toString().contains("generation=3"));
+	}
+
+	@Test
+	public void primitiveHandlesReadLatestValue() {
+		final ReloadableLong longValue = new ReloadableLong(Long.MAX_VALUE);
+		final ReloadableInt intValue = new ReloadableInt();
+		final ReloadableBoolean booleanValue = new ReloadableBoolean(true);
+		final ReloadableDouble doubleValue = new ReloadableDouble(0.5);
+		assertEquals(Long.MAX_VALUE, longValue.get());
+		assertEquals(0, intValue.get());
+		assertTrue(booleanValue.get());
+		assertEquals(0.5, doubleValue.get(), 0);
+
+		longValue.set(Long.MIN_VALUE + 1, 1);
+		intValue.set(-1, 1);
+		booleanValue.set(false, 1);
+		doubleValue.set(-0.25, 1);
+
+		assertEquals(Long.MIN_VALUE + 1, longValue.get());
+		assertEquals(-1, intValue.get());
+		assertFalse(booleanValue.get());
+		assertEquals(-0.25, doubleValue.get(), 0);
+	}
+
+}
@@ -0,0 +1,142 @@
+package com.vip.properties.accessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+public class MethodHandleFieldAccessorTest {
+
+	@SuppressWarnings("unused")
+	private static class Bean {
+
+		private long primitiveLong;
+		private int primitiveInt;
+		private boolean primitiveBoolean;
+		private double primitiveDouble;
+		private Long boxedLong;
+		private Integer boxedInt;
+		private String string;
+		private final long finalLong = 1;
+		private final String finalString = "final";
+		private static long staticLong;
+		private static String staticString;
+	}
+
+	private final Bean bean = new Bean();
+
+	@Test
+	public void setsPrimitiveFieldsWithoutBoxing() {
+		accessor("primitiveLong").setLong(this.bean, Long.MAX_VALUE);
+		accessor("primitiveInt").setInt(this.bean, -7);
+		accessor("primitiveBoolean").setBoolean(this.bean, true);
+		accessor("primitiveDouble").setDouble(this.bean, 0.5);
+
+		assertEquals(Long.MAX_VALUE, this.bean.primitiveLong);
+		assertEquals(-7, this.bean.primitiveInt);
+		assertTrue(this.bean.primitiveBoolean);
+		assertEquals(0.5, this.bean.primitiveDouble, 0);
+	}
+
+	@Test
+	public void setsPrimitiveFieldsFromBoxedValues() {
+		accessor("primitiveLong").set(this.bean, 3L);
+		accessor("primitiveBoolean").set(this.bean, Boolean.TRUE);
+
+		assertEquals(3, this.bean.primitiveLong);
+		assertEquals(3L, accessor("primitiveLong").get(this.bean));
+		assertEquals(Boolean.TRUE, accessor("primitiveBoolean").get(this.bean));
+	}
+
+	@Test
+	public void setsBoxedFieldsFromPrimitiveSetters() {
+		accessor("boxedLong").setLong(this.bean, 5);
+		accessor("boxedInt").setInt(this.bean, 6);
+
+		assertEquals(Long.valueOf(5), this.bean.boxedLong);
+		assertEquals(Integer.valueOf(6), this.bean.boxedInt);
+	}
+
+	@Test
+	public void setsAndClearsObjectFields() {
+		final FieldAccessor accessor = accessor("string");
+
+		accessor.set(this.bean, "value");
+		assertEquals("value", accessor.get(this.bean));
+		accessor.set(this.bean, null);
+		assertNull(this.bean.string);
+	}
+
+	@Test
+	public void readsFinalFields() {
+		assertEquals(1L, accessor("finalLong").get(this.bean));
+		assertEquals("final", accessor("finalString").get(this.bean));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void refusesToSetFinalField() {
+		accessor("finalString").set(this.bean, "changed");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void refusesToSetFinalPrimitiveField() {
+		accessor("finalLong").setLong(this.bean, 2);
+	}
+
+	@Test
+	public void setsStaticFieldsIgnoringBean() {
+		try {
+			accessor("staticLong").setLong(null, 9);
+			accessor("staticString").set(this.bean, "static");
+
+			assertEquals(9, Bean.staticLong);
+			assertEquals(9L, accessor("staticLong").get(new Bean()));
+			assertEquals("static", accessor("staticString").get(null));
+		} finally {
+			Bean.staticLong = 0;
+			Bean.staticString = null;
+		}
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void rejectsValueOfWrongType() {
+		accessor("string").set(this.bean, 1L);
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void rejectsBoxedValueOfWrongPrimitiveType() {
+		accessor("primitiveLong").set(this.bean, "1");
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void rejectsBeanOfWrongClass() {
+		accessor("string").get(new Object());
+	}
+
+	@Test
+	public void createsIndependentAccessors() {
+		final Field field = field("string");
+		final FieldAccessor first = MethodHandleFieldAccessor.create(field);
+
+		assertFalse(first == MethodHandleFieldAccessor.create(field));
+		assertSame(field, first.getField());
+	}
+
+	private static FieldAccessor accessor(final String name) {
+		return MethodHandleFieldAccessor.create(field(name));
+	}
+
+	private static Field field(final String name) {
+		try {
+			return Bean.class.getDeclaredField(name);
+		} catch (final NoSuchFieldException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+}
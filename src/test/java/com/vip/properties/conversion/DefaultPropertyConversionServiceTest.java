@@ -0,0 +1,98 @@
+package com.vip.properties.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+import org.springframework.beans.factory.BeanInitializationException;
+
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.conversion.PropertyConverter.LongConverter;
+
+public class DefaultPropertyConversionServiceTest {
+
+	private static class Temperature {
+
+		private final double celsius;
+
+		Temperature(final double celsius) {
+			this.celsius = celsius;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static class Bean {
+
+		private long timeout;
+		private Temperature temperature;
+	}
+
+	private final DefaultPropertyConversionService service = new DefaultPropertyConversionService();
+
+	@Test
+	public void convertsForField() {
+		assertEquals(10L, this.service.convertPropertyForField(
+				field("timeout"), "10"));
+		assertTrue(this.service.getConverterForField(field("timeout")) instanceof LongConverter);
+		assertTrue(this.service.getConverterForType(long.class) instanceof LongConverter);
+	}
+
+	@Test
+	public void failedConversionNamesFieldAndValue() {
+		try {
+			this.service.convertPropertyForField(field("timeout"), "soon");
+			fail("Converted an invalid long");
+		} catch (final BeanInitializationException e) {
+			assertTrue(e.getMessage().contains("[timeout]"));
+			assertTrue(e.getMessage().contains("[soon]"));
+			assertTrue(e.getCause() instanceof NumberFormatException);
+		}
+	}
+
+	@Test
+	public void usesRegisteredConverter() {
+		this.service.registerConverter(Temperature.class,
+				new PropertyConverter<Temperature>() {
+					@Override
+					public Temperature convert(final Object property) {
+						return new Temperature(Double.parseDouble(property
+								.toString()));
+					}
+				});
+
+		assertEquals(21.5, ((Temperature) this.service.convertPropertyForField(
+				field("temperature"), "21.5")).celsius, 0);
+	}
+
+	@Test
+	public void usesConvertersFromConfiguration() {
+		this.service.setConverters(ImmutableMap
+				.<Class<?>, PropertyConverter<?>> of(long.class,
+						new LongConverter() {
+							@Override
+							public Long convert(final Object property) {
+								return convertToLong(property);
+							}
+
+							@Override
+							public long convertToLong(final Object property) {
+								return Long.parseLong(property.toString()) * 1000;
+							}
+						}));
+
+		assertEquals(2000L, this.service.convertPropertyForField(
+				field("timeout"), "2"));
+	}
+
+	private static Field field(final String name) {
+		try {
+			return Bean.class.getDeclaredField(name);
+		} catch (final NoSuchFieldException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.vip.properties.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.joda.time.LocalDate;
+import org.joda.time.Period;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.vip.properties.ReloadableLong;
+import com.vip.properties.ReloadableValue;
+import com.vip.properties.conversion.PropertyConverter.BooleanConverter;
+import com.vip.properties.conversion.PropertyConverter.IntConverter;
+import com.vip.properties.conversion.PropertyConverter.LongConverter;
+
+public class PropertyConverterRegistryTest {
+
+	@SuppressWarnings({ "unused", "rawtypes" })
+	private static class Bean {
+
+		private long primitiveLong;
+		private int primitiveInt;
+		private boolean primitiveBoolean;
+		private Long boxedLong;
+		private String string;
+		private List<Integer> integers;
+		private LocalDate date;
+		private ReloadableLong handle;
+		private ReloadableValue<Period> period;
+		private ReloadableValue raw;
+	}
+
+	private final PropertyConverterRegistry registry = new PropertyConverterRegistry();
+
+	@Test
+	public void primitiveFieldsGetNonBoxingConverters() {
+		final LongConverter longs = (LongConverter) converter("primitiveLong");
+		final IntConverter ints = (IntConverter) converter("primitiveInt");
+
+		assertEquals(42, longs.convertToLong(" 42 "));
+		assertEquals(16, longs.convertToLong("0x10"));
+		assertEquals(-255, ints.convertToInt("-#FF"));
+		assertEquals(7, ints.convertToInt(7L));
+	}
+
+	@Test
+	public void booleansAcceptCommonSpellings() {
+		final BooleanConverter booleans = (BooleanConverter) converter("primitiveBoolean");
+
+		assertTrue(booleans.convertToBoolean("Yes"));
+		assertTrue(booleans.convertToBoolean("on"));
+		assertTrue(booleans.convertToBoolean("1"));
+		assertFalse(booleans.convertToBoolean("OFF"));
+		assertFalse(booleans.convertToBoolean("0"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void booleansRejectOtherValues() {
+		((BooleanConverter) converter("primitiveBoolean"))
+				.convertToBoolean("maybe");
+	}
+
+	@Test
+	public void otherTypesAreConvertedBySpring() {
+		assertEquals(Long.valueOf(5), converter("boxedLong").convert("5"));
+		assertEquals("text", converter("string").convert("text"));
+		// Elements are converted to the type argument of the field
+		assertEquals(ImmutableList.of(1), converter("integers").convert("1"));
+		assertEquals(new LocalDate(2014, 1, 2),
+				converter("date").convert("2014-01-02"));
+	}
+
+	@Test
+	public void handlesGetConverterOfTheirValueType() {
+		assertTrue(converter("handle") instanceof LongConverter);
+		assertEquals(Period.hours(1).withMinutes(30),
+				converter("period").convert("01:30:00"));
+		// A raw handle leaves the value as it is
+		assertEquals("value", converter("raw").convert("value"));
+	}
+
+	@Test
+	public void convertersAreResolvedOnce() {
+		assertSame(converter("boxedLong"), converter("boxedLong"));
+		assertSame(this.registry.getConverter(Long.class),
+				this.registry.getConverter(Long.class));
+	}
+
+	@Test
+	public void registeredConverterReplacesResolvedOne() {
+		converter("string");
+
+		this.registry.register(String.class, new PropertyConverter<String>() {
+			@Override
+			public String convert(final Object property) {
+				return property.toString().toUpperCase();
+			}
+		});
+
+		assertEquals("TEXT", converter("string").convert("text"));
+		assertEquals("TEXT",
+				this.registry.getConverter(String.class).convert("text"));
+	}
+
+	@Test
+	public void concurrentLookupsShareOneConverter() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<PropertyConverter<?>>> lookups = Lists
+					.newArrayList();
+			for (int i = 0; i < 64; i++) {
+				lookups.add(executor.submit(new Callable<PropertyConverter<?>>() {
+					@Override
+					public PropertyConverter<?> call() {
+						return converter("integers");
+					}
+				}));
+			}
+			final PropertyConverter<?> first = lookups.get(0).get();
+			for (final Future<PropertyConverter<?>> lookup : lookups) {
+				assertSame(first, lookup.get());
+				assertEquals(ImmutableList.of(3), lookup.get().convert("3"));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private PropertyConverter<?> converter(final String name) {
+		try {
+			final Field field = Bean.class.getDeclaredField(name);
+			return this.registry.getConverter(field);
+		} catch (final NoSuchFieldException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.vip.properties.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.Subscribe;
+import com.vip.properties.bean.PropertiesChangedEvent;
+import com.vip.properties.bean.PropertyModifiedEvent;
+import com.vip.properties.internal.ReadablePropertySourcesPlaceholderConfigurer;
+import com.vip.properties.internal.ReloadablePropertyPostProcessor;
+
+public class AsyncCoalescingPropertyChangedEventNotifierTest {
+
+	private final AsyncCoalescingPropertyChangedEventNotifier notifier = new AsyncCoalescingPropertyChangedEventNotifier();
+	private final ReadablePropertySourcesPlaceholderConfigurer configurer = new ReadablePropertySourcesPlaceholderConfigurer(
+			this.notifier);
+	private RecordingProcessor processor;
+
+	@Before
+	public void register() {
+		this.configurer.setRegisterMBean(false);
+		this.processor = new RecordingProcessor(this.configurer);
+		this.notifier.register(this.processor);
+	}
+
+	@After
+	public void destroy() {
+		this.processor.release.countDown();
+		this.configurer.destroy();
+	}
+
+	@Test
+	public void dispatchesOffPostingThread() throws InterruptedException {
+		this.processor.release.countDown();
+
+		this.notifier.post(change("a", "1", "2"));
+
+		final PropertiesChangedEvent event = this.processor.next();
+		assertEquals(ImmutableSet.of("a"), event.getPropertyNames());
+		assertTrue(this.processor.threadName,
+				this.processor.threadName
+						.startsWith("reloadable-properties-dispatch-"));
+		assertEquals(1, this.notifier.getDispatchedCount());
+	}
+
+	@Test
+	public void coalescesChangesWaitingForDispatch()
+			throws InterruptedException {
+		this.notifier.post(new PropertiesChangedEvent(1, Arrays.asList(change(
+				"a", "1", "2"))));
+		// The dispatch thread is now blocked in the first change set
+		this.processor.next();
+
+		this.notifier.post(new PropertiesChangedEvent(2, Arrays.asList(
+				change("a", "2", "3"), change("b", "1", "2"))));
+		this.notifier.post(change("a", "3", "4"));
+		this.notifier.post(new PropertiesChangedEvent(4, Arrays.asList(change(
+				"c", null, "1"))));
+
+		assertEquals(3, this.notifier.getQueueDepth());
+		assertEquals(1, this.notifier.getCoalescedCount());
+		this.processor.release.countDown();
+		final PropertiesChangedEvent coalesced = this.processor.next();
+		assertEquals(4, coalesced.getGeneration());
+		assertEquals(ImmutableSet.of("a", "b", "c"),
+				coalesced.getPropertyNames());
+		assertEquals("2", coalesced.getChange("a").getOldValue());
+		assertEquals("4", coalesced.getChange("a").getNewValue());
+		assertEquals(2, this.notifier.getDispatchedCount());
+		assertEquals(0, this.notifier.getQueueDepth());
+	}
+
+	@Test
+	public void configurerShutsNotifierDown() {
+		assertFalse(this.notifier.isShutdown());
+
+		this.configurer.destroy();
+
+		assertTrue(this.notifier.isShutdown());
+	}
+
+	private static PropertyModifiedEvent change(final String propertyName,
+			final String oldValue, final String newValue) {
+		return new PropertyModifiedEvent(propertyName, oldValue, newValue);
+	}
+
+	/**
+	 * Records the change sets dispatched to it, blocking the dispatch thread
+	 * in the first one until released
+	 */
+	private static class RecordingProcessor extends
+			ReloadablePropertyPostProcessor {
+
+		private final BlockingQueue<PropertiesChangedEvent> events = new LinkedBlockingQueue<PropertiesChangedEvent>();
+		private final CountDownLatch release = new CountDownLatch(1);
+		private volatile String threadName;
+
+		RecordingProcessor(
+				final ReadablePropertySourcesPlaceholderConfigurer configurer) {
+			super(configurer);
+		}
+
+		@Override
+		@Subscribe
+		public void handlePropertiesChange(final PropertiesChangedEvent event) {
+			this.threadName = Thread.currentThread().getName();
+			this.events.add(event);
+			try {
+				this.release.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		PropertiesChangedEvent next() throws InterruptedException {
+			final PropertiesChangedEvent event = this.events.poll(10,
+					TimeUnit.SECONDS);
+			assertTrue("No change set dispatched", null != event);
+			return event;
+		}
+	}
+
+}
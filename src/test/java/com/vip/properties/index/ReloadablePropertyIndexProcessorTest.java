@@ -0,0 +1,142 @@
+package com.vip.properties.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.vip.properties.ReloadableProperty;
+
+public class ReloadablePropertyIndexProcessorTest {
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("property-index");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file,
+					final BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(final Path dir,
+					final IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Test
+	public void indexesEveryClassOfCompilation() throws IOException {
+		final List<String> index = compile(
+				"Service",
+				"package app;\n"
+						+ "import com.vip.properties.*;\n"
+						+ "public class Service {\n"
+						+ "  @ReloadableProperty(\"app.host\") private String host;\n"
+						+ "  private int port;\n"
+						+ "  @OnPropertyChange(\"app.host\") void reload() {}\n"
+						+ "  static class Nested {\n"
+						+ "    @ReloadableProperty(\"nested\") String value;\n"
+						+ "  }\n" + "}\n", "Plain", "package app;\n"
+						+ "public class Plain { private String value; }\n");
+
+		assertEquals(Arrays.asList("app.Plain\t#\t1",
+				"app.Service\t#\t2\thost\tapp.host\treload()\t",
+				"app.Service$Nested\t#\t1\tvalue\tnested"), index);
+	}
+
+	@Test
+	public void leavesUnindexablePropertyNamesToReflection()
+			throws IOException {
+		final List<String> index = compile("Service", "package app;\n"
+				+ "import com.vip.properties.*;\n" + "public class Service {\n"
+				+ "  @ReloadableProperty(\"app\\thost\") String host;\n"
+				+ "  @ReloadableProperty(\"port\") int port;\n" + "}\n",
+				"Plain", "package app;\n" + "public class Plain {}\n");
+
+		assertEquals(Arrays.asList("app.Plain\t#\t0"), index);
+	}
+
+	@Test
+	public void writesNoIndexWithoutAnnotations() throws IOException {
+		compile("Plain", "package app;\n" + "public class Plain {}\n");
+
+		assertFalse(Files.exists(this.directory
+				.resolve(ReloadablePropertyIndex.INDEX_LOCATION)));
+	}
+
+	/**
+	 * @param sources
+	 *            pairs of class name and source of package app
+	 * @return the entries of the written index, without comments
+	 */
+	private List<String> compile(final String... sources) throws IOException {
+		final List<File> files = Lists.newArrayList();
+		final Path sourceDirectory = Files.createDirectories(this.directory
+				.resolve("app"));
+		for (int i = 0; i < sources.length; i += 2) {
+			final Path file = sourceDirectory.resolve(sources[i] + ".java");
+			Files.write(file, sources[i + 1].getBytes(Charsets.UTF_8));
+			files.add(file.toFile());
+		}
+		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		try (StandardJavaFileManager fileManager = compiler
+				.getStandardFileManager(null, null, Charsets.UTF_8)) {
+			final String classpath = new File(ReloadableProperty.class
+					.getProtectionDomain().getCodeSource().getLocation()
+					.getPath()).getPath();
+			final Iterable<? extends JavaFileObject> units = fileManager
+					.getJavaFileObjectsFromFiles(files);
+			final JavaCompiler.CompilationTask task = compiler.getTask(null,
+					fileManager, null, Arrays.asList("-proc:only",
+							"-classpath", classpath, "-d",
+							this.directory.toString()), null, units);
+			task.setProcessors(Arrays
+					.asList(new ReloadablePropertyIndexProcessor()));
+			assertTrue(task.call());
+		}
+		final Path index = this.directory
+				.resolve(ReloadablePropertyIndex.INDEX_LOCATION);
+		if (!Files.exists(index)) {
+			return null;
+		}
+		final List<String> entries = Lists.newArrayList();
+		for (final String line : Files.readAllLines(index, Charsets.UTF_8)) {
+			if (!line.startsWith("#")) {
+				entries.add(line);
+			}
+		}
+		return entries;
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.vip.properties.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+
+public class ReloadablePropertyIndexTest {
+
+	@SuppressWarnings("unused")
+	private static class Indexed {
+		private String host;
+		private int port;
+	}
+
+	@SuppressWarnings("unused")
+	private static class WithCallbacks {
+		private String host;
+	}
+
+	@SuppressWarnings("unused")
+	private static class Recompiled {
+		private String host;
+		private String added;
+	}
+
+	private static class NotIndexed {
+	}
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("property-index");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		final Path file = this.directory
+				.resolve(ReloadablePropertyIndex.INDEX_LOCATION);
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(file.getParent());
+		Files.delete(this.directory);
+	}
+
+	@Test
+	public void readsFieldsOfIndexedClasses() throws IOException {
+		final ReloadablePropertyIndex index = load(
+				"# comment",
+				"",
+				entry(Indexed.class, "#", "2", "host", "app.host"),
+				entry(WithCallbacks.class, "#", "1", "reload()", ""));
+
+		assertEquals(2, index.size());
+		assertEquals(ImmutableMap.of("host", "app.host"),
+				index.getProperties(Indexed.class));
+		assertTrue(index.getProperties(WithCallbacks.class).isEmpty());
+		assertFalse(index.mayHaveCallbacks(Indexed.class));
+		assertTrue(index.mayHaveCallbacks(WithCallbacks.class));
+	}
+
+	@Test
+	public void classesMissingFromIndexAreScanned() throws IOException {
+		final ReloadablePropertyIndex index = load(entry(Indexed.class, "#",
+				"2"));
+
+		assertNull(index.getProperties(NotIndexed.class));
+		assertTrue(index.mayHaveCallbacks(NotIndexed.class));
+	}
+
+	@Test
+	public void outOfDateEntryIsScanned() throws IOException {
+		// Recompiled declares one more field than when it was indexed
+		final ReloadablePropertyIndex index = load(entry(Recompiled.class,
+				"#", "1", "host", "app.host"));
+
+		assertNull(index.getProperties(Recompiled.class));
+		assertTrue(index.mayHaveCallbacks(Recompiled.class));
+	}
+
+	@Test
+	public void ignoresMalformedAndUncheckableEntries() throws IOException {
+		final ReloadablePropertyIndex index = load(
+				entry(Indexed.class, "#", "2", "host"),
+				entry(WithCallbacks.class, "#", "one"),
+				entry(Recompiled.class, "host", "app.host"));
+
+		assertEquals(0, index.size());
+		assertNull(index.getProperties(Indexed.class));
+		assertNull(index.getProperties(WithCallbacks.class));
+		assertNull(index.getProperties(Recompiled.class));
+	}
+
+	@Test
+	public void missingIndexIsEmpty() throws IOException {
+		final ReloadablePropertyIndex index = ReloadablePropertyIndex
+				.load(new URLClassLoader(new URL[0], null));
+
+		assertEquals(0, index.size());
+		assertNull(index.getProperties(Indexed.class));
+	}
+
+	private ReloadablePropertyIndex load(final String... lines)
+			throws IOException {
+		final Path file = this.directory
+				.resolve(ReloadablePropertyIndex.INDEX_LOCATION);
+		Files.createDirectories(file.getParent());
+		final StringBuilder content = new StringBuilder();
+		for (final String line : lines) {
+			content.append(line).append('\n');
+		}
+		Files.write(file, content.toString().getBytes(Charsets.UTF_8));
+		final File root = this.directory.toFile();
+		return ReloadablePropertyIndex.load(new URLClassLoader(
+				new URL[] { root.toURI().toURL() }, null));
+	}
+
+	private static String entry(final Class<?> type, final String... parts) {
+		final StringBuilder entry = new StringBuilder(type.getName());
+		for (final String part : parts) {
+			entry.append(ReloadablePropertyIndex.SEPARATOR).append(part);
+		}
+		return entry.toString();
+	}
+
+}
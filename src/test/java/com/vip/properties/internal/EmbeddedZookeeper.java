@@ -0,0 +1,74 @@
+package com.vip.properties.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+/**
+ * A standalone zookeeper server running in the test's JVM on a free local
+ * port, with its data in a temporary directory
+ */
+final class EmbeddedZookeeper implements Closeable {
+
+	private final File directory;
+	private final ServerCnxnFactory factory;
+
+	EmbeddedZookeeper() throws IOException {
+		this.directory = Files.createTempDirectory("zookeeper").toFile();
+		this.factory = ServerCnxnFactory.createFactory(new InetSocketAddress(
+				"127.0.0.1", 0), 100);
+		try {
+			this.factory.startup(new ZooKeeperServer(this.directory,
+					this.directory, 500));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	String getConnectString() {
+		return "127.0.0.1:" + this.factory.getLocalPort();
+	}
+
+	/**
+	 * @return a started client, to be closed by the caller
+	 */
+	CuratorFramework newClient() {
+		final CuratorFramework client = CuratorFrameworkFactory.newClient(
+				getConnectString(), 5000, 5000, new RetryOneTime(100));
+		client.start();
+		return client;
+	}
+
+	/**
+	 * Stops the server, leaving its data in place
+	 */
+	void stop() {
+		this.factory.shutdown();
+	}
+
+	@Override
+	public void close() throws IOException {
+		stop();
+		delete(this.directory);
+	}
+
+	private static void delete(final File file) throws IOException {
+		final File[] children = file.listFiles();
+		if (null != children) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		Files.deleteIfExists(file.toPath());
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.snapshot.HashedProperties;
+
+public class MappedPropertiesFileTest {
+
+	private Path directory;
+	private Path file;
+
+	@Before
+	public void createFile() throws IOException {
+		this.directory = Files.createTempDirectory("mapped-properties");
+		this.file = this.directory.resolve("test.properties");
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(this.directory.resolve("replacement.properties"));
+		Files.deleteIfExists(this.file);
+		Files.delete(this.directory);
+	}
+
+	@Test
+	public void unchangedFileIsNotReadAgain() throws IOException {
+		write(this.file, "a=1\nb=2");
+		final MappedPropertiesFile mapped = mapped(false);
+
+		final HashedProperties first = mapped.read();
+
+		assertEquals(ImmutableMap.of("a", "1", "b", "2"), first.asMap());
+		assertSame(first, mapped.read());
+	}
+
+	@Test
+	public void readsFileTruncatedBelowMapping() throws IOException {
+		write(this.file, "a=1\nb=a much longer value than the next one");
+		final MappedPropertiesFile mapped = mapped(false);
+		final HashedProperties first = mapped.read();
+
+		write(this.file, "a=1\nb=2");
+		final HashedProperties truncated = mapped.read();
+
+		assertEquals(ImmutableMap.of("a", "1", "b", "2"), truncated.asMap());
+		assertSame(first.get("a"), truncated.get("a"));
+		assertSame(truncated, mapped.read());
+	}
+
+	@Test
+	public void readsFileGrownBeyondMapping() throws IOException {
+		write(this.file, "a=1");
+		final MappedPropertiesFile mapped = mapped(false);
+		mapped.read();
+
+		write(this.file, "a=1\nb=2\nc=a value well past the first mapping");
+
+		assertEquals(ImmutableMap.of("a", "1", "b", "2", "c",
+				"a value well past the first mapping"), mapped.read().asMap());
+	}
+
+	@Test
+	public void readsReplacedFile() throws IOException {
+		write(this.file, "a=1\nb=2");
+		final MappedPropertiesFile mapped = mapped(true);
+		mapped.read();
+
+		final Path replacement = this.directory
+				.resolve("replacement.properties");
+		write(replacement, "a=1\nb=3");
+		Files.move(replacement, this.file, StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		final HashedProperties replaced = mapped.read();
+
+		assertEquals(ImmutableMap.of("a", "1", "b", "3"), replaced.asMap());
+		assertTrue(replaced.isCompact());
+		assertSame(replaced, mapped.read());
+	}
+
+	@Test(expected = IOException.class)
+	public void failsOnMalformedFile() throws IOException {
+		write(this.file, "a=\\u00g1");
+		mapped(false).read();
+	}
+
+	private MappedPropertiesFile mapped(final boolean compact) {
+		return new MappedPropertiesFile(this.file, Charsets.UTF_8, compact);
+	}
+
+	/**
+	 * Writes the file dated well in the past, so it is not read again
+	 * unless it changes whatever the granularity of modification times
+	 */
+	private static void write(final Path file, final String content)
+			throws IOException {
+		final FileTime previous = Files.exists(file) ? Files
+				.getLastModifiedTime(file) : null;
+		Files.write(file, content.getBytes(Charsets.UTF_8));
+		final long modified = null == previous ? System.currentTimeMillis()
+				- TimeUnit.HOURS.toMillis(1) : previous.toMillis()
+				+ TimeUnit.MINUTES.toMillis(1);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+	}
+
+}
@@ -0,0 +1,202 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.google.common.base.Charsets;
+
+public class PollingPropertiesWatcherTest {
+
+	private static final long POLL_INTERVAL_MILLIS = 50;
+
+	private final RecordingPublisher publisher = new RecordingPublisher();
+	private Path directory;
+	private Path file;
+	private PollingPropertiesWatcher watcher;
+
+	@Before
+	public void createFile() throws IOException {
+		this.directory = Files.createTempDirectory("properties-poller");
+		this.file = this.directory.resolve("test.properties");
+		write(this.file, "a=1");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		if (null != this.watcher) {
+			this.watcher.stop();
+		}
+		Files.walkFileTree(this.directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(final Path file,
+					final BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(final Path dir,
+					final IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Test
+	public void changedContentIsReloaded() throws Exception {
+		final Resource resource = resource(this.file);
+		startPolling(resource);
+
+		write(this.file, "a=22");
+
+		assertEquals(resource, this.publisher.next(5000));
+		assertNull(this.publisher.next(POLL_INTERVAL_MILLIS * 5));
+	}
+
+	@Test
+	public void unchangedContentIsNotReloaded() throws Exception {
+		startPolling(resource(this.file));
+
+		write(this.file, "a=1");
+		Files.setLastModifiedTime(this.file,
+				FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+		assertNull(this.publisher.next(POLL_INTERVAL_MILLIS * 5));
+	}
+
+	@Test
+	public void symlinkSwapIsReloaded() throws Exception {
+		// Laid out as a ConfigMap mount, the file links through ..data to
+		// the current data directory
+		final Path first = Files.createDirectory(this.directory
+				.resolve("..data_1"));
+		write(first.resolve("app.properties"), "a=1");
+		final Path data = Files.createSymbolicLink(
+				this.directory.resolve("..data"), first.getFileName());
+		final Path link = Files.createSymbolicLink(
+				this.directory.resolve("app.properties"),
+				data.getFileName().resolve("app.properties"));
+		final Resource resource = resource(link);
+		startPolling(resource);
+
+		// Same size and modification time, only the content differs
+		final Path second = Files.createDirectory(this.directory
+				.resolve("..data_2"));
+		write(second.resolve("app.properties"), "a=2");
+		Files.setLastModifiedTime(second.resolve("app.properties"),
+				Files.getLastModifiedTime(first.resolve("app.properties")));
+		final Path swap = Files.createSymbolicLink(
+				this.directory.resolve("..data_tmp"), second.getFileName());
+		Files.move(swap, data, StandardCopyOption.ATOMIC_MOVE);
+
+		assertEquals(resource, this.publisher.next(5000));
+		assertNull(this.publisher.next(POLL_INTERVAL_MILLIS * 5));
+	}
+
+	@Test
+	public void missingFileIsReloadedOnceCreated() throws Exception {
+		final Path missing = this.directory.resolve("missing.properties");
+		final Resource resource = resource(missing);
+		startPolling(resource);
+
+		write(missing, "a=1");
+
+		assertEquals(resource, this.publisher.next(5000));
+	}
+
+	@Test
+	public void fileRecreatedWithSameContentIsNotReloaded() throws Exception {
+		final Resource resource = resource(this.file);
+		startPolling(resource);
+
+		Files.delete(this.file);
+		Thread.sleep(POLL_INTERVAL_MILLIS * 3);
+		write(this.file, "a=1");
+		assertNull(this.publisher.next(POLL_INTERVAL_MILLIS * 5));
+
+		Files.delete(this.file);
+		Thread.sleep(POLL_INTERVAL_MILLIS * 3);
+		write(this.file, "a=2");
+		assertEquals(resource, this.publisher.next(5000));
+	}
+
+	private void startPolling(final Resource... resources)
+			throws InterruptedException {
+		this.watcher = new PollingPropertiesWatcher(resources, this.publisher,
+				POLL_INTERVAL_MILLIS, true);
+		this.watcher.start();
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (null == this.watcher.getPollerState()
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertNotNull(this.watcher.getPollerState());
+		// Lets the first poll record the current state of every resource
+		Thread.sleep(POLL_INTERVAL_MILLIS * 3);
+	}
+
+	private static Resource resource(final Path path) {
+		return new FileSystemResource(path.toFile());
+	}
+
+	private static void write(final Path file, final String content)
+			throws IOException {
+		Files.write(file, content.getBytes(Charsets.UTF_8));
+	}
+
+	private static class RecordingPublisher implements EventPublisher {
+
+		private final BlockingQueue<Resource> changed = new LinkedBlockingQueue<Resource>();
+
+		@Override
+		public void onResourceChanged(final Resource resource) {
+			this.changed.add(resource);
+		}
+
+		@Override
+		public void onZookeeperChanged(final String path, final byte[] resource) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void onZookeeperKeyChanged(final String root, final String key,
+				final byte[] value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void onZookeeperKeysLoaded(final String root,
+				final Map<String, byte[]> children) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * @return the next changed resource, or null if none changed in time
+		 */
+		Resource next(final long timeoutMillis) throws InterruptedException {
+			return this.changed.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import com.google.common.base.Charsets;
+
+public class PropertiesWatcherTest {
+
+	private static final long DEBOUNCE_MILLIS = 300;
+
+	private final RecordingPublisher publisher = new RecordingPublisher();
+	private Path directory;
+	private Path file;
+	private PropertiesWatcher watcher;
+
+	@Before
+	public void createFile() throws IOException {
+		this.directory = Files.createTempDirectory("properties-watcher");
+		this.file = this.directory.resolve("test.properties");
+		write(this.file, "a=1");
+	}
+
+	@After
+	public void deleteFile() throws Exception {
+		if (null != this.watcher) {
+			this.watcher.stop();
+			// Leaves no event loop behind to be counted by the next test
+			awaitEventLoopState(this.watcher, Thread.State.TERMINATED);
+		}
+		Files.deleteIfExists(this.file);
+		Files.delete(this.directory);
+	}
+
+	@Test
+	public void burstOfWritesIsReloadedOnce() throws Exception {
+		final Resource resource = new FileSystemResource(this.file.toFile());
+		startWatching(resource);
+
+		for (int i = 2; i < 7; i++) {
+			write(this.file, "a=" + i);
+			Thread.sleep(20);
+		}
+
+		assertEquals(resource, this.publisher.next(5000));
+		assertNull(this.publisher.next(DEBOUNCE_MILLIS * 3));
+	}
+
+	@Test
+	public void unchangedContentIsNotReloaded() throws Exception {
+		startWatching(new FileSystemResource(this.file.toFile()));
+
+		write(this.file, "a=1");
+
+		assertNull(this.publisher.next(DEBOUNCE_MILLIS * 3));
+	}
+
+	@Test
+	public void otherFilesOfDirectoryAreIgnored() throws Exception {
+		startWatching(new FileSystemResource(this.file.toFile()));
+		final Path other = this.directory.resolve("other.properties");
+		try {
+			write(other, "b=1");
+			write(other, "b=2");
+
+			assertNull(this.publisher.next(DEBOUNCE_MILLIS * 3));
+		} finally {
+			Files.deleteIfExists(other);
+		}
+	}
+
+	@Test
+	public void oneEventLoopServesEveryDirectory() throws Exception {
+		final Path otherDirectory = Files
+				.createTempDirectory("properties-watcher");
+		final Path otherFile = otherDirectory.resolve("other.properties");
+		final Path sibling = this.directory.resolve("sibling.properties");
+		write(otherFile, "b=1");
+		write(sibling, "c=1");
+		try {
+			final Resource resource = new FileSystemResource(this.file.toFile());
+			final Resource other = new FileSystemResource(otherFile.toFile());
+			final Resource siblingResource = new FileSystemResource(
+					sibling.toFile());
+			startWatching(resource, other, siblingResource);
+
+			assertEquals(1, countThreads("properties-watcher"));
+			write(otherFile, "b=2");
+			assertEquals(other, this.publisher.next(5000));
+			write(sibling, "c=2");
+			assertEquals(siblingResource, this.publisher.next(5000));
+			write(this.file, "a=2");
+			assertEquals(resource, this.publisher.next(5000));
+		} finally {
+			Files.deleteIfExists(otherFile);
+			Files.delete(otherDirectory);
+			Files.deleteIfExists(sibling);
+		}
+	}
+
+	@Test
+	public void stopEndsEventLoop() throws Exception {
+		startWatching(new FileSystemResource(this.file.toFile()));
+
+		this.watcher.stop();
+
+		awaitEventLoopState(this.watcher, Thread.State.TERMINATED);
+	}
+
+	private void startWatching(final Resource... resources)
+			throws IOException, InterruptedException {
+		this.watcher = new PropertiesWatcher(resources, this.publisher,
+				DEBOUNCE_MILLIS, 1, true);
+		this.watcher.start();
+		awaitEventLoopState(this.watcher, Thread.State.WAITING);
+	}
+
+	private static int countThreads(final String name) {
+		int count = 0;
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (name.equals(thread.getName()) && thread.isAlive()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Waits for the event loop to reach the state, WAITING once it blocks on
+	 * the watch service with every directory registered and every resource
+	 * fingerprinted
+	 */
+	private static void awaitEventLoopState(final PropertiesWatcher watcher,
+			final Thread.State state) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (state != watcher.getEventLoopState()
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(state, watcher.getEventLoopState());
+	}
+
+	private static void write(final Path file, final String content)
+			throws IOException {
+		Files.write(file, content.getBytes(Charsets.UTF_8));
+	}
+
+	private static class RecordingPublisher implements EventPublisher {
+
+		private final BlockingQueue<Resource> changed = new LinkedBlockingQueue<Resource>();
+
+		@Override
+		public void onResourceChanged(final Resource resource) {
+			this.changed.add(resource);
+		}
+
+		@Override
+		public void onZookeeperChanged(final String path, final byte[] resource) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void onZookeeperKeyChanged(final String root, final String key,
+				final byte[] value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void onZookeeperKeysLoaded(final String root,
+				final Map<String, byte[]> children) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * @return the next changed resource, or null if none changed in time
+		 */
+		Resource next(final long timeoutMillis) throws InterruptedException {
+			return this.changed.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.OnPropertyChange;
+import com.vip.properties.accessor.FieldAccessor;
+import com.vip.properties.accessor.MethodHandleFieldAccessor;
+import com.vip.properties.bean.BeanPropertyHolder;
+
+public class PropertySubscriptionRegistryTest {
+
+	private final PropertySubscriptionRegistry registry = new PropertySubscriptionRegistry();
+
+	@SuppressWarnings("unused")
+	private static class Bean {
+
+		private String host;
+
+		@OnPropertyChange("host")
+		void hostChanged() {
+		}
+	}
+
+	@Test
+	public void returnsSubscribersOfProperty() {
+		final Bean first = new Bean();
+		final Bean second = new Bean();
+		this.registry.subscribe(first, accessor(), "host");
+		this.registry.subscribe(second, accessor(), "host");
+		this.registry.subscribe(first, accessor(), "port");
+
+		final List<BeanPropertyHolder> subscribers = this.registry
+				.getSubscribers("host");
+
+		assertEquals(2, subscribers.size());
+		assertEquals("host", subscribers.get(0).getPropertyName());
+		assertEquals(ImmutableMap.of("host", 2, "port", 1),
+				this.registry.getSubscriberCounts());
+		assertTrue(this.registry.getSubscribers("missing").isEmpty());
+	}
+
+	@Test
+	public void returnsCallbacksOfProperty() throws Exception {
+		final Bean bean = new Bean();
+		final PropertyCallback callback = callback();
+		this.registry.subscribe(bean, callback);
+
+		final List<Map.Entry<Object, PropertyCallback>> callbacks = this.registry
+				.getCallbacks("host");
+
+		assertEquals(1, callbacks.size());
+		assertSame(bean, callbacks.get(0).getKey());
+		assertSame(callback, callbacks.get(0).getValue());
+		assertTrue(this.registry.getSubscribers("host").isEmpty());
+	}
+
+	@Test
+	public void dropsSubscriptionsOfCollectedBeans() throws Exception {
+		final Bean live = new Bean();
+		this.registry.subscribe(live, accessor(), "host");
+		final WeakReference<Object> collected = subscribeCollectableBean();
+
+		for (int i = 0; i < 50 && null != collected.get(); i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+
+		assertNull(collected.get());
+		assertEquals(1, this.registry.getSubscriberCount("host"));
+		assertSame(live, this.registry.getSubscribers("host").get(0)
+				.getBean());
+		assertTrue(this.registry.getCallbacks("host").isEmpty());
+		assertEquals(ImmutableMap.of("host", 1),
+				this.registry.getSubscriberCounts());
+	}
+
+	@Test
+	public void keepsEverySubscriptionOfConcurrentBeans() throws Exception {
+		final int threads = 8;
+		final int beansPerThread = 500;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final Bean[][] beans = new Bean[threads][beansPerThread];
+		try {
+			for (int i = 0; i < threads; i++) {
+				final Bean[] ownBeans = beans[i];
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+						} catch (final InterruptedException e) {
+							return;
+						}
+						for (int j = 0; j < ownBeans.length; j++) {
+							ownBeans[j] = new Bean();
+							PropertySubscriptionRegistryTest.this.registry
+									.subscribe(ownBeans[j], accessor(), "host");
+						}
+					}
+				});
+			}
+			start.countDown();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+			assertEquals(threads * beansPerThread,
+					this.registry.getSubscriberCount("host"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the bean subscribed, referenced by nothing else once returned
+	 */
+	private WeakReference<Object> subscribeCollectableBean() throws Exception {
+		final Bean bean = new Bean();
+		this.registry.subscribe(bean, accessor(), "host");
+		this.registry.subscribe(bean, callback());
+		assertEquals(2, this.registry.getSubscriberCount("host"));
+		return new WeakReference<Object>(bean);
+	}
+
+	private static FieldAccessor accessor() {
+		try {
+			return MethodHandleFieldAccessor.create(Bean.class
+					.getDeclaredField("host"));
+		} catch (final NoSuchFieldException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static PropertyCallback callback() throws NoSuchMethodException {
+		return PropertyCallback.of(
+				Bean.class.getDeclaredMethod("hostChanged"),
+				Bean.class.getDeclaredMethod("hostChanged").getAnnotation(
+						OnPropertyChange.class));
+	}
+
+}
@@ -0,0 +1,161 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.vip.properties.bean.PropertiesChangedEvent;
+import com.vip.properties.bean.PropertyModifiedEvent;
+import com.vip.properties.event.PropertyChangedEventNotifier;
+import com.vip.properties.snapshot.PropertiesSnapshot;
+import com.vip.properties.snapshot.SnapshotScope;
+
+public class ReadablePropertySourcesPlaceholderConfigurerTest {
+
+	private final RecordingNotifier notifier = new RecordingNotifier();
+	private final Properties file = new Properties();
+	private ReadablePropertySourcesPlaceholderConfigurer configurer;
+
+	@Before
+	public void loadProperties() throws IOException {
+		this.file.setProperty("host", "localhost");
+		this.file.setProperty("port", "8080");
+		this.file.setProperty("url", "http://${host}:${port}/");
+		this.file.setProperty("kept", "1");
+
+		// Reads the properties above instead of the file system
+		final Properties file = this.file;
+		this.configurer = new ReadablePropertySourcesPlaceholderConfigurer(
+				this.notifier) {
+			@Override
+			protected Properties loadResource(final Resource resource) {
+				final Properties copy = new Properties();
+				copy.putAll(file);
+				return copy;
+			}
+		};
+		this.configurer.setMapPropertiesFiles(false);
+		this.configurer.setRegisterMBean(false);
+		this.configurer.setLocations(new String[] { "file:test.properties" });
+		this.configurer.loadProperties(new Properties());
+	}
+
+	@After
+	public void destroy() {
+		this.configurer.destroy();
+	}
+
+	@Test
+	public void reloadSwapsInNextSnapshot() {
+		final PropertiesSnapshot before = this.configurer.getSnapshot();
+
+		this.file.setProperty("port", "9090");
+		this.file.setProperty("added", "2");
+		this.file.remove("kept");
+		this.configurer.reload();
+		final PropertiesSnapshot after = this.configurer.getSnapshot();
+
+		assertTrue(after.getGeneration() > before.getGeneration());
+		assertEquals("http://localhost:9090/", after.resolve("url"));
+		assertEquals("2", after.get("added"));
+		assertNull(after.get("kept"));
+		// The previous snapshot is never modified
+		assertEquals("http://localhost:8080/", before.resolve("url"));
+		assertEquals("1", before.get("kept"));
+	}
+
+	@Test
+	public void unchangedReloadKeepsSnapshot() {
+		final PropertiesSnapshot before = this.configurer.getSnapshot();
+
+		this.configurer.reload();
+
+		assertSame(before, this.configurer.getSnapshot());
+		assertTrue(this.notifier.changeSets.isEmpty());
+	}
+
+	@Test
+	public void reloadPostsOneChangeSetWithDependents() {
+		this.file.setProperty("port", "9090");
+		this.file.remove("kept");
+		this.configurer.reload();
+
+		assertEquals(1, this.notifier.changeSets.size());
+		final PropertiesChangedEvent changes = this.notifier.changeSets.get(0);
+		assertEquals(this.configurer.getSnapshot().getGeneration(),
+				changes.getGeneration());
+		assertEquals(ImmutableSet.of("port", "url", "kept"),
+				changes.getPropertyNames());
+		final PropertyModifiedEvent url = changes.getChange("url");
+		assertEquals("http://localhost:8080/", url.getOldValue());
+		assertEquals("http://localhost:9090/", url.getNewValue());
+	}
+
+	@Test
+	public void pinnedScopeResolvesAgainstSnapshotBeforeReload() {
+		try (SnapshotScope scope = this.configurer.pin()) {
+			this.file.setProperty("host", "example.com");
+			this.configurer.reload();
+
+			assertEquals("http://localhost:8080/",
+					this.configurer.resolveProperty("${url}"));
+			assertEquals("http://example.com:8080/", this.configurer
+					.getSnapshot().resolve("url"));
+		}
+		assertEquals("http://example.com:8080/",
+				this.configurer.resolveProperty("${url}"));
+	}
+
+	@Test
+	public void localPropertiesAreOverriddenByFile() throws IOException {
+		final Properties local = new Properties();
+		local.setProperty("host", "local");
+		local.setProperty("local", "only");
+		this.configurer.setProperties(local);
+		this.configurer.loadProperties(new Properties());
+
+		final PropertiesSnapshot snapshot = this.configurer.getSnapshot();
+		assertEquals("localhost", snapshot.get("host"));
+		assertEquals("only", snapshot.get("local"));
+	}
+
+	private static final class RecordingNotifier implements
+			PropertyChangedEventNotifier {
+
+		private final List<PropertiesChangedEvent> changeSets = Lists
+				.newArrayList();
+
+		@Override
+		public void post(final PropertyModifiedEvent propertyChangedEvent) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void post(final PropertiesChangedEvent propertiesChangedEvent) {
+			this.changeSets.add(propertiesChangedEvent);
+		}
+
+		@Override
+		public void unregister(
+				final ReloadablePropertyPostProcessor reloadablePropertyProcessor) {
+		}
+
+		@Override
+		public void register(
+				final ReloadablePropertyPostProcessor reloadablePropertyProcessor) {
+		}
+	}
+
+}
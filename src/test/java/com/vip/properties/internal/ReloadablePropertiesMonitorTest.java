@@ -0,0 +1,142 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.OnPropertyChange;
+import com.vip.properties.ReloadableProperty;
+
+public class ReloadablePropertiesMonitorTest {
+
+	private static final String OBJECT_NAME = "com.vip.properties:type=ReloadableProperties,name=\"monitored\"";
+
+	private final Properties file = new Properties();
+	private boolean failing;
+	private ReadablePropertySourcesPlaceholderConfigurer configurer;
+	private ReloadablePropertiesMonitor monitor;
+
+	@SuppressWarnings("unused")
+	private static class Bean {
+
+		@ReloadableProperty("host")
+		private String host;
+
+		@OnPropertyChange({ "host", "port" })
+		void changed() {
+		}
+	}
+
+	@Before
+	public void createConfigurer() throws IOException {
+		this.file.setProperty("host", "localhost");
+		this.file.setProperty("port", "8080");
+		this.file.setProperty("url", "http://${host}:${port}/");
+
+		// Reads the properties above instead of the file system
+		this.configurer = new ReadablePropertySourcesPlaceholderConfigurer() {
+			@Override
+			protected Properties loadResource(final Resource resource)
+					throws IOException {
+				if (ReloadablePropertiesMonitorTest.this.failing) {
+					throw new IOException("unreadable");
+				}
+				final Properties copy = new Properties();
+				copy.putAll(ReloadablePropertiesMonitorTest.this.file);
+				return copy;
+			}
+		};
+		this.configurer.setMapPropertiesFiles(false);
+		this.configurer.setBeanName("monitored");
+		this.configurer.setLocations(new String[] { "file:test.properties" });
+		this.configurer.loadProperties(new Properties());
+		this.monitor = this.configurer.getMonitor();
+	}
+
+	@After
+	public void destroy() {
+		this.configurer.destroy();
+	}
+
+	@Test
+	public void countsReloadsAndFailures() {
+		assertEquals(-1, this.monitor.getLastReloadMillis());
+
+		this.configurer.reload();
+		this.failing = true;
+		this.configurer.reload();
+
+		assertEquals(1, this.monitor.getReloadCount());
+		assertEquals(1, this.monitor.getFailedReloadCount());
+		assertTrue(this.monitor.getLastReloadMillis() >= 0);
+		assertNotNull(this.monitor.getLastReloadTime());
+		assertTrue(this.monitor.getLastReloadSource().contains(
+				"test.properties"));
+	}
+
+	@Test
+	public void describesAndDumpsSnapshot() {
+		final long generation = this.monitor.getGeneration();
+		assertEquals(3, this.monitor.getKeyCount());
+
+		this.file.setProperty("port", "9090");
+		this.configurer.reload();
+
+		assertTrue(this.monitor.getGeneration() > generation);
+		assertTrue(this.monitor.describeProperty("url").contains(
+				"resolved [http://localhost:9090/]"));
+		assertEquals("[missing] is not defined",
+				this.monitor.describeProperty("missing"));
+		final String[] dump = this.monitor.dumpSnapshot().split("\n");
+		assertEquals(4, dump.length);
+		assertTrue(dump[0].startsWith("# generation "));
+		assertTrue(dump[1].startsWith("host=localhost  # "));
+		assertTrue(dump[2].startsWith("port=9090  # "));
+		assertTrue(dump[3].startsWith("url=http://${host}:${port}/  # "));
+	}
+
+	@Test
+	public void countsSubscribedFieldsAndCallbacks() {
+		final ReloadablePropertyPostProcessor processor = new ReloadablePropertyPostProcessor(
+				this.configurer);
+		final Bean bean = new Bean();
+		processor.postProcessAfterInstantiation(bean, "bean");
+
+		assertEquals(ImmutableMap.of("host", 2, "port", 1),
+				this.monitor.getSubscriberCounts());
+		assertTrue(this.monitor.describeProperty("host").endsWith(
+				"subscribers [2]"));
+		// Subscriptions only count beans still referenced
+		assertEquals("localhost", bean.host);
+	}
+
+	@Test
+	public void registersMBeanOnlyOnRequest() throws Exception {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName(OBJECT_NAME);
+		assertFalse(server.isRegistered(name));
+
+		this.configurer.setRegisterMBean(true);
+		this.configurer.loadProperties(new Properties());
+		assertTrue(server.isRegistered(name));
+		assertEquals(3, server.getAttribute(name, "KeyCount"));
+
+		this.configurer.destroy();
+		assertFalse(server.isRegistered(name));
+	}
+
+}
@@ -0,0 +1,331 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.core.io.Resource;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.vip.properties.OnPropertyChange;
+import com.vip.properties.ReloadableBoolean;
+import com.vip.properties.ReloadableDouble;
+import com.vip.properties.ReloadableInt;
+import com.vip.properties.ReloadableLong;
+import com.vip.properties.ReloadableProperty;
+import com.vip.properties.ReloadableValue;
+import com.vip.properties.bean.PropertiesChangedEvent;
+
+public class ReloadablePropertyPostProcessorTest {
+
+	private final Properties file = new Properties();
+	private ReadablePropertySourcesPlaceholderConfigurer configurer;
+	private ReloadablePropertyPostProcessor processor;
+
+	private static class Bean {
+
+		@ReloadableProperty("host")
+		private String host;
+		@ReloadableProperty("port")
+		private int port;
+		@ReloadableProperty("url")
+		private String url;
+		@ReloadableProperty("optional")
+		private String optional = "default";
+	}
+
+	private static class HandleBean {
+
+		@ReloadableProperty("host")
+		private final ReloadableValue<String> host = new ReloadableValue<String>();
+		@ReloadableProperty("port")
+		private ReloadableInt port;
+		@ReloadableProperty("port")
+		private ReloadableLong longPort;
+		@ReloadableProperty("ratio")
+		private final ReloadableDouble ratio = new ReloadableDouble(0.5);
+		@ReloadableProperty("enabled")
+		private final ReloadableBoolean enabled = new ReloadableBoolean(true);
+	}
+
+	private static class NullFinalHandleBean {
+
+		@ReloadableProperty("port")
+		private final ReloadableInt port = null;
+	}
+
+	private static class CallbackBean {
+
+		@ReloadableProperty("host")
+		private String host;
+		private final List<String> calls = Lists.newArrayList();
+		private PropertiesChangedEvent event;
+
+		@OnPropertyChange("host")
+		void hostChanged() {
+			this.calls.add("hostChanged " + this.host);
+		}
+
+		@OnPropertyChange({ "port", "host" })
+		void addressChanged(final int oldPort, final int newPort,
+				final String oldHost, final String newHost) {
+			this.calls.add("addressChanged " + oldPort + " " + newPort + " "
+					+ oldHost + " " + newHost);
+		}
+
+		@OnPropertyChange({ "host", "port" })
+		void changed(final PropertiesChangedEvent event) {
+			this.event = event;
+		}
+
+		@OnPropertyChange("host")
+		void fails() {
+			throw new IllegalStateException();
+		}
+	}
+
+	private static class InvalidCallbackBean {
+
+		@OnPropertyChange("port")
+		void portChanged(final int newPort) {
+		}
+	}
+
+	@Before
+	public void createProcessor() throws IOException {
+		this.file.setProperty("host", "localhost");
+		this.file.setProperty("port", "8080");
+		this.file.setProperty("url", "http://${host}:${port}/");
+
+		// Reads the properties above instead of the file system
+		final Properties file = this.file;
+		this.configurer = new ReadablePropertySourcesPlaceholderConfigurer() {
+			@Override
+			protected Properties loadResource(final Resource resource) {
+				final Properties copy = new Properties();
+				copy.putAll(file);
+				return copy;
+			}
+		};
+		this.configurer.setMapPropertiesFiles(false);
+		this.configurer.setRegisterMBean(false);
+		this.configurer.setLocations(new String[] { "file:test.properties" });
+		this.configurer.loadProperties(new Properties());
+		this.processor = new ReloadablePropertyPostProcessor(this.configurer);
+		// Registers for events without starting the file watchers
+		this.configurer.getEventNotifier().register(this.processor);
+	}
+
+	@After
+	public void destroy() {
+		this.configurer.destroy();
+	}
+
+	@Test
+	public void bindsFieldsOfNewBean() {
+		final Bean bean = bind(new Bean());
+
+		assertEquals("localhost", bean.host);
+		assertEquals(8080, bean.port);
+		assertEquals("http://localhost:8080/", bean.url);
+		assertEquals("default", bean.optional);
+	}
+
+	@Test
+	public void updatesEveryChangedFieldOfBean() {
+		final Bean bean = bind(new Bean());
+
+		this.file.setProperty("host", "example.com");
+		this.file.setProperty("port", "9090");
+		this.file.setProperty("optional", "set");
+		this.configurer.reload();
+
+		assertEquals("example.com", bean.host);
+		assertEquals(9090, bean.port);
+		assertEquals("http://example.com:9090/", bean.url);
+		assertEquals("set", bean.optional);
+	}
+
+	@Test
+	public void removedPropertyLeavesFieldUnchanged() {
+		final Bean bean = bind(new Bean());
+
+		this.file.remove("host");
+		this.file.setProperty("port", "9090");
+		this.configurer.reload();
+
+		assertEquals("localhost", bean.host);
+		assertEquals(9090, bean.port);
+	}
+
+	@Test
+	public void unconvertibleValueLeavesOtherFieldsUpdated() {
+		final Bean bean = bind(new Bean());
+
+		this.file.setProperty("host", "example.com");
+		this.file.setProperty("port", "not a number");
+		this.configurer.reload();
+
+		assertEquals("example.com", bean.host);
+		assertEquals(8080, bean.port);
+	}
+
+	@Test
+	public void bindsAndUpdatesHandles() {
+		final HandleBean bean = bind(new HandleBean());
+
+		assertEquals("localhost", bean.host.get());
+		assertEquals(8080, bean.port.get());
+		assertEquals(8080, bean.longPort.get());
+		assertEquals(0.5, bean.ratio.get(), 0);
+		assertTrue(bean.enabled.get());
+
+		this.file.setProperty("host", "example.com");
+		this.file.setProperty("port", "9090");
+		this.file.setProperty("ratio", "0.25");
+		this.file.setProperty("enabled", "false");
+		this.configurer.reload();
+
+		assertEquals("example.com", bean.host.get());
+		assertEquals(9090, bean.port.get());
+		assertEquals(9090, bean.longPort.get());
+		assertEquals(0.25, bean.ratio.get(), 0);
+		assertFalse(bean.enabled.get());
+	}
+
+	@Test
+	public void unconvertibleValueKeepsHandleValue() {
+		final HandleBean bean = bind(new HandleBean());
+
+		this.file.setProperty("port", "not a number");
+		this.configurer.reload();
+
+		assertEquals(8080, bean.port.get());
+	}
+
+	@Test(expected = BeanInitializationException.class)
+	public void rejectsNullFinalHandle() {
+		bind(new NullFinalHandleBean());
+	}
+
+	@Test
+	public void callsEveryCallbackOnceAfterFieldsUpdate() {
+		final CallbackBean bean = bind(new CallbackBean());
+
+		this.file.setProperty("host", "example.com");
+		this.file.setProperty("port", "9090");
+		this.configurer.reload();
+
+		assertEquals(2, bean.calls.size());
+		assertTrue(bean.calls.contains("hostChanged example.com"));
+		assertTrue(bean.calls
+				.contains("addressChanged 8080 9090 localhost example.com"));
+		assertEquals(ImmutableSet.of("host", "port", "url"),
+				bean.event.getPropertyNames());
+	}
+
+	@Test
+	public void unchangedPropertyIsPassedCurrentValue() {
+		final CallbackBean bean = bind(new CallbackBean());
+
+		this.file.setProperty("port", "9090");
+		this.configurer.reload();
+
+		assertEquals(
+				ImmutableList.of("addressChanged 8080 9090 localhost localhost"),
+				bean.calls);
+	}
+
+	@Test
+	public void otherPropertiesDoNotCallBack() {
+		final CallbackBean bean = bind(new CallbackBean());
+
+		this.file.setProperty("other", "1");
+		this.configurer.reload();
+
+		assertTrue(bean.calls.isEmpty());
+		assertNull(bean.event);
+	}
+
+	@Test(expected = BeanInitializationException.class)
+	public void rejectsCallbackNotMatchingProperties() {
+		bind(new InvalidCallbackBean());
+	}
+
+	@Test
+	public void unloadedClassLoaderIsCollected() throws Exception {
+		final Path directory = Files.createTempDirectory("unloaded-bean");
+		try {
+			final Path source = directory.resolve("UnloadedBean.java");
+			Files.write(source, ("public class UnloadedBean {\n"
+					+ "  @com.vip.properties.ReloadableProperty(\"host\")\n"
+					+ "  public String host;\n" + "}\n")
+					.getBytes(Charsets.UTF_8));
+			final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+			assertEquals(0, compiler.run(null, null, null, "-proc:none",
+					"-classpath", new File(ReloadableProperty.class
+							.getProtectionDomain().getCodeSource()
+							.getLocation().toURI()).getPath(), "-d",
+					directory.toString(), source.toString()));
+
+			final WeakReference<ClassLoader> classLoader = bindUnloadedBean(directory);
+			for (int i = 0; i < 50 && null != classLoader.get(); i++) {
+				System.gc();
+				Thread.sleep(20);
+				// Drops the subscriptions of the collected bean
+				this.processor.getSubscriptions().getSubscribers("host");
+			}
+
+			assertNull(classLoader.get());
+		} finally {
+			Files.deleteIfExists(directory.resolve("UnloadedBean.class"));
+			Files.deleteIfExists(directory.resolve("UnloadedBean.java"));
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Binds a bean of a class only its own class loader can load
+	 * 
+	 * @return the class loader, referenced by nothing else once returned
+	 */
+	private WeakReference<ClassLoader> bindUnloadedBean(final Path directory)
+			throws Exception {
+		final URLClassLoader classLoader = new URLClassLoader(
+				new URL[] { directory.toUri().toURL() }, getClass()
+						.getClassLoader());
+		final Object bean = classLoader.loadClass("UnloadedBean")
+				.newInstance();
+		bind(bean);
+		assertEquals("localhost", bean.getClass().getField("host").get(bean));
+		classLoader.close();
+		return new WeakReference<ClassLoader>(classLoader);
+	}
+
+	private <T> T bind(final T bean) {
+		this.processor.postProcessAfterInstantiation(bean, "bean");
+		return bean;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class ResourceFingerprintTest {
+
+	private File file;
+
+	@Before
+	public void createFile() throws IOException {
+		final Path path = Files.createTempFile("fingerprint", ".properties");
+		this.file = path.toFile();
+		write("a=1");
+	}
+
+	@After
+	public void deleteFile() {
+		this.file.delete();
+	}
+
+	@Test
+	public void sameBytesHaveSameContent() throws IOException {
+		final ResourceFingerprint before = ResourceFingerprint.of(this.file);
+		write("a=1");
+
+		assertTrue(before.hasSameContent(ResourceFingerprint.of(this.file)));
+	}
+
+	@Test
+	public void sameSizeDifferentBytesDiffer() throws IOException {
+		final ResourceFingerprint before = ResourceFingerprint.of(this.file);
+		write("a=2");
+
+		assertFalse(before.hasSameContent(ResourceFingerprint.of(this.file)));
+	}
+
+	@Test
+	public void unhashedFingerprintNeverHasSameContent() throws IOException {
+		assertFalse(ResourceFingerprint.of(this.file, false).hasSameContent(
+				ResourceFingerprint.of(this.file, false)));
+	}
+
+	@Test
+	public void recentModificationTimeIsNotTrusted() throws IOException {
+		final ResourceFingerprint fingerprint = ResourceFingerprint
+				.of(this.file);
+
+		assertFalse(fingerprint.isUnchanged(this.file));
+	}
+
+	@Test
+	public void oldModificationTimeIsTrusted() throws IOException {
+		this.file.setLastModified(System.currentTimeMillis()
+				- TimeUnit.HOURS.toMillis(1));
+		final ResourceFingerprint fingerprint = ResourceFingerprint
+				.of(this.file);
+
+		assertTrue(fingerprint.isUnchanged(this.file));
+		assertFalse(fingerprint.isUnchanged(this.file.length() + 1,
+				this.file.lastModified()));
+	}
+
+	private void write(final String content) throws IOException {
+		Files.write(this.file.toPath(), content.getBytes(Charsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+
+public class ZookeeperBootstrapTest {
+
+	private EmbeddedZookeeper zookeeper;
+	private CuratorFramework client;
+
+	@Before
+	public void startZookeeper() throws Exception {
+		this.zookeeper = new EmbeddedZookeeper();
+		this.client = this.zookeeper.newClient();
+		create("/config/app", "a=1");
+		create("/config/other", "b=2");
+		create("/config/empty", "");
+	}
+
+	@After
+	public void stopZookeeper() throws IOException {
+		this.client.close();
+		this.zookeeper.close();
+	}
+
+	@Test
+	public void loadsEveryPath() throws IOException {
+		final ZookeeperBootstrap bootstrap = new ZookeeperBootstrap(
+				this.client, 10000);
+
+		final Map<String, byte[]> data = bootstrap.load(new String[] {
+				"/config/app", "/config/other", "/config/empty" });
+
+		assertArrayEquals(bytes("a=1"), data.get("/config/app"));
+		assertArrayEquals(bytes("b=2"), data.get("/config/other"));
+		assertArrayEquals(new byte[0], data.get("/config/empty"));
+		assertEquals(data.keySet(), bootstrap.getPathLoadMillis().keySet());
+		assertTrue(bootstrap.getTotalLoadMillis() >= 0);
+	}
+
+	@Test
+	public void loadsManyPathsAtOnce() throws Exception {
+		final String[] paths = new String[500];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = "/many/" + i;
+			create(paths[i], "value" + i);
+		}
+
+		final Map<String, byte[]> data = new ZookeeperBootstrap(this.client,
+				10000).load(paths);
+
+		assertEquals(paths.length, data.size());
+		assertArrayEquals(bytes("value499"), data.get("/many/499"));
+	}
+
+	@Test(expected = IOException.class)
+	public void failsOnMissingPath() throws IOException {
+		new ZookeeperBootstrap(this.client, 10000).load(new String[] {
+				"/config/app", "/config/missing" });
+	}
+
+	@Test
+	public void loadsChildrenOfEveryRoot() throws Exception {
+		create("/keys/one/a", "1");
+		create("/keys/one/b", "2");
+		create("/keys/two/c", "3");
+		create("/keys/three", "");
+
+		final Map<String, Map<String, byte[]>> children = new ZookeeperBootstrap(
+				this.client, 10000).loadChildren(new String[] { "/keys/one",
+				"/keys/two", "/keys/three" });
+
+		assertEquals(ImmutableSet.of("a", "b"), children.get("/keys/one")
+				.keySet());
+		assertArrayEquals(bytes("2"), children.get("/keys/one").get("b"));
+		assertArrayEquals(bytes("3"), children.get("/keys/two").get("c"));
+		assertTrue(children.get("/keys/three").isEmpty());
+	}
+
+	@Test
+	public void loadsShareOneDeadline() {
+		final ZookeeperBootstrap bootstrap = new ZookeeperBootstrap(
+				this.client, 500);
+		this.zookeeper.stop();
+
+		final long start = System.currentTimeMillis();
+		assertTimesOut(bootstrap, "/config/app");
+		assertTimesOut(bootstrap, "/config/other");
+		final long elapsed = System.currentTimeMillis() - start;
+
+		// The second load has no time left rather than 500ms of its own
+		assertTrue("Took " + elapsed + "ms", elapsed < 900);
+	}
+
+	private static void assertTimesOut(final ZookeeperBootstrap bootstrap,
+			final String path) {
+		try {
+			bootstrap.load(new String[] { path });
+			fail("Loaded " + path + " from a stopped server");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Timed out"));
+		}
+	}
+
+	private void create(final String path, final String data) throws Exception {
+		this.client.create().creatingParentsIfNeeded()
+				.forPath(path, bytes(data));
+	}
+
+	private static byte[] bytes(final String data) {
+		return data.getBytes(Charsets.UTF_8);
+	}
+
+}
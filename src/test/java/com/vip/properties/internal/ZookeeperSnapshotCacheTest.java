@@ -0,0 +1,142 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.snapshot.HashedProperties;
+
+public class ZookeeperSnapshotCacheTest {
+
+	private static final Map<String, HashedProperties> LAYERS = ImmutableMap
+			.of("/config/app",
+					HashedProperties.of(ImmutableMap.of("a", "1", "b",
+							"\u00e9\u4e2d")), "/config/empty",
+					HashedProperties.EMPTY);
+
+	private Path directory;
+	private Path file;
+	private ZookeeperSnapshotCache cache;
+
+	@Before
+	public void createCache() throws IOException {
+		this.directory = Files.createTempDirectory("zookeeper-snapshot");
+		this.file = this.directory.resolve("snapshot.bin");
+		this.cache = new ZookeeperSnapshotCache(this.file.toFile());
+	}
+
+	@After
+	public void deleteCache() throws IOException {
+		this.cache.close();
+		final File[] files = this.directory.toFile().listFiles();
+		if (null != files) {
+			for (final File leftover : files) {
+				Files.delete(leftover.toPath());
+			}
+		}
+		Files.delete(this.directory);
+	}
+
+	@Test
+	public void readsWrittenLayers() throws IOException {
+		this.cache.write(LAYERS);
+
+		assertLayers(LAYERS, this.cache.read());
+	}
+
+	@Test
+	public void missingFileIsNotASnapshot() {
+		assertNull(this.cache.read());
+	}
+
+	@Test
+	public void rejectsCorruptPayload() throws IOException {
+		this.cache.write(LAYERS);
+		final byte[] data = Files.readAllBytes(this.file);
+		data[data.length - 1] ^= 1;
+		Files.write(this.file, data);
+
+		assertNull(this.cache.read());
+	}
+
+	@Test
+	public void rejectsCorruptChecksum() throws IOException {
+		this.cache.write(LAYERS);
+		final byte[] data = Files.readAllBytes(this.file);
+		// The checksum follows the magic number, version and length
+		data[12] ^= 1;
+		Files.write(this.file, data);
+
+		assertNull(this.cache.read());
+	}
+
+	@Test
+	public void rejectsTruncatedFile() throws IOException {
+		this.cache.write(LAYERS);
+		final byte[] data = Files.readAllBytes(this.file);
+		Files.write(this.file, Arrays.copyOf(data, data.length - 1));
+
+		assertNull(this.cache.read());
+	}
+
+	@Test
+	public void rejectsUnrecognisedFile() throws IOException {
+		Files.write(this.file, "a=1\nb=2\nc=3\nd=4"
+				.getBytes(Charsets.UTF_8));
+
+		assertNull(this.cache.read());
+	}
+
+	@Test
+	public void laterWriteReplacesEarlier() throws Exception {
+		final Map<String, HashedProperties> later = ImmutableMap.of(
+				"/config/app",
+				HashedProperties.of(ImmutableMap.of("a", "2")));
+
+		this.cache.writeLater(LAYERS);
+		this.cache.writeLater(later);
+		final long deadline = System.currentTimeMillis() + 10000;
+		Map<String, HashedProperties> read = this.cache.read();
+		while ((null == read || read.size() != 1)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+			read = this.cache.read();
+		}
+
+		assertLayers(later, read);
+	}
+
+	@Test
+	public void writeLaterAfterCloseIsIgnored() throws Exception {
+		this.cache.close();
+
+		this.cache.writeLater(LAYERS);
+		Thread.sleep(200);
+
+		assertNull(this.cache.read());
+	}
+
+	private static void assertLayers(
+			final Map<String, HashedProperties> expected,
+			final Map<String, HashedProperties> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (final Map.Entry<String, HashedProperties> layer : expected
+				.entrySet()) {
+			assertEquals(layer.getValue().asMap(), actual.get(layer.getKey())
+					.asMap());
+		}
+	}
+
+}
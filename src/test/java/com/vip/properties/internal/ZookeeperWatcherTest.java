@@ -0,0 +1,211 @@
+package com.vip.properties.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.imps.CuratorFrameworkState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.vip.properties.internal.ZookeeperWatcher.ZkClientFacotry;
+
+public class ZookeeperWatcherTest {
+
+	private final RecordingPublisher publisher = new RecordingPublisher();
+	private EmbeddedZookeeper zookeeper;
+	private CuratorFramework client;
+	private String previousConnection;
+
+	@Before
+	public void startZookeeper() throws IOException {
+		this.zookeeper = new EmbeddedZookeeper();
+		this.client = this.zookeeper.newClient();
+		this.previousConnection = System.setProperty("ZK_CONNECTION",
+				this.zookeeper.getConnectString());
+	}
+
+	@After
+	public void stopZookeeper() throws IOException {
+		if (null == this.previousConnection) {
+			System.clearProperty("ZK_CONNECTION");
+		} else {
+			System.setProperty("ZK_CONNECTION", this.previousConnection);
+		}
+		this.client.close();
+		this.zookeeper.close();
+	}
+
+	@Test
+	public void sharesOneClientUntilLastRelease() throws IOException {
+		final CuratorFramework first = ZkClientFacotry.getZkClient(5000);
+		final CuratorFramework second = ZkClientFacotry.getZkClient(5000);
+		assertSame(first, second);
+
+		ZkClientFacotry.releaseZkClient(first);
+		assertEquals(CuratorFrameworkState.STARTED, second.getState());
+		ZkClientFacotry.releaseZkClient(second);
+		assertEquals(CuratorFrameworkState.STOPPED, second.getState());
+
+		final CuratorFramework next = ZkClientFacotry.getZkClient(5000);
+		try {
+			assertNotSame(first, next);
+		} finally {
+			ZkClientFacotry.releaseZkClient(next);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void failsToConnectWithinTimeout() throws IOException {
+		this.zookeeper.stop();
+
+		ZkClientFacotry.getZkClient(200);
+	}
+
+	@Test
+	public void publishesChangesOfWatchedNodes() throws Exception {
+		create("/config/app", "a=1");
+		final ZookeeperWatcher watcher = startWatcher("/config/app");
+		try {
+			this.client.setData().forPath("/config/app", bytes("a=2"));
+
+			assertEquals("/config/app=a=2", this.publisher.next());
+		} finally {
+			watcher.close();
+		}
+	}
+
+	@Test
+	public void watchesNodesCreatedAfterStart() throws Exception {
+		create("/config/app", "a=1");
+		final ZookeeperWatcher watcher = startWatcher("/config/app",
+				"/config/late");
+		try {
+			create("/config/late", "b=1");
+			assertEquals("/config/late=b=1", this.publisher.next());
+
+			this.client.setData().forPath("/config/late", bytes("b=2"));
+			assertEquals("/config/late=b=2", this.publisher.next());
+		} finally {
+			watcher.close();
+		}
+	}
+
+	@Test
+	public void watchersShareClient() throws Exception {
+		create("/config/app", "a=1");
+		final ZookeeperWatcher first = startWatcher("/config/app");
+		final ZookeeperWatcher second = startWatcher("/config/app");
+		try {
+			first.close();
+			this.client.setData().forPath("/config/app", bytes("a=2"));
+
+			assertEquals("/config/app=a=2", this.publisher.next());
+			assertNull(this.publisher.poll(200));
+		} finally {
+			second.close();
+		}
+	}
+
+	@Test
+	public void publishesLoadedKeysThenEveryKeyChange() throws Exception {
+		create("/keys/a", "1");
+		create("/keys/b", "");
+		final ZookeeperWatcher watcher = new ZookeeperWatcher(new String[0],
+				new String[] { "/keys" }, this.publisher, 5000);
+		watcher.start();
+		try {
+			assertEquals("/keys={a=1, b=}", this.publisher.next());
+
+			create("/keys/c", "3");
+			assertEquals("/keys/c=3", this.publisher.next());
+			this.client.setData().forPath("/keys/a", bytes("2"));
+			assertEquals("/keys/a=2", this.publisher.next());
+			this.client.delete().forPath("/keys/b");
+			assertEquals("/keys/b=null", this.publisher.next());
+		} finally {
+			watcher.close();
+		}
+	}
+
+	private ZookeeperWatcher startWatcher(final String... locations)
+			throws IOException {
+		final ZookeeperWatcher watcher = new ZookeeperWatcher(locations,
+				new String[0], this.publisher, 5000);
+		watcher.start();
+		return watcher;
+	}
+
+	private void create(final String path, final String data) throws Exception {
+		this.client.create().creatingParentsIfNeeded()
+				.forPath(path, bytes(data));
+	}
+
+	private static byte[] bytes(final String data) {
+		return data.getBytes(Charsets.UTF_8);
+	}
+
+	/**
+	 * Records every change as path=data, root/key=value for single keys, or
+	 * root={key=value, ...} for loaded keys
+	 */
+	private static class RecordingPublisher implements EventPublisher {
+
+		private final BlockingQueue<String> changes = new LinkedBlockingQueue<String>();
+
+		@Override
+		public void onResourceChanged(final Resource resource) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void onZookeeperChanged(final String path, final byte[] resource) {
+			this.changes.add(path + "=" + new String(resource, Charsets.UTF_8));
+		}
+
+		@Override
+		public void onZookeeperKeyChanged(final String root, final String key,
+				final byte[] value) {
+			this.changes.add(root + "/" + key + "="
+					+ (null == value ? null : new String(value, Charsets.UTF_8)));
+		}
+
+		@Override
+		public void onZookeeperKeysLoaded(final String root,
+				final Map<String, byte[]> children) {
+			final SortedMap<String, String> keys = Maps.newTreeMap();
+			for (final Map.Entry<String, byte[]> child : children.entrySet()) {
+				keys.put(child.getKey(),
+						new String(child.getValue(), Charsets.UTF_8));
+			}
+			this.changes.add(root + "=" + keys);
+		}
+
+		String next() throws InterruptedException {
+			final String change = poll(10000);
+			if (null == change) {
+				fail("No change published");
+			}
+			return change;
+		}
+
+		String poll(final long timeoutMillis) throws InterruptedException {
+			return this.changes.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
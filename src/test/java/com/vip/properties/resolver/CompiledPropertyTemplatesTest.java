@@ -0,0 +1,175 @@
+package com.vip.properties.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CompiledPropertyTemplatesTest {
+
+	private static final ImmutableMap<String, String> PROPERTIES = ImmutableMap
+			.<String, String> builder().put("host", "localhost")
+			.put("port", "8080").put("address", "${host}:${port}")
+			.put("url", "http://${address}/${path}")
+			.put("path", "index.html").put("literal", "plain").build();
+
+	@Test
+	public void resolvesNestedPlaceholders() {
+		final CompiledPropertyTemplates templates = CompiledPropertyTemplates
+				.compile(PROPERTIES);
+
+		assertEquals("http://localhost:8080/index.html",
+				templates.resolve("url"));
+		assertEquals("plain", templates.resolve("literal"));
+		assertNull(templates.resolve("missing"));
+	}
+
+	@Test
+	public void leavesUnresolvablePlaceholders() {
+		final CompiledPropertyTemplates templates = CompiledPropertyTemplates
+				.compile(ImmutableMap.of("a", "${missing}-${b}", "b", "1"));
+
+		assertEquals("${missing}-1", templates.resolve("a"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCircularReferences() {
+		CompiledPropertyTemplates.compile(
+				ImmutableMap.of("a", "${b}", "b", "x${c}", "c", "${a}"))
+				.resolve("a");
+	}
+
+	@Test
+	public void affectedByFollowsReferencesTransitively() {
+		final CompiledPropertyTemplates templates = CompiledPropertyTemplates
+				.compile(PROPERTIES);
+
+		assertEquals(ImmutableSet.of("host", "address", "url"),
+				templates.affectedBy(ImmutableSet.of("host")));
+		assertEquals(ImmutableSet.of("literal"),
+				templates.affectedBy(ImmutableSet.of("literal")));
+	}
+
+	@Test
+	public void changedReferenceInvalidatesMemoizedDependents() {
+		final CompiledPropertyTemplates templates = CompiledPropertyTemplates
+				.compile(PROPERTIES);
+		templates.resolve("url");
+
+		final CompiledPropertyTemplates next = templates.withChanges(
+				with(PROPERTIES, "port", "9090"), ImmutableSet.of("port"));
+
+		assertEquals("http://localhost:9090/index.html", next.resolve("url"));
+		assertEquals("http://localhost:8080/index.html",
+				templates.resolve("url"));
+	}
+
+	@Test
+	public void literalBecomingTemplateIsCompiled() {
+		final CompiledPropertyTemplates templates = CompiledPropertyTemplates
+				.compile(PROPERTIES);
+		templates.resolve("literal");
+
+		final CompiledPropertyTemplates next = templates.withChanges(
+				with(PROPERTIES, "literal", "${host}"),
+				ImmutableSet.of("literal"));
+
+		assertEquals("localhost", next.resolve("literal"));
+		assertEquals(ImmutableSet.of("host", "address", "url", "literal"),
+				next.affectedBy(ImmutableSet.of("host")));
+	}
+
+	@Test
+	public void withChangesMatchesFreshCompilation() {
+		final Random random = new Random(13);
+		final List<String> keys = Lists.newArrayList();
+		for (int i = 0; i < 30; i++) {
+			keys.add("key" + i);
+		}
+		Map<String, String> properties = randomProperties(random, keys);
+		CompiledPropertyTemplates templates = CompiledPropertyTemplates
+				.compile(properties);
+		for (int round = 0; round < 2000; round++) {
+			// Memoize some values before the change
+			for (int i = 0; i < 5; i++) {
+				resolveOrCircular(templates, keys.get(random.nextInt(keys.size())));
+			}
+			final Map<String, String> next = Maps.newHashMap(properties);
+			final List<String> changed = Lists.newArrayList();
+			for (int i = random.nextInt(3) + 1; i > 0; i--) {
+				final String key = keys.get(random.nextInt(keys.size()));
+				changed.add(key);
+				final String value = randomValue(random, keys);
+				if (null == value) {
+					next.remove(key);
+				} else {
+					next.put(key, value);
+				}
+			}
+			properties = ImmutableMap.copyOf(next);
+			templates = templates.withChanges(properties, changed);
+			final CompiledPropertyTemplates fresh = CompiledPropertyTemplates
+					.compile(properties);
+			for (final String key : keys) {
+				assertEquals(key, resolveOrCircular(fresh, key),
+						resolveOrCircular(templates, key));
+			}
+			assertEquals(fresh.affectedBy(changed),
+					templates.affectedBy(changed));
+		}
+	}
+
+	private static String resolveOrCircular(
+			final CompiledPropertyTemplates templates, final String key) {
+		try {
+			return templates.resolve(key);
+		} catch (final IllegalArgumentException e) {
+			return "circular";
+		}
+	}
+
+	private static Map<String, String> randomProperties(final Random random,
+			final List<String> keys) {
+		final Map<String, String> properties = Maps.newHashMap();
+		for (final String key : keys) {
+			final String value = randomValue(random, keys);
+			if (null != value) {
+				properties.put(key, value);
+			}
+		}
+		return ImmutableMap.copyOf(properties);
+	}
+
+	/**
+	 * @return a literal, a template referencing other keys, or null
+	 */
+	private static String randomValue(final Random random,
+			final List<String> keys) {
+		switch (random.nextInt(4)) {
+		case 0:
+			return null;
+		case 1:
+			return "literal" + random.nextInt(10);
+		default:
+			return "${" + keys.get(random.nextInt(keys.size())) + "}-${"
+					+ keys.get(random.nextInt(keys.size())) + "}";
+		}
+	}
+
+	private static Map<String, String> with(final Map<String, String> properties,
+			final String key, final String value) {
+		final Map<String, String> copy = Maps.newHashMap(properties);
+		copy.put(key, value);
+		return ImmutableMap.copyOf(copy);
+	}
+
+}
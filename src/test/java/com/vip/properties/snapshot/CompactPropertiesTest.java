@@ -0,0 +1,143 @@
+package com.vip.properties.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CompactPropertiesTest {
+
+	@Test
+	public void getsEveryKey() {
+		final Map<String, String> properties = Maps.newHashMap();
+		for (int i = 0; i < 5000; i++) {
+			properties.put("service." + (i % 37) + ".key" + i, "value"
+					+ (i % 11));
+		}
+		properties.put("", "empty key");
+		properties.put("nodot", "");
+		properties.put("trailing.", "dot");
+		// Equal hash codes
+		properties.put("Aa", "first");
+		properties.put("BB", "second");
+
+		final CompactProperties compact = CompactProperties.copyOf(properties);
+
+		assertEquals(properties.size(), compact.size());
+		for (final Map.Entry<String, String> entry : properties.entrySet()) {
+			assertEquals(entry.getValue(), compact.get(entry.getKey()));
+			assertTrue(compact.containsKey(entry.getKey()));
+		}
+		assertEquals(properties, compact);
+	}
+
+	@Test
+	public void missingKeysAreAbsent() {
+		final CompactProperties compact = CompactProperties
+				.copyOf(ImmutableMap.of("a.b", "1", "Aa", "2"));
+
+		assertNull(compact.get("a.c"));
+		assertNull(compact.get("a."));
+		assertNull(compact.get("b"));
+		assertNull(compact.get("BB"));
+		assertNull(compact.get(1));
+		assertNull(compact.get(null));
+		assertFalse(compact.containsKey("a.bb"));
+		assertNull(CompactProperties.EMPTY.get("a.b"));
+	}
+
+	@Test
+	public void iteratesInSourceOrder() {
+		final Map<String, String> properties = new LinkedHashMap<String, String>();
+		properties.put("z.last", "1");
+		properties.put("a.first", "2");
+		properties.put("m", "1");
+
+		final List<String> keys = Lists.newArrayList();
+		final List<String> values = Lists.newArrayList();
+		for (final Map.Entry<String, String> entry : CompactProperties.copyOf(
+				properties).entrySet()) {
+			keys.add(entry.getKey());
+			values.add(entry.getValue());
+		}
+
+		assertEquals(Lists.newArrayList("z.last", "a.first", "m"), keys);
+		assertEquals(Lists.newArrayList("1", "2", "1"), values);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void iteratorEndsAfterLastEntry() {
+		final Iterator<Map.Entry<String, String>> entries = CompactProperties
+				.copyOf(ImmutableMap.of("a", "1")).entrySet().iterator();
+		entries.next();
+		assertFalse(entries.hasNext());
+		entries.next();
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void isImmutable() {
+		CompactProperties.copyOf(ImmutableMap.of("a", "1")).put("b", "2");
+	}
+
+	@Test
+	public void copyOfCompactPropertiesIsItself() {
+		final CompactProperties compact = CompactProperties
+				.copyOf(ImmutableMap.of("a", "1"));
+
+		assertSame(compact, CompactProperties.copyOf(compact));
+	}
+
+	@Test
+	public void getsNumericValues() {
+		final CompactProperties compact = CompactProperties
+				.copyOf(new ImmutableMap.Builder<String, String>()
+						.put("long", "-9223372036854775808")
+						.put("plus", "+42").put("double", "1.5e3")
+						.put("fraction", ".25")
+						.put("overflow", "9223372036854775808")
+						.put("text", "12a").build());
+
+		assertEquals(Long.MIN_VALUE, compact.getLong("long", 0));
+		assertEquals(42, compact.getLong("plus", 0));
+		assertEquals(7, compact.getLong("missing", 7));
+		assertEquals(1500, compact.getDouble("double", 0), 0);
+		assertEquals(0.25, compact.getDouble("fraction", 0), 0);
+		assertEquals(42, compact.getDouble("plus", 0), 0);
+		assertEquals(9223372036854775808d,
+				compact.getDouble("overflow", 0), 0);
+		assertEquals(0.5, compact.getDouble("missing", 0.5), 0);
+		// Parsed values are kept beside the original text
+		assertEquals("+42", compact.get("plus"));
+		assertEquals("1.5e3", compact.get("double"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void getLongRejectsDouble() {
+		CompactProperties.copyOf(ImmutableMap.of("a", "1.5")).getLong("a", 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void getLongRejectsOverflow() {
+		CompactProperties.copyOf(ImmutableMap.of("a", "9223372036854775808"))
+				.getLong("a", 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void getDoubleRejectsText() {
+		CompactProperties.copyOf(ImmutableMap.of("a", "12a")).getDouble("a", 0);
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.vip.properties.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class HashedPropertiesTest {
+
+	@Test
+	public void withPropertySharesUnchangedBuckets() {
+		final HashedProperties before = HashedProperties.of(properties(1000));
+
+		final HashedProperties after = before.withProperty("added", "1");
+
+		final int changed = HashedProperties.bucketOf("added",
+				before.bucketCount());
+		assertEquals(before.bucketCount(), after.bucketCount());
+		for (int i = 0; i < before.bucketCount(); i++) {
+			if (i == changed) {
+				assertNotSame(before.bucketKeys(i), after.bucketKeys(i));
+			} else {
+				assertSame(before.bucketKeys(i), after.bucketKeys(i));
+			}
+		}
+		assertEquals("1", after.get("added"));
+		assertNull(before.get("added"));
+		assertEquals(properties(1000), before.asMap());
+	}
+
+	@Test
+	public void withPropertyKeepsDigestsOfFreshBuild() {
+		final Map<String, String> expected = properties(1000);
+		HashedProperties properties = HashedProperties.of(expected);
+
+		properties = properties.withProperty("key-1", "changed")
+				.withProperty("added", "1").withProperty("key-2", null);
+		expected.put("key-1", "changed");
+		expected.put("added", "1");
+		expected.remove("key-2");
+
+		final HashedProperties fresh = HashedProperties.of(expected);
+		assertEquals(fresh.bucketCount(), properties.bucketCount());
+		for (int i = 0; i < fresh.bucketCount(); i++) {
+			assertEquals(fresh.digest(i), properties.digest(i));
+		}
+		assertTrue(PropertiesDiff.between(fresh, properties).getChangedKeys()
+				.isEmpty());
+	}
+
+	@Test
+	public void unchangedValueIsSameInstance() {
+		final HashedProperties properties = HashedProperties
+				.of(properties(100));
+
+		assertSame(properties, properties.withProperty("key-1", "value-1"));
+		assertSame(properties, properties.withProperty("missing", null));
+	}
+
+	@Test
+	public void growsAndShrinksBuckets() {
+		HashedProperties properties = HashedProperties.EMPTY;
+		for (int i = 0; i < 5000; i++) {
+			properties = properties.withProperty("key-" + i, "value-" + i);
+		}
+		assertTrue(properties.bucketCount() >= HashedProperties
+				.bucketCountFor(5000) / 2);
+		assertEquals(properties(5000), properties.asMap());
+
+		for (int i = 0; i < 4990; i++) {
+			properties = properties.withProperty("key-" + i, null);
+		}
+		assertEquals(10, properties.size());
+		assertTrue(properties.bucketCount() <= 2 * HashedProperties
+				.bucketCountFor(properties.size()));
+		assertEquals("value-4995", properties.get("key-4995"));
+		assertNull(properties.get("key-1"));
+	}
+
+	@Test
+	public void randomChangesMatchFreshBuild() {
+		final Random random = new Random(7);
+		final Map<String, String> expected = properties(300);
+		HashedProperties properties = HashedProperties.of(expected);
+		for (int round = 0; round < 200; round++) {
+			final Map<String, String> changes = Maps.newHashMap();
+			final Set<String> removed = Sets.newHashSet();
+			for (int i = random.nextInt(20); i >= 0; i--) {
+				final String key = "key-" + random.nextInt(600);
+				if (random.nextInt(3) == 0) {
+					removed.add(key);
+					changes.remove(key);
+				} else {
+					changes.put(key, "value-" + random.nextInt(5));
+					removed.remove(key);
+				}
+			}
+			final HashedProperties previous = properties;
+			final Map<String, String> previousMap = Maps.newHashMap(expected);
+			properties = random.nextBoolean() ? properties.withChanges(
+					changes, removed) : applyOneByOne(properties, changes,
+					removed);
+			expected.putAll(changes);
+			expected.keySet().removeAll(removed);
+
+			assertEquals(expected, properties.asMap());
+			assertEquals(expected.size(), properties.size());
+			assertEquals(previousMap, previous.asMap());
+			assertTrue(PropertiesDiff
+					.between(HashedProperties.of(expected), properties)
+					.getChangedKeys().isEmpty());
+		}
+	}
+
+	@Test
+	public void compactPropertiesStayCompact() {
+		final HashedProperties properties = HashedProperties.of(
+				properties(100)).compact();
+
+		final HashedProperties changed = properties.withProperty("key-1",
+				"changed").withChanges(ImmutableMap.of("added", "1"),
+				ImmutableSet.of("key-2"));
+
+		assertTrue(changed.isCompact());
+		assertEquals("changed", changed.get("key-1"));
+		assertEquals("1", changed.get("added"));
+		assertNull(changed.get("key-2"));
+		assertEquals("value-1", properties.get("key-1"));
+		assertSame(properties, properties.withProperty("key-1", "value-1"));
+	}
+
+	private static HashedProperties applyOneByOne(
+			HashedProperties properties, final Map<String, String> changes,
+			final Set<String> removed) {
+		for (final Map.Entry<String, String> change : changes.entrySet()) {
+			properties = properties.withProperty(change.getKey(),
+					change.getValue());
+		}
+		for (final String key : removed) {
+			properties = properties.withProperty(key, null);
+		}
+		return properties;
+	}
+
+	private static Map<String, String> properties(final int size) {
+		final Map<String, String> properties = Maps.newHashMap();
+		for (int i = 0; i < size; i++) {
+			properties.put("key-" + i, "value-" + i);
+		}
+		return properties;
+	}
+
+}
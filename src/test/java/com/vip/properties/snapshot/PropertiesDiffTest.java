@@ -0,0 +1,139 @@
+package com.vip.properties.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+public class PropertiesDiffTest {
+
+	@Test
+	public void reportsAddedRemovedAndModifiedKeys() {
+		final HashedProperties previous = HashedProperties.of(ImmutableMap.of(
+				"kept", "1", "modified", "old", "removed", "gone"));
+		final HashedProperties current = HashedProperties.of(ImmutableMap.of(
+				"kept", "1", "modified", "new", "added", "here"));
+
+		final PropertiesDiff diff = PropertiesDiff.between(previous, current);
+
+		assertEquals(ImmutableMap.of("added", "here"), diff.getAdded());
+		assertEquals(ImmutableMap.of("removed", "gone"), diff.getRemoved());
+		assertEquals(ImmutableMap.of("modified", "new"), diff.getModified());
+		assertEquals(ImmutableSet.of("added", "removed", "modified"),
+				diff.getChangedKeys());
+	}
+
+	@Test
+	public void equalPropertiesHaveNoDifferences() {
+		final Map<String, String> properties = numbered(1000, "value");
+
+		assertTrue(PropertiesDiff.between(HashedProperties.of(properties),
+				HashedProperties.of(Maps.newHashMap(properties))).isEmpty());
+		assertTrue(PropertiesDiff.between(HashedProperties.EMPTY,
+				HashedProperties.EMPTY).isEmpty());
+	}
+
+	@Test
+	public void swappedValuesAreModified() {
+		final HashedProperties previous = HashedProperties.of(ImmutableMap.of(
+				"a", "1", "b", "2"));
+		final HashedProperties current = HashedProperties.of(ImmutableMap.of(
+				"a", "2", "b", "1"));
+
+		assertEquals(ImmutableMap.of("a", "2", "b", "1"), PropertiesDiff
+				.between(previous, current).getModified());
+	}
+
+	@Test
+	public void foldsPropertiesOfDifferentBucketCounts() {
+		final Map<String, String> small = numbered(5, "value");
+		final Map<String, String> large = numbered(5000, "value");
+		large.put("key.3", "modified");
+
+		final PropertiesDiff grown = PropertiesDiff.between(
+				HashedProperties.of(small), HashedProperties.of(large));
+		assertEquals(4995, grown.getAdded().size());
+		assertEquals(ImmutableMap.of("key.3", "modified"), grown.getModified());
+		assertTrue(grown.getRemoved().isEmpty());
+
+		final PropertiesDiff shrunk = PropertiesDiff.between(
+				HashedProperties.of(large), HashedProperties.of(small));
+		assertEquals(4995, shrunk.getRemoved().size());
+		assertEquals(ImmutableMap.of("key.3", "value3"), shrunk.getModified());
+		assertTrue(shrunk.getAdded().isEmpty());
+	}
+
+	@Test
+	public void matchesNaiveDiffOfRandomChanges() {
+		final Random random = new Random(7);
+		for (int round = 0; round < 200; round++) {
+			final Map<String, String> previous = numbered(
+					random.nextInt(2000), "value");
+			final Map<String, String> current = Maps.newHashMap(previous);
+			final int changes = random.nextInt(20);
+			for (int i = 0; i < changes; i++) {
+				final String key = "key." + random.nextInt(2500);
+				switch (random.nextInt(3)) {
+				case 0:
+					current.remove(key);
+					break;
+				case 1:
+					current.put(key, "changed" + random.nextInt(3));
+					break;
+				default:
+					current.put(key, "value" + key.substring(4));
+				}
+			}
+			assertDiff(previous, current, false);
+			assertDiff(previous, current, true);
+		}
+	}
+
+	private static void assertDiff(final Map<String, String> previous,
+			final Map<String, String> current, final boolean compact) {
+		final Map<String, String> added = Maps.newHashMap();
+		final Map<String, String> removed = Maps.newHashMap();
+		final Map<String, String> modified = Maps.newHashMap();
+		for (final Map.Entry<String, String> entry : current.entrySet()) {
+			final String old = previous.get(entry.getKey());
+			if (null == old) {
+				added.put(entry.getKey(), entry.getValue());
+			} else if (!old.equals(entry.getValue())) {
+				modified.put(entry.getKey(), entry.getValue());
+			}
+		}
+		for (final Map.Entry<String, String> entry : previous.entrySet()) {
+			if (!current.containsKey(entry.getKey())) {
+				removed.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		HashedProperties before = HashedProperties.of(previous);
+		HashedProperties after = HashedProperties.of(current);
+		if (compact) {
+			before = before.compact();
+			after = after.compact();
+		}
+		final PropertiesDiff diff = PropertiesDiff.between(before, after);
+		assertEquals(added, diff.getAdded());
+		assertEquals(removed, diff.getRemoved());
+		assertEquals(modified, diff.getModified());
+	}
+
+	private static Map<String, String> numbered(final int size,
+			final String valuePrefix) {
+		final Map<String, String> properties = Maps.newHashMap();
+		for (int i = 0; i < size; i++) {
+			properties.put("key." + i, valuePrefix + i);
+		}
+		return properties;
+	}
+
+}
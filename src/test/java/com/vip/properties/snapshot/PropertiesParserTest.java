@@ -0,0 +1,234 @@
+package com.vip.properties.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+public class PropertiesParserTest {
+
+	/**
+	 * java.util.Properties carries an odd trailing backslash of a comment
+	 * into the next line, which may then be read past its end, the parser
+	 * ignores it
+	 */
+	private static final Pattern COMMENT_ENDING_IN_BACKSLASH = Pattern
+			.compile("(^|[\\r\\n])[ \\t\\f]*[#!][^\\r\\n]*?(?<!\\\\)(\\\\\\\\)*\\\\([\\r\\n]|$)");
+
+	private static final String[] EDGE_CASES = {
+			"",
+			"a=1",
+			"a = 1\nb:2\nc 3\nd\n",
+			"  a\t=\f 1  \r\nb=2\rc=3",
+			"a==1\nb=:2\nc: =3\nd  = = 4",
+			"# comment\n! comment\n  # indented comment\na=1",
+			"a=1\na=2",
+			"a=\\\n  continued\\\n\tagain",
+			"a=odd\\\\\\\nnext",
+			"a=even\\\\\nb=2",
+			"a\\ b=c\\=d\\:e",
+			"a=\\t\\n\\r\\f\\x\\\\",
+			"a=\\u0041\\u00e9\\u4e2d",
+			"a=trailing\\",
+			// Nothing precedes the continuation, the next line is joined to
+			// it even if it starts like a comment, unless it is blank
+			"\\\n# comment\na=1",
+			"\\\n  ! comment\n",
+			"\\\n  \na=1",
+			"\\\na=1",
+			"\\\r\n  a=1",
+			"\\\n",
+			"\\",
+			"a=1\n\\",
+			"a=1\n  \\\n",
+			"\\\\",
+			"a=1\\\r\n\r\nb=2",
+			"=value\n:value2",
+			"a=\u00e9\u4e2d\ud83d\ude00" };
+
+	@Test
+	public void edgeCasesParseAsPropertiesLoadDoes() throws IOException {
+		assumePropertiesJoinLoneContinuation();
+		for (final String text : EDGE_CASES) {
+			assertParsesAsProperties(text, Charsets.UTF_8,
+					HashedProperties.EMPTY);
+		}
+	}
+
+	@Test
+	public void latin1EdgeCasesParseAsPropertiesLoadDoes() throws IOException {
+		assumePropertiesJoinLoneContinuation();
+		for (final String text : EDGE_CASES) {
+			if (Charsets.ISO_8859_1.newEncoder().canEncode(text)) {
+				assertParsesAsProperties(text, Charsets.ISO_8859_1,
+						HashedProperties.EMPTY);
+			}
+		}
+	}
+
+	@Test
+	public void randomLinesParseAsPropertiesLoadDoes() throws IOException {
+		assumePropertiesJoinLoneContinuation();
+		// Each text replaces the previous one, so unchanged values are
+		// matched against their previous value rather than decoded
+		final char[] alphabet = { 'a', 'b', '.', '=', ':', ' ', '\t', '\\',
+				'\\', '\n', '\r', '#', '!', 't', 'u', '0', '\u00e9' };
+		final Random random = new Random(42);
+		HashedProperties previous = HashedProperties.EMPTY;
+		for (int i = 0; i < 20000; i++) {
+			final StringBuilder text = new StringBuilder();
+			final int length = random.nextInt(24);
+			for (int j = 0; j < length; j++) {
+				text.append(alphabet[random.nextInt(alphabet.length)]);
+			}
+			if (!COMMENT_ENDING_IN_BACKSLASH.matcher(text).find()) {
+				previous = assertParsesAsProperties(text.toString(),
+						Charsets.UTF_8, previous);
+			}
+		}
+	}
+
+	@Test
+	public void loneContinuationJoinsNextLine() {
+		assertParses("\\\n# comment\na=1",
+				ImmutableMap.of("#", "comment", "a", "1"));
+		assertParses("\\\r\n  !x\n", ImmutableMap.of("!x", ""));
+		assertParses("\\\r\n  a=1", ImmutableMap.of("a", "1"));
+		assertParses("\\\n\t\n# comment\na=1", ImmutableMap.of("a", "1"));
+		assertParses("\\\r\n", ImmutableMap.<String, String> of());
+		assertParses("\\\n", ImmutableMap.of("", ""));
+		assertParses("a=1\n\\", ImmutableMap.of("a", "1", "", ""));
+	}
+
+	@Test
+	public void unchangedValuesKeepTheirPreviousInstance() {
+		final HashedProperties previous = PropertiesParser.parse(
+				bytes("a=1\nb=\u00e9\nc=\\u0041\nd=old", Charsets.UTF_8),
+				Charsets.UTF_8, HashedProperties.EMPTY);
+		final HashedProperties parsed = PropertiesParser.parse(
+				bytes("d=new\nc=\\u0041\nb=\u00e9\na=1", Charsets.UTF_8),
+				Charsets.UTF_8, previous);
+
+		assertSame(previous.get("a"), parsed.get("a"));
+		assertSame(previous.get("b"), parsed.get("b"));
+		assertSame(previous.get("c"), parsed.get("c"));
+		assertNotSame(previous.get("d"), parsed.get("d"));
+		assertEquals("new", parsed.get("d"));
+	}
+
+	@Test
+	public void parsesFromPositionToLimitOfDirectBuffer() {
+		final byte[] text = bytes("ignored=0\na=1\nb=2\nignored=3",
+				Charsets.UTF_8);
+		final ByteBuffer data = ByteBuffer.allocateDirect(text.length);
+		data.put(text).position(10).limit(text.length - 10);
+
+		final HashedProperties parsed = PropertiesParser.parse(data,
+				Charsets.UTF_8, HashedProperties.EMPTY);
+
+		assertEquals(ImmutableMap.of("a", "1", "b", "2"), parsed.asMap());
+		assertEquals(10, data.position());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMalformedUnicodeEscape() {
+		PropertiesParser.parse(bytes("a=\\u00g1", Charsets.UTF_8),
+				Charsets.UTF_8, HashedProperties.EMPTY);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnsupportedCharset() {
+		PropertiesParser.parse(new byte[0], Charsets.UTF_16,
+				HashedProperties.EMPTY);
+	}
+
+	/**
+	 * Skips comparisons with {@link Properties#load(java.io.Reader)} on JDKs
+	 * which start a new line after a continuation preceded by nothing, the
+	 * parser follows JDK 7 and 8 which join the next line to it
+	 */
+	private static void assumePropertiesJoinLoneContinuation()
+			throws IOException {
+		final Properties properties = new Properties();
+		properties.load(new StringReader("\\\n# a"));
+		Assume.assumeTrue("a".equals(properties.getProperty("#")));
+	}
+
+	private static void assertParses(final String text,
+			final Map<String, String> expected) {
+		for (final Charset charset : new Charset[] { Charsets.UTF_8,
+				Charsets.ISO_8859_1 }) {
+			assertEquals(escape(text), expected,
+					PropertiesParser.parse(bytes(text, charset), charset,
+							HashedProperties.EMPTY).asMap());
+		}
+	}
+
+	/**
+	 * @return the properties parsed, or the previous ones if the text is
+	 *         rejected
+	 */
+	private static HashedProperties assertParsesAsProperties(
+			final String text, final Charset charset,
+			final HashedProperties previous) throws IOException {
+		final Properties expected = new Properties();
+		try {
+			expected.load(new StringReader(text));
+		} catch (final IllegalArgumentException e) {
+			assertRejected(text, charset);
+			return previous;
+		}
+		final Map<String, String> expectedMap = Maps.newHashMap();
+		for (final String key : expected.stringPropertyNames()) {
+			expectedMap.put(key, expected.getProperty(key));
+		}
+
+		// Parse from a direct buffer too, decoded without a backing array
+		final byte[] data = bytes(text, charset);
+		final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data).flip();
+		final HashedProperties parsed = PropertiesParser.parse(data,
+				charset, previous);
+		assertEquals(escape(text), expectedMap, parsed.asMap());
+		assertEquals(escape(text), expectedMap,
+				PropertiesParser.parse(direct, charset, previous).asMap());
+		return parsed;
+	}
+
+	private static void assertRejected(final String text,
+			final Charset charset) {
+		try {
+			PropertiesParser.parse(bytes(text, charset), charset,
+					HashedProperties.EMPTY);
+			fail("Expected " + escape(text) + " to be rejected");
+		} catch (final IllegalArgumentException e) {
+			// As by java.util.Properties
+		}
+	}
+
+	private static byte[] bytes(final String text, final Charset charset) {
+		return text.getBytes(charset);
+	}
+
+	private static String escape(final String text) {
+		return "[" + text.replace("\\", "\\\\").replace("\n", "\\n")
+				.replace("\r", "\\r").replace("\t", "\\t") + "]";
+	}
+
+}
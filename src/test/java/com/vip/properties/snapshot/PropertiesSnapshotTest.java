@@ -0,0 +1,91 @@
+package com.vip.properties.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class PropertiesSnapshotTest {
+
+	private static final ImmutableMap<String, String> PROPERTIES = ImmutableMap
+			.of("host", "localhost", "port", "8080", "url",
+					"http://${host}:${port}/", "timeout", "1.5");
+
+	@Test
+	public void resolvesPlaceholders() {
+		final PropertiesSnapshot snapshot = PropertiesSnapshot.of(1,
+				PROPERTIES);
+
+		assertEquals("http://localhost:8080/", snapshot.resolve("url"));
+		assertEquals("http://${host}:${port}/", snapshot.get("url"));
+		assertNull(snapshot.resolve("missing"));
+		assertEquals(8080, snapshot.getLong("port", 0));
+		assertEquals(1.5, snapshot.getDouble("timeout", 0), 0);
+		assertEquals(3, snapshot.getLong("missing", 3));
+	}
+
+	@Test
+	public void withChangesLeavesPreviousSnapshotUntouched() {
+		final PropertiesSnapshot previous = PropertiesSnapshot.of(
+				PropertiesSnapshot.nextGeneration(), PROPERTIES);
+
+		final PropertiesSnapshot next = previous.withChanges(
+				ImmutableMap.of("host", "example.com", "added", "1"),
+				ImmutableSet.of("timeout"));
+
+		assertTrue(next.getGeneration() > previous.getGeneration());
+		assertEquals("http://example.com:8080/", next.resolve("url"));
+		assertEquals("1", next.get("added"));
+		assertFalse(next.containsKey("timeout"));
+		assertEquals(PROPERTIES, previous.asMap());
+		assertEquals("http://localhost:8080/", previous.resolve("url"));
+	}
+
+	@Test
+	public void withoutChangesIsSameSnapshot() {
+		final PropertiesSnapshot snapshot = PropertiesSnapshot.of(1,
+				PROPERTIES);
+
+		assertSame(snapshot,
+				snapshot.withChanges(ImmutableMap.<String, String> of()));
+	}
+
+	@Test
+	public void compactSnapshotStaysCompact() {
+		final PropertiesSnapshot snapshot = PropertiesSnapshot.of(1,
+				PROPERTIES, true);
+
+		final PropertiesSnapshot next = snapshot.withChanges(ImmutableMap.of(
+				"port", "9090"));
+
+		assertTrue(snapshot.isCompact());
+		assertTrue(next.isCompact());
+		assertEquals(9090, next.getLong("port", 0));
+		assertEquals("http://localhost:9090/", next.resolve("url"));
+		assertEquals(8080, snapshot.getLong("port", 0));
+	}
+
+	@Test
+	public void copiesDefaultsOfProperties() {
+		final Properties defaults = new Properties();
+		defaults.setProperty("host", "default");
+		final Properties properties = new Properties(defaults);
+		properties.setProperty("port", "1");
+
+		final PropertiesSnapshot snapshot = PropertiesSnapshot.of(1,
+				properties);
+
+		assertEquals(ImmutableMap.of("host", "default", "port", "1"),
+				snapshot.asMap());
+		assertEquals(snapshot.asMap(), snapshot.toProperties());
+	}
+
+}
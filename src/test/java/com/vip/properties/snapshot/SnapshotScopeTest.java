@@ -0,0 +1,221 @@
+package com.vip.properties.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.vip.properties.ReloadableLong;
+
+public class SnapshotScopeTest {
+
+	private final Object owner = new Object();
+	private final Object otherOwner = new Object();
+
+	@Test
+	public void pinsSnapshotUntilClosed() {
+		final PropertiesSnapshot snapshot = snapshot("1");
+
+		assertNull(SnapshotScope.pinned(this.owner));
+		try (SnapshotScope scope = SnapshotScope.open(this.owner, snapshot)) {
+			assertSame(snapshot, scope.getSnapshot());
+			assertSame(snapshot, SnapshotScope.pinned(this.owner));
+			assertEquals(snapshot.getGeneration(),
+					SnapshotScope.pinnedGeneration(this.owner));
+			assertNull(SnapshotScope.pinned(this.otherOwner));
+			assertEquals(Long.MAX_VALUE,
+					SnapshotScope.pinnedGeneration(this.otherOwner));
+		}
+		assertNull(SnapshotScope.pinned(this.owner));
+		assertEquals(Long.MAX_VALUE, SnapshotScope.pinnedGeneration(this.owner));
+	}
+
+	@Test
+	public void nestedScopeOfSameOwnerKeepsOuterSnapshot() {
+		final PropertiesSnapshot outer = snapshot("1");
+		final PropertiesSnapshot newer = outer.withChanges(ImmutableMap.of(
+				"key", "2"));
+
+		try (SnapshotScope scope = SnapshotScope.open(this.owner, outer)) {
+			try (SnapshotScope nested = SnapshotScope.open(this.owner, newer)) {
+				assertSame(outer, nested.getSnapshot());
+				try (SnapshotScope other = SnapshotScope.open(this.otherOwner,
+						newer)) {
+					assertSame(newer, SnapshotScope.pinned(this.otherOwner));
+					assertSame(outer, SnapshotScope.pinned(this.owner));
+				}
+				assertNull(SnapshotScope.pinned(this.otherOwner));
+			}
+			assertSame(outer, SnapshotScope.pinned(this.owner));
+		}
+	}
+
+	@Test
+	public void scopesCloseInnermostFirst() {
+		final SnapshotScope outer = SnapshotScope.open(this.owner,
+				snapshot("1"));
+		final SnapshotScope inner = SnapshotScope.open(this.owner,
+				snapshot("2"));
+		try {
+			outer.close();
+			fail("Closed the outer scope first");
+		} catch (final IllegalStateException e) {
+			// Expected
+		} finally {
+			inner.close();
+			inner.close();
+			outer.close();
+		}
+		assertNull(SnapshotScope.pinned(this.owner));
+	}
+
+	@Test
+	public void oldestPinnedGenerationCoversEveryThread() throws Exception {
+		final PropertiesSnapshot older = snapshot("1");
+		final PropertiesSnapshot newer = snapshot("2");
+		final CountDownLatch pinned = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try (SnapshotScope scope = SnapshotScope.open(owner, older)) {
+					pinned.countDown();
+					release.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		other.start();
+		pinned.await();
+		try (SnapshotScope scope = SnapshotScope.open(this.owner, newer)) {
+			assertTrue(SnapshotScope.isActive());
+			assertSame(newer, SnapshotScope.pinned(this.owner));
+			assertEquals(older.getGeneration(),
+					SnapshotScope.oldestPinnedGeneration(this.owner));
+			assertEquals(Long.MAX_VALUE,
+					SnapshotScope.oldestPinnedGeneration(this.otherOwner));
+		} finally {
+			release.countDown();
+			other.join();
+		}
+		assertEquals(Long.MAX_VALUE,
+				SnapshotScope.oldestPinnedGeneration(this.owner));
+	}
+
+	@Test
+	public void boundHandleReadsPinnedGeneration() {
+		final PropertiesSnapshot first = snapshot("1");
+		final ReloadableLong handle = new ReloadableLong();
+		handle.bind(new LongBinding(this.owner));
+		handle.set(1, first.getGeneration());
+
+		try (SnapshotScope scope = SnapshotScope.open(this.owner, first)) {
+			final PropertiesSnapshot second = first.withChanges(ImmutableMap
+					.of("key", "2"));
+			handle.set(2, second.getGeneration());
+			assertEquals(1, handle.get());
+
+			final PropertiesSnapshot third = second.withChanges(ImmutableMap
+					.of("key", "3"));
+			handle.set(3, third.getGeneration());
+			assertEquals(1, handle.get());
+		}
+		assertEquals(3, handle.get());
+	}
+
+	@Test
+	public void handleBoundAfterPinResolvesPinnedSnapshot() {
+		final PropertiesSnapshot first = snapshot("1");
+
+		try (SnapshotScope scope = SnapshotScope.open(this.owner, first)) {
+			final PropertiesSnapshot second = first.withChanges(ImmutableMap
+					.of("key", "2"));
+			final ReloadableLong handle = new ReloadableLong();
+			handle.bind(new LongBinding(this.owner));
+			handle.set(2, second.getGeneration());
+
+			assertEquals(1, handle.get());
+		}
+	}
+
+	@Test
+	public void handleIgnoresScopesOfOtherOwners() {
+		final PropertiesSnapshot first = snapshot("1");
+		final ReloadableLong handle = new ReloadableLong();
+		handle.bind(new LongBinding(this.owner));
+		handle.set(1, first.getGeneration());
+
+		try (SnapshotScope scope = SnapshotScope.open(this.otherOwner, first)) {
+			handle.set(2, PropertiesSnapshot.nextGeneration());
+			assertEquals(2, handle.get());
+		}
+	}
+
+	@Test
+	public void unboundHandleReadsLatestValue() {
+		final PropertiesSnapshot first = snapshot("1");
+		final ReloadableLong handle = new ReloadableLong(1);
+
+		try (SnapshotScope scope = SnapshotScope.open(this.owner, first)) {
+			handle.set(2, PropertiesSnapshot.nextGeneration());
+			assertEquals(2, handle.get());
+		}
+	}
+
+	@Test
+	public void closingScopeFromOtherThreadFails() throws Exception {
+		final SnapshotScope scope = SnapshotScope.open(this.owner,
+				snapshot("1"));
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		final Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					scope.close();
+				} catch (final IllegalStateException e) {
+					failure.set(e);
+				}
+			}
+		});
+		other.start();
+		other.join();
+		scope.close();
+
+		assertTrue(failure.get() instanceof IllegalStateException);
+		assertNull(SnapshotScope.pinned(this.owner));
+	}
+
+	private static PropertiesSnapshot snapshot(final String value) {
+		return PropertiesSnapshot.of(PropertiesSnapshot.nextGeneration(),
+				ImmutableMap.of("key", value));
+	}
+
+	private static final class LongBinding implements SnapshotBinding {
+
+		private final Object owner;
+
+		LongBinding(final Object owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public Object getOwner() {
+			return this.owner;
+		}
+
+		@Override
+		public Object resolve(final PropertiesSnapshot snapshot) {
+			final String value = snapshot.resolve("key");
+			return null == value ? null : Long.valueOf(value);
+		}
+	}
+
+}